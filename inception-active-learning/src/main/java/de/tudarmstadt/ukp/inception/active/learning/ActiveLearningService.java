@@ -23,6 +23,7 @@ import java.util.Optional;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.active.learning.ActiveLearningServiceImpl.ActiveLearningUserState;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
@@ -52,5 +53,24 @@ public interface ActiveLearningService
     void hideRejectedOrSkippedAnnotations(User aUser, AnnotationLayer aLayer,
             boolean aFilterSkippedRecommendation, List<SuggestionGroup> aSuggestionGroups);
 
+    /**
+     * Get the suggestion which should be offered to the user next. When called for the first time
+     * after the suggestions in the given state have been set, the suggestions are prioritized
+     * considering the learning history. Subsequent calls re-use this prioritization, so any
+     * changes must be reported via {@link #applyUserAction} or {@link #updateSuggestions}.
+     */
     Optional<Delta> generateNextSuggestion(User aUser, ActiveLearningUserState aAlState);
+
+    /**
+     * Updates the prioritized suggestions after the user has performed the given action on the
+     * given suggestion, e.g. hiding the suggestion if it has been rejected or skipped.
+     */
+    void applyUserAction(ActiveLearningUserState aAlState, AnnotationSuggestion aSuggestion,
+            String aLabel, LearningRecordType aUserAction);
+
+    /**
+     * Updates the prioritized suggestions after the visibility of suggestions in the given
+     * document has changed.
+     */
+    void updateSuggestions(ActiveLearningUserState aAlState, String aDocumentName);
 }
@@ -21,14 +21,19 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_SKIPPED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.REJECTED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SKIPPED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +49,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Offset;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionDocumentGroup;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
@@ -125,11 +132,29 @@ public class ActiveLearningServiceImpl
             AnnotationLayer aLayer, boolean filterSkippedRecommendation,
             List<SuggestionGroup> aSuggestionGroups)
     {
-        List<LearningRecord> records = learningHistoryService
-                .listRecords(aUser.getUsername(),
-                        aLayer);
+        // Index the records by position so we do not have to check every record for every
+        // suggestion
+        Map<String, Map<Offset, List<LearningRecord>>> recordsByPosition = learningHistoryService
+                .listRecords(aUser.getUsername(), aLayer).stream()
+                .collect(groupingBy(r -> r.getSourceDocument().getName(), groupingBy(
+                    r -> new Offset(r.getOffsetCharacterBegin(), r.getOffsetCharacterEnd()))));
+
+        if (recordsByPosition.isEmpty()) {
+            return;
+        }
 
         for (SuggestionGroup group : aSuggestionGroups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            
+            List<LearningRecord> records = recordsByPosition
+                    .getOrDefault(group.getDocumentName(), emptyMap())
+                    .getOrDefault(group.getOffset(), emptyList());
+            if (records.isEmpty()) {
+                continue;
+            }
+            
             for (AnnotationSuggestion s : group) {
                 // If a suggestion is already invisible, we don't need to check if it needs hiding.
                 // Mind that this code does not unhide the suggestion immediately if a user
@@ -138,10 +163,7 @@ public class ActiveLearningServiceImpl
                 // unhiding).
                 if (s.isVisible()) {
                     records.stream()
-                            .filter(r -> r.getSourceDocument().getName().equals(s.getDocumentName())
-                                    && r.getOffsetCharacterBegin() == s.getBegin()
-                                    && r.getOffsetCharacterEnd() == s.getEnd()
-                                    && s.labelEquals(r.getAnnotation()))
+                            .filter(r -> s.labelEquals(r.getAnnotation()))
                             .forEach(record -> {
                                 if (REJECTED.equals(record.getUserAction())) {
                                     s.hide(FLAG_REJECTED);
@@ -159,26 +181,76 @@ public class ActiveLearningServiceImpl
     @Override
     public Optional<Delta> generateNextSuggestion(User aUser, ActiveLearningUserState alState)
     {
+        // The queue is built only once after the suggestions have been refreshed and is then
+        // updated incrementally as the user acts on the suggestions
+        SuggestionQueue queue = alState.getSuggestionQueue();
+        if (queue == null) {
+            queue = createSuggestionQueue(aUser, alState);
+            alState.setSuggestionQueue(queue);
+        }
+        
         // Fetch the next suggestion to present to the user (if there is any)
+        return queue.peek();
+    }
+    
+    private SuggestionQueue createSuggestionQueue(User aUser, ActiveLearningUserState alState)
+    {
         long startTimer = System.currentTimeMillis();
-        List<SuggestionGroup> suggestions = alState.getSuggestions();
-        long getRecommendationsFromRecommendationService = System.currentTimeMillis();
-        log.trace("Getting recommendations from recommender system costs {} ms.",
-                (getRecommendationsFromRecommendationService - startTimer));
-
+        
         // remove duplicate recommendations
-        suggestions = suggestions.stream()
-                .map(it -> removeDuplicateRecommendations(it)).collect(Collectors.toList());
+        List<SuggestionGroup> suggestions = alState.getSuggestions().stream()
+                .map(it -> removeDuplicateRecommendations(it)).collect(toList());
         long removeDuplicateRecommendation = System.currentTimeMillis();
         log.trace("Removing duplicate recommendations costs {} ms.",
-                (removeDuplicateRecommendation - getRecommendationsFromRecommendationService));
+                (removeDuplicateRecommendation - startTimer));
 
         // hide rejected recommendations
         hideRejectedOrSkippedAnnotations(aUser, alState.getLayer(), true, suggestions);
         long removeRejectedSkippedRecommendation = System.currentTimeMillis();
         log.trace("Removing rejected or skipped ones costs {} ms.",
                 (removeRejectedSkippedRecommendation - removeDuplicateRecommendation));
-        return alState.getStrategy().generateNextSuggestion(suggestions);
+        
+        SuggestionQueue queue = new SuggestionQueue(suggestions,
+                alState.getStrategy().getDeltaOrder());
+        log.trace("Building suggestion queue costs {} ms.",
+                (System.currentTimeMillis() - removeRejectedSkippedRecommendation));
+        
+        return queue;
+    }
+    
+    @Override
+    public void applyUserAction(ActiveLearningUserState aAlState, AnnotationSuggestion aSuggestion,
+            String aLabel, LearningRecordType aUserAction)
+    {
+        SuggestionQueue queue = aAlState.getSuggestionQueue();
+        
+        // If there is no queue yet, the action is considered when the queue is built from the
+        // learning history
+        if (queue == null) {
+            return;
+        }
+        
+        if (REJECTED.equals(aUserAction)) {
+            queue.hide(aSuggestion.getDocumentName(), aSuggestion.getBegin(),
+                    aSuggestion.getEnd(), aLabel, FLAG_REJECTED);
+        }
+        else if (SKIPPED.equals(aUserAction)) {
+            queue.hide(aSuggestion.getDocumentName(), aSuggestion.getBegin(),
+                    aSuggestion.getEnd(), aLabel, FLAG_SKIPPED);
+        }
+        else {
+            queue.update(aSuggestion.getDocumentName(), aSuggestion.getBegin(),
+                    aSuggestion.getEnd());
+        }
+    }
+    
+    @Override
+    public void updateSuggestions(ActiveLearningUserState aAlState, String aDocumentName)
+    {
+        SuggestionQueue queue = aAlState.getSuggestionQueue();
+        if (queue != null) {
+            queue.update(aDocumentName);
+        }
     }
     
     private static SuggestionGroup removeDuplicateRecommendations(
@@ -186,8 +258,12 @@ public class ActiveLearningServiceImpl
     {
         SuggestionGroup cleanRecommendationList = new SuggestionGroup();
 
+        // All suggestions in a group are from the same document, so it is sufficient to check
+        // the recommender and label
+        Set<List<String>> seen = new HashSet<>();
         unmodifiedRecommendationList.forEach(recommendationItem -> {
-            if (!isAlreadyInCleanList(cleanRecommendationList, recommendationItem)) {
+            if (seen.add(asList(recommendationItem.getRecommenderName(),
+                    recommendationItem.getLabel()))) {
                 cleanRecommendationList.add(recommendationItem);
             }
         });
@@ -195,24 +271,6 @@ public class ActiveLearningServiceImpl
         return cleanRecommendationList;
     }
     
-    private static boolean isAlreadyInCleanList(SuggestionGroup cleanRecommendationList,
-            AnnotationSuggestion recommendationItem)
-    {
-        String source = recommendationItem.getRecommenderName();
-        String annotation = recommendationItem.getLabel();
-        String documentName = recommendationItem.getDocumentName();
-            
-        for (AnnotationSuggestion existingRecommendation : cleanRecommendationList) 
-        {
-            boolean areLabelsEqual = existingRecommendation.labelEquals(annotation);
-            if (existingRecommendation.getRecommenderName().equals(source) && areLabelsEqual
-                && existingRecommendation.getDocumentName().equals(documentName)) {
-                return true;
-            }
-        }
-        return false;
-    }
-    
     public static class ActiveLearningUserState implements Serializable
     {
         private static final long serialVersionUID = -167705997822964808L;
@@ -222,6 +280,7 @@ public class ActiveLearningServiceImpl
         private AnnotationLayer layer;
         private ActiveLearningStrategy strategy;
         private List<SuggestionGroup> suggestions;
+        private SuggestionQueue suggestionQueue;
 
         private Delta currentDifference;
         private String leftContext;
@@ -286,6 +345,8 @@ public class ActiveLearningServiceImpl
         public void setSuggestions(List<SuggestionGroup> aSuggestions)
         {
             suggestions = aSuggestions;
+            // The queue is rebuilt from the new suggestions when the next suggestion is requested
+            suggestionQueue = null;
         }
 
         public List<SuggestionGroup> getSuggestions()
@@ -293,6 +354,16 @@ public class ActiveLearningServiceImpl
             return suggestions;
         }
 
+        public SuggestionQueue getSuggestionQueue()
+        {
+            return suggestionQueue;
+        }
+
+        public void setSuggestionQueue(SuggestionQueue aSuggestionQueue)
+        {
+            suggestionQueue = aSuggestionQueue;
+        }
+
         public String getLeftContext()
         {
             return leftContext;
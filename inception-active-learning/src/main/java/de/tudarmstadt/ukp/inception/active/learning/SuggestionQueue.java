@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Offset;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+/**
+ * Priority queue over the top deltas of the suggestion groups of an active learning session. The
+ * queue is built once when the predictions change. When the visibility of suggestions changes,
+ * the deltas of the affected groups are re-added to the queue. Outdated entries are not removed
+ * immediately but only when they reach the head of the queue. Thus, obtaining the next suggestion
+ * is logarithmic in the number of suggestion groups.
+ */
+public class SuggestionQueue
+    implements Serializable
+{
+    private static final long serialVersionUID = -3541924412386950290L;
+
+    private final List<SuggestionGroup> groups;
+    private final Map<Position, List<SuggestionGroup>> groupsByPosition;
+    private final Map<String, List<SuggestionGroup>> groupsByDocument;
+    private final PriorityQueue<Entry> queue;
+    
+    /**
+     * The most recent entry of each group and recommender. Any other entry in the queue is
+     * outdated.
+     */
+    private final Map<SuggestionGroup, Map<Long, Entry>> latestEntries;
+
+    /**
+     * @param aGroups
+     *            the suggestion groups.
+     * @param aOrder
+     *            the order in which the deltas are offered - the smallest delta is offered first.
+     *            Must be serializable.
+     */
+    public SuggestionQueue(List<SuggestionGroup> aGroups, Comparator<Delta> aOrder)
+    {
+        groups = unmodifiableList(aGroups);
+        groupsByPosition = new HashMap<>();
+        groupsByDocument = new HashMap<>();
+        latestEntries = new IdentityHashMap<>();
+        queue = new PriorityQueue<>(Math.max(1, aGroups.size()), new EntryComparator(aOrder));
+
+        for (SuggestionGroup group : aGroups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+
+            groupsByPosition
+                    .computeIfAbsent(new Position(group.getDocumentName(), group.getOffset()),
+                        k -> new ArrayList<>())
+                    .add(group);
+            groupsByDocument.computeIfAbsent(group.getDocumentName(), k -> new ArrayList<>())
+                    .add(group);
+
+            group.getTopDeltas().forEach((recommender, delta) -> {
+                Entry entry = new Entry(group, recommender, delta);
+                latestEntries.computeIfAbsent(group, k -> new HashMap<>()).put(recommender, entry);
+                queue.add(entry);
+            });
+        }
+    }
+
+    public List<SuggestionGroup> getGroups()
+    {
+        return groups;
+    }
+
+    /**
+     * @return the suggestion groups at the given position.
+     */
+    public List<SuggestionGroup> getGroups(String aDocumentName, int aBegin, int aEnd)
+    {
+        return groupsByPosition.getOrDefault(
+                new Position(aDocumentName, new Offset(aBegin, aEnd)), emptyList());
+    }
+
+    /**
+     * @return the delta which should be offered to the user next (if there is any). The delta
+     *         remains in the queue until the visibility of its suggestions changes.
+     */
+    public Optional<Delta> peek()
+    {
+        while (!queue.isEmpty()) {
+            Entry head = queue.peek();
+
+            if (!isLatest(head)) {
+                queue.poll();
+                continue;
+            }
+
+            Delta current = head.group.getTopDeltas().get(head.recommender);
+            if (current != null && isSame(current, head.delta)) {
+                return Optional.of(head.delta);
+            }
+
+            // The visibility of the suggestions in the group has changed without being reported,
+            // so we need to update the group now
+            queue.poll();
+            update(head.group);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Hides the suggestions with the given label at the given position.
+     */
+    public void hide(String aDocumentName, int aBegin, int aEnd, String aLabel, int aFlags)
+    {
+        for (SuggestionGroup group : getGroups(aDocumentName, aBegin, aEnd)) {
+            group.stream()
+                    .filter(s -> s.labelEquals(aLabel))
+                    .forEach(s -> s.hide(aFlags));
+        }
+
+        update(aDocumentName, aBegin, aEnd);
+    }
+
+    /**
+     * Must be called after the visibility of suggestions at the given position has been changed.
+     */
+    public void update(String aDocumentName, int aBegin, int aEnd)
+    {
+        for (SuggestionGroup group : getGroups(aDocumentName, aBegin, aEnd)) {
+            update(group);
+        }
+    }
+
+    /**
+     * Must be called after the visibility of suggestions in the given document has been changed.
+     */
+    public void update(String aDocumentName)
+    {
+        groupsByDocument.getOrDefault(aDocumentName, emptyList()).forEach(this::update);
+    }
+
+    private void update(SuggestionGroup aGroup)
+    {
+        Map<Long, Delta> deltas = aGroup.getTopDeltas();
+        Map<Long, Entry> latest = latestEntries.computeIfAbsent(aGroup, k -> new HashMap<>());
+
+        // Recommenders which no longer have a visible suggestion in the group
+        latest.keySet().retainAll(deltas.keySet());
+
+        deltas.forEach((recommender, delta) -> {
+            Entry entry = latest.get(recommender);
+            if (entry == null || !isSame(entry.delta, delta)) {
+                entry = new Entry(aGroup, recommender, delta);
+                latest.put(recommender, entry);
+                queue.add(entry);
+            }
+        });
+    }
+
+    private boolean isLatest(Entry aEntry)
+    {
+        Map<Long, Entry> latest = latestEntries.get(aEntry.group);
+        return latest != null && latest.get(aEntry.recommender) == aEntry;
+    }
+
+    private static boolean isSame(Delta aDelta1, Delta aDelta2)
+    {
+        return aDelta1.getFirst() == aDelta2.getFirst()
+                && aDelta1.getSecond().orElse(null) == aDelta2.getSecond().orElse(null);
+    }
+
+    /**
+     * @return the number of entries in the queue including outdated ones.
+     */
+    int size()
+    {
+        return queue.size();
+    }
+
+    private static class Entry
+        implements Serializable
+    {
+        private static final long serialVersionUID = 5128620479532929893L;
+
+        private final SuggestionGroup group;
+        private final long recommender;
+        private final Delta delta;
+
+        public Entry(SuggestionGroup aGroup, long aRecommender, Delta aDelta)
+        {
+            group = aGroup;
+            recommender = aRecommender;
+            delta = aDelta;
+        }
+    }
+
+    private static class EntryComparator
+        implements Comparator<Entry>, Serializable
+    {
+        private static final long serialVersionUID = -6204796315226151398L;
+
+        private final Comparator<Delta> order;
+
+        public EntryComparator(Comparator<Delta> aOrder)
+        {
+            order = aOrder;
+        }
+
+        @Override
+        public int compare(Entry aEntry1, Entry aEntry2)
+        {
+            return order.compare(aEntry1.delta, aEntry2.delta);
+        }
+    }
+
+    private static class Position
+        implements Serializable
+    {
+        private static final long serialVersionUID = 4418829627003713040L;
+
+        private final String documentName;
+        private final Offset offset;
+
+        public Position(String aDocumentName, Offset aOffset)
+        {
+            documentName = aDocumentName;
+            offset = aOffset;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) aOther;
+            return documentName.equals(other.documentName) && offset.equals(other.offset);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(documentName, offset);
+        }
+    }
+}
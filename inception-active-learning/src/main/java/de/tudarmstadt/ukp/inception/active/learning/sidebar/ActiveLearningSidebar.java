@@ -602,6 +602,8 @@ public class ActiveLearningSidebar
         learningRecordService.logRecord(sourceDoc, state.getUser().getUsername(),
                 aSuggestion, aAnnotationValue, alState.getLayer(), feat, aUserAction,
                 LearningRecordChangeLocation.AL_SIDEBAR);
+        activeLearningService.applyUserAction(alState, aSuggestion, aAnnotationValue,
+                aUserAction);
 
         // Send an application event that the suggestion has been rejected
         List<AnnotationSuggestion> alternativeSuggestions = recommendationService
@@ -980,6 +982,8 @@ public class ActiveLearningSidebar
         // here
         getMatchingSuggestion(alState.getSuggestions(), aRecord)
                 .forEach(suggestion -> suggestion.show(FLAG_SKIPPED | FLAG_REJECTED));
+        activeLearningService.updateSuggestions(alState,
+                aRecord.getSourceDocument().getName());
         
         // Force the learning records model to be refreshed during rendering, showing the latest
         // state from the DB
@@ -1090,6 +1094,7 @@ public class ActiveLearningSidebar
             recommendationService.calculateVisibility(getAnnotationPage().getEditorCas(),
                     state.getUser().getUsername(), aLayer, alState.getSuggestions(),
                     state.getWindowBeginOffset(), state.getWindowEndOffset());
+            activeLearningService.updateSuggestions(alState, state.getDocument().getName());
     
             // Update the suggestion in the AL sidebar, but do not jump or touch the right
             // sidebar such that the user can happily continue to edit the annotation
@@ -1138,6 +1143,8 @@ public class ActiveLearningSidebar
                     rejectedRecommendation.getBegin(),
                     rejectedRecommendation.getEnd(),
                     rejectedRecommendation.getFeature())));
+            activeLearningService.applyUserAction(alStateModel.getObject(),
+                    rejectedRecommendation, rejectedRecommendation.getLabel(), REJECTED);
 
             if (
                     doc.equals(annotatorState.getDocument()) &&
@@ -1184,6 +1191,8 @@ public class ActiveLearningSidebar
                 acceptedSuggestion.getBegin(),
                 acceptedSuggestion.getEnd(),
                 acceptedSuggestion.getFeature())));
+        activeLearningService.applyUserAction(alStateModel.getObject(), acceptedSuggestion,
+                acceptedSuggestion.getLabel(), ACCEPTED);
 
         // If the annotation that the user accepted is the one that is currently displayed in
         // the annotation sidebar, then we have to go and pick a new one
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.active.learning.strategy;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,4 +27,10 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Del
 public interface ActiveLearningStrategy
 {
     public Optional<Delta> generateNextSuggestion(List<SuggestionGroup> suggestions);
+
+    /**
+     * @return the order in which deltas are offered to the user - the first delta in this order is
+     *         offered first. The comparator must be serializable.
+     */
+    public Comparator<Delta> getDeltaOrder();
 }
@@ -30,15 +30,33 @@ public class UncertaintySamplingStrategy
 {
     private static final long serialVersionUID = 5664120040399862552L;
 
+    private static final Comparator<Delta> DELTA_ORDER = new SmallestDeltaFirst();
+
     @Override
     public Optional<Delta> generateNextSuggestion(List<SuggestionGroup> suggestions)
     {
         return suggestions.stream()
             // Fetch the top deltas per recommender
             .flatMap(group -> group.getTopDeltas().values().stream())
-            // ... sort them in ascending order (smallest delta first)
-            .sorted(Comparator.comparingDouble(Delta::getDelta))
             // ... and return the smallest delta (if there is one)
-            .findFirst();
+            .min(DELTA_ORDER);
+    }
+
+    @Override
+    public Comparator<Delta> getDeltaOrder()
+    {
+        return DELTA_ORDER;
+    }
+
+    private static class SmallestDeltaFirst
+        implements Comparator<Delta>, Serializable
+    {
+        private static final long serialVersionUID = 2826323862393938457L;
+
+        @Override
+        public int compare(Delta aDelta1, Delta aDelta2)
+        {
+            return Double.compare(aDelta1.getDelta(), aDelta2.getDelta());
+        }
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_REJECTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_SKIPPED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.active.learning.strategy.UncertaintySamplingStrategy;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+public class SuggestionQueueTest
+{
+    private static final String DOC = "doc.txt";
+
+    private final UncertaintySamplingStrategy strategy = new UncertaintySamplingStrategy();
+
+    private int nextId = 0;
+
+    @Test
+    public void thatSmallestDeltaIsOfferedFirst()
+    {
+        SuggestionGroup certain = group(0, 5, "PER", 0.9, "LOC", 0.1);
+        SuggestionGroup uncertain = group(10, 15, "PER", 0.5, "LOC", 0.4);
+
+        SuggestionQueue sut = new SuggestionQueue(asList(certain, uncertain),
+                strategy.getDeltaOrder());
+
+        assertThat(sut.peek().map(Delta::getFirst)).contains(uncertain.get(0));
+        // Peeking does not remove the delta from the queue
+        assertThat(sut.peek().map(Delta::getFirst)).contains(uncertain.get(0));
+    }
+
+    @Test
+    public void thatHiddenSuggestionsAreNoLongerOffered()
+    {
+        SuggestionGroup certain = group(0, 5, "PER", 0.9, "LOC", 0.1);
+        SuggestionGroup uncertain = group(10, 15, "PER", 0.5, "LOC", 0.4);
+
+        SuggestionQueue sut = new SuggestionQueue(asList(certain, uncertain),
+                strategy.getDeltaOrder());
+
+        // Hiding the top suggestion of the uncertain group leaves only LOC there with delta 0.4
+        sut.hide(DOC, 10, 15, "PER", FLAG_REJECTED);
+        assertThat(sut.peek().map(Delta::getFirst)).contains(uncertain.get(1));
+
+        sut.hide(DOC, 10, 15, "LOC", FLAG_SKIPPED);
+        assertThat(sut.peek().map(Delta::getFirst)).contains(certain.get(0));
+
+        sut.hide(DOC, 0, 5, "PER", FLAG_REJECTED);
+        sut.hide(DOC, 0, 5, "LOC", FLAG_REJECTED);
+        assertThat(sut.peek()).isEmpty();
+    }
+
+    @Test
+    public void thatShownSuggestionsAreOfferedAgainAfterUpdate()
+    {
+        SuggestionGroup certain = group(0, 5, "PER", 0.9, "LOC", 0.1);
+        SuggestionGroup uncertain = group(10, 15, "PER", 0.5, "LOC", 0.4);
+
+        SuggestionQueue sut = new SuggestionQueue(asList(certain, uncertain),
+                strategy.getDeltaOrder());
+
+        sut.hide(DOC, 10, 15, "PER", FLAG_SKIPPED);
+        sut.hide(DOC, 10, 15, "LOC", FLAG_SKIPPED);
+        assertThat(sut.peek().map(Delta::getFirst)).contains(certain.get(0));
+
+        uncertain.forEach(s -> s.show(FLAG_SKIPPED));
+        sut.update(DOC);
+        assertThat(sut.peek().map(Delta::getFirst)).contains(uncertain.get(0));
+    }
+
+    @Test
+    public void thatUnreportedChangesAreDetectedAtHead()
+    {
+        SuggestionGroup certain = group(0, 5, "PER", 0.9, "LOC", 0.1);
+        SuggestionGroup uncertain = group(10, 15, "PER", 0.5, "LOC", 0.4);
+
+        SuggestionQueue sut = new SuggestionQueue(asList(certain, uncertain),
+                strategy.getDeltaOrder());
+
+        uncertain.forEach(s -> s.hide(FLAG_REJECTED));
+        assertThat(sut.peek().map(Delta::getFirst)).contains(certain.get(0));
+    }
+
+    @Test
+    public void thatQueueMatchesFullSort()
+    {
+        Random rnd = new Random(42);
+        List<SuggestionGroup> groups = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            groups.add(group(i * 10, i * 10 + 5, "PER", rnd.nextDouble(), "LOC",
+                    rnd.nextDouble()));
+        }
+
+        SuggestionQueue sut = new SuggestionQueue(groups, strategy.getDeltaOrder());
+
+        // Act on the offered suggestions like a user would and compare to re-computing the next
+        // suggestion from scratch each time
+        for (int i = 0; i <= 1000; i++) {
+            Optional<Delta> expected = strategy.generateNextSuggestion(groups);
+            Optional<Delta> actual = sut.peek();
+
+            assertThat(actual.map(Delta::getDelta)).isEqualTo(expected.map(Delta::getDelta));
+
+            if (!actual.isPresent()) {
+                break;
+            }
+
+            AnnotationSuggestion s = actual.get().getFirst();
+            sut.hide(s.getDocumentName(), s.getBegin(), s.getEnd(), s.getLabel(),
+                    rnd.nextBoolean() ? FLAG_REJECTED : FLAG_SKIPPED);
+        }
+
+        assertThat(sut.peek()).isEmpty();
+    }
+
+    private SuggestionGroup group(int aBegin, int aEnd, Object... aLabelsAndScores)
+    {
+        SuggestionGroup group = new SuggestionGroup();
+        for (int i = 0; i < aLabelsAndScores.length; i += 2) {
+            group.add(new AnnotationSuggestion(nextId++, 1, "rec", 1, "value", DOC, aBegin, aEnd,
+                    "text", (String) aLabelsAndScores[i], (String) aLabelsAndScores[i],
+                    (double) aLabelsAndScores[i + 1], null));
+        }
+        return group;
+    }
+}
@@ -28,4 +28,10 @@ public interface EntityLinkingProperties
     int getCandidateDisplayLimit();
 
     int getSignatureQueryLimit();
+
+    int getCandidateQueryThreads();
+
+    int getRankingCandidateLimit();
+
+    int getRankingThreads();
 }
@@ -35,6 +35,9 @@ public class EntityLinkingPropertiesImpl
     private int candidateQueryLimit = 2500;
     private int candidateDisplayLimit = 100;
     private int signatureQueryLimit = Integer.MAX_VALUE;
+    private int candidateQueryThreads = 4;
+    private int rankingCandidateLimit = 100;
+    private int rankingThreads = 4;
 
     @Override
     public int getCacheSize()
@@ -90,5 +93,37 @@ public class EntityLinkingPropertiesImpl
     {
         this.signatureQueryLimit = signatureQueryLimit;
     }
-}
 
+    @Override
+    public int getCandidateQueryThreads()
+    {
+        return candidateQueryThreads;
+    }
+
+    public void setCandidateQueryThreads(int candidateQueryThreads)
+    {
+        this.candidateQueryThreads = candidateQueryThreads;
+    }
+
+    @Override
+    public int getRankingCandidateLimit()
+    {
+        return rankingCandidateLimit;
+    }
+
+    public void setRankingCandidateLimit(int rankingCandidateLimit)
+    {
+        this.rankingCandidateLimit = rankingCandidateLimit;
+    }
+
+    @Override
+    public int getRankingThreads()
+    {
+        return rankingThreads;
+    }
+
+    public void setRankingThreads(int rankingThreads)
+    {
+        this.rankingThreads = rankingThreads;
+    }
+}
@@ -22,4 +22,14 @@ import de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity;
 public interface EntityRankingFeatureGenerator
 {
     void apply(CandidateEntity aCandidate);
+
+    /**
+     * @return whether the generator is expensive, e.g. because it queries the KB. Expensive
+     *         features are only computed for the best candidates according to the cheap features
+     *         and the candidates are processed concurrently, so the generator must be thread-safe.
+     */
+    default boolean isExpensive()
+    {
+        return false;
+    }
 }
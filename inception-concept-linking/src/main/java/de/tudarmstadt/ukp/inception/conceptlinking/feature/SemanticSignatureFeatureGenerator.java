@@ -144,6 +144,12 @@ public class SemanticSignatureFeatureGenerator
                 (sig.getRelatedRelations() != null) ? sig.getRelatedRelations().size() : 0);
     }
     
+    @Override
+    public boolean isExpensive()
+    {
+        return true;
+    }
+    
     /**
      * Remove all cache entries of a specific project
      * @param aEvent
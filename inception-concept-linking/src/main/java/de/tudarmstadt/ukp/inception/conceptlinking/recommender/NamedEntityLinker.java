@@ -18,10 +18,12 @@
 package de.tudarmstadt.ukp.inception.conceptlinking.recommender;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectSentences;
+import static java.util.Collections.emptyList;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -91,56 +93,58 @@ public class NamedEntityLinker
     {
         Type predictedType = getPredictedType(aCas);
 
+        List<AnnotationFS> mentions = new ArrayList<>();
         for (AnnotationFS sentence : selectSentences(aCas)) {
-            for (AnnotationFS annotation : CasUtil.selectCovered(aCas, predictedType, sentence)) {
-                int begin = annotation.getBegin();
-                int end = annotation.getEnd();
-                predictSingle(annotation.getCoveredText(), begin, end, aCas);
+            mentions.addAll(CasUtil.selectCovered(aCas, predictedType, sentence));
+        }
+        
+        if (mentions.isEmpty()) {
+            return;
+        }
+        
+        // Link all mentions in the document at once so that the candidates for repeated mentions
+        // are only generated once
+        Map<AnnotationFS, List<KBHandle>> candidates = clService.disambiguate(
+                listKnowledgeBases(), featureTraits.getScope(),
+                featureTraits.getAllowedValueType(), mentions, aCas);
+
+        Feature predictedFeature = getPredictedFeature(aCas);
+        Feature isPredictionFeature = getIsPredictionFeature(aCas);
+
+        for (AnnotationFS mention : mentions) {
+            for (KBHandle prediction : candidates.getOrDefault(mention, emptyList()).stream()
+                    .limit(recommender.getMaxRecommendations())
+                    .collect(Collectors.toList())) {
+                AnnotationFS annotation = aCas.createAnnotation(predictedType,
+                        mention.getBegin(), mention.getEnd());
+                annotation.setStringValue(predictedFeature, prediction.getIdentifier());
+                annotation.setBooleanValue(isPredictionFeature, true);
+                aCas.addFsToIndexes(annotation);
             }
         }
     }
 
-    private void predictSingle(String aCoveredText, int aBegin, int aEnd, CAS aCas)
+    private List<KnowledgeBase> listKnowledgeBases()
     {
-        List<KBHandle> handles = new ArrayList<>();
-
         AnnotationFeature feat = recommender.getFeature();
         FeatureSupport<ConceptFeatureTraits> fs = fsRegistry.getFeatureSupport(feat);
         ConceptFeatureTraits conceptFeatureTraits = fs.readTraits(feat);
 
+        List<KnowledgeBase> knowledgeBases = new ArrayList<>();
         if (conceptFeatureTraits.getRepositoryId() != null) {
             Optional<KnowledgeBase> kb = kbService.getKnowledgeBaseById(recommender.getProject(),
                 conceptFeatureTraits.getRepositoryId());
             if (kb.isPresent() && kb.get().isSupportConceptLinking()) {
-                handles.addAll(readCandidates(kb.get(), aCoveredText, aBegin, aCas));
+                knowledgeBases.add(kb.get());
             }
         } else {
             for (KnowledgeBase kb : kbService.getEnabledKnowledgeBases(recommender.getProject())) {
                 if (kb.isSupportConceptLinking()) {
-                    handles.addAll(readCandidates(kb, aCoveredText, aBegin, aCas));
+                    knowledgeBases.add(kb);
                 }
             }
         }
-
-        Type predictedType = getPredictedType(aCas);
-        Feature scoreFeature = getScoreFeature(aCas);
-        Feature predictedFeature = getPredictedFeature(aCas);
-        Feature isPredictionFeature = getIsPredictionFeature(aCas);
-
-        for (KBHandle prediction : handles.stream().limit(recommender.getMaxRecommendations())
-            .collect(Collectors.toList())) {
-            AnnotationFS annotation = aCas.createAnnotation(predictedType, aBegin, aEnd);
-            annotation.setStringValue(predictedFeature, prediction.getIdentifier());
-            annotation.setBooleanValue(isPredictionFeature, true);
-            aCas.addFsToIndexes(annotation);
-        }
-    }
-
-    private List<KBHandle> readCandidates(KnowledgeBase kb, String aCoveredText, int aBegin,
-                                          CAS aCas)
-    {
-        return kbService.read(kb, (conn) -> clService.disambiguate(kb, featureTraits.getScope(),
-            featureTraits.getAllowedValueType(), null, aCoveredText, aBegin, aCas));
+        return knowledgeBases;
     }
 
     @Override
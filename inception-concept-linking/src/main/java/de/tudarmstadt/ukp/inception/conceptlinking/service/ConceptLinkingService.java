@@ -17,10 +17,13 @@
  */
 package de.tudarmstadt.ukp.inception.conceptlinking.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType;
@@ -55,6 +58,29 @@ public interface ConceptLinkingService
             ConceptFeatureValueType aValueType, String aTypedString, String aMention,
             int aMentionBeginOffset, CAS aCas);
 
+    /**
+     * Links multiple mentions at once, e.g. all mentions in a document. Candidates are generated
+     * only once per distinct mention text. The lookups for the different mentions and knowledge
+     * bases run concurrently. The candidates are ranked separately for each mention since the
+     * ranking depends on the mention context.
+     *
+     * @param aKBs
+     *            the KBs used to generate candidates.
+     * @param aConceptScope
+     *            the concept scope or {@code null}.
+     * @param aValueType
+     *            the type of items to link to.
+     * @param aMentions
+     *            the annotations marking the mentions to be linked.
+     * @param aCas
+     *            the CAS containing the mentions.
+     * @return for each mention, the ranked candidates of the first KB followed by the ranked
+     *         candidates of the second KB, etc.
+     */
+    Map<AnnotationFS, List<KBHandle>> disambiguate(List<KnowledgeBase> aKBs,
+            String aConceptScope, ConceptFeatureValueType aValueType,
+            Collection<AnnotationFS> aMentions, CAS aCas);
+
     /**
      * Get all linking instances within the scope of a given knowledge base. If null is passed for
      * aRepositoryId, all enabled knowledge bases in the project are considered. If the given
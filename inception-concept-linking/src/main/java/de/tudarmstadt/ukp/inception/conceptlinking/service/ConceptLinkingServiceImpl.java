@@ -24,33 +24,54 @@ import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.
 import static de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity.KEY_QUERY;
 import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonMap;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 
 import java.io.File;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.eclipse.rdf4j.common.net.ParsedIRI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -64,6 +85,7 @@ import de.tudarmstadt.ukp.inception.conceptlinking.util.FileUtils;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.RepositoryType;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder;
@@ -75,8 +97,9 @@ import de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryPrimaryConditions
  * {@link EntityLinkingServiceAutoConfiguration#conceptLinkingService}.
  * </p>
  */
+@ManagedResource
 public class ConceptLinkingServiceImpl
-    implements InitializingBean, ConceptLinkingService
+    implements InitializingBean, DisposableBean, ConceptLinkingService
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -89,6 +112,24 @@ public class ConceptLinkingServiceImpl
     private final List<EntityRankingFeatureGenerator> featureGeneratorsProxy;
     private List<EntityRankingFeatureGenerator> featureGenerators;
     
+    /**
+     * Used to query the KBs concurrently when linking many mentions at once.
+     */
+    private final ExecutorService candidateQueryExecutor;
+    
+    /**
+     * Used to compute the expensive ranking features for the candidates concurrently.
+     */
+    private final ExecutorService rankingExecutor;
+    
+    /**
+     * Candidates generated for a mention. Unlike the query cache of the KB service, this cache is
+     * also used for writable KBs - the generation of the KB is part of the cache key, so entries
+     * cached before the KB changed are no longer used. The cached sets and handles must not be
+     * modified.
+     */
+    private final Cache<CandidateCacheKey, Set<KBHandle>> candidateCache;
+    
     @Autowired
     public ConceptLinkingServiceImpl(KnowledgeBaseService aKbService,
             EntityLinkingPropertiesImpl aProperties,
@@ -103,6 +144,23 @@ public class ConceptLinkingServiceImpl
         properties = aProperties;
         featureGeneratorsProxy = aFeatureGenerators;
         repoProperties = aRepoProperties;
+        
+        candidateCache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .recordStats()
+                .build();
+        
+        candidateQueryExecutor = Executors.newFixedThreadPool(
+                properties.getCandidateQueryThreads(), new BasicThreadFactory.Builder()
+                        .namingPattern("candidate-query-%d")
+                        .daemon(true)
+                        .build());
+        
+        rankingExecutor = Executors.newFixedThreadPool(
+                properties.getRankingThreads(), new BasicThreadFactory.Builder()
+                        .namingPattern("candidate-ranking-%d")
+                        .daemon(true)
+                        .build());
     }
     
     @Override
@@ -112,6 +170,45 @@ public class ConceptLinkingServiceImpl
         stopwords = FileUtils.loadStopwordFile(stopwordsFile);
     }
     
+    @Override
+    public void destroy() throws Exception
+    {
+        candidateQueryExecutor.shutdownNow();
+        rankingExecutor.shutdownNow();
+    }
+    
+    @EventListener
+    public void onKnowledgeBaseConfigurationChangedEvent(
+            KnowledgeBaseConfigurationChangedEvent aEvent)
+    {
+        Long projectId = aEvent.getProject().getId();
+        candidateCache.asMap().keySet().removeIf(key -> Objects.equals(key.projectId, projectId));
+    }
+    
+    @ManagedAttribute
+    public double getCandidateCacheHitRatio()
+    {
+        return candidateCache.stats().hitRate();
+    }
+    
+    @ManagedAttribute
+    public long getCandidateCacheHitCount()
+    {
+        return candidateCache.stats().hitCount();
+    }
+    
+    @ManagedAttribute
+    public long getCandidateCacheMissCount()
+    {
+        return candidateCache.stats().missCount();
+    }
+    
+    @ManagedAttribute
+    public long getCandidateCacheSize()
+    {
+        return candidateCache.estimatedSize();
+    }
+    
     @EventListener
     public void onContextRefreshedEvent(ContextRefreshedEvent aEvent)
     {
@@ -154,6 +251,21 @@ public class ConceptLinkingServiceImpl
     
     public Set<KBHandle> generateCandidates(KnowledgeBase aKB, String aConceptScope,
             ConceptFeatureValueType aValueType, String aQuery, String aMention)
+    {
+        Set<KBHandle> candidates = candidateCache.get(
+                new CandidateCacheKey(aKB, kbService.getGeneration(aKB), aConceptScope,
+                        aValueType, aQuery, aMention),
+                key -> unmodifiableSet(queryCandidates(aKB, aConceptScope, aValueType, aQuery,
+                        aMention)));
+        
+        // The ranking modifies the handles, so we must not hand out the cached ones
+        return candidates.stream()
+                .map(this::copyHandle)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+    
+    private Set<KBHandle> queryCandidates(KnowledgeBase aKB, String aConceptScope,
+            ConceptFeatureValueType aValueType, String aQuery, String aMention)
     {
         // If the query of the user is smaller or equal to this threshold, then we only use it for
         // exact matching. If it is longer, we look for concepts which start with or which contain
@@ -329,6 +441,142 @@ public class ConceptLinkingServiceImpl
         return rankCandidates(aQuery, aMention, candidates, aCas, aMentionBeginOffset);
     }
 
+    @Override
+    public Map<AnnotationFS, List<KBHandle>> disambiguate(List<KnowledgeBase> aKBs,
+            String aConceptScope, ConceptFeatureValueType aValueType,
+            Collection<AnnotationFS> aMentions, CAS aCas)
+    {
+        long startTime = currentTimeMillis();
+        
+        // A mention text often occurs many times in a document, but we need to generate the
+        // candidates only once for every distinct mention text
+        Set<String> mentions = aMentions.stream()
+                .map(AnnotationFS::getCoveredText)
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        
+        // Generate the candidates for all KBs
+        Map<KnowledgeBase, Map<String, Set<KBHandle>>> candidatesByKB = new LinkedHashMap<>();
+        Map<KnowledgeBase, Set<String>> uncachedMentionsByKB = new HashMap<>();
+        // The generation must be obtained before querying the KB - if the KB changes while the
+        // queries are running, the candidates are then cached under the outdated generation
+        Map<KnowledgeBase, Long> generationByKB = new HashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (KnowledgeBase kb : aKBs) {
+                Map<String, Set<KBHandle>> candidates = new HashMap<>();
+                candidatesByKB.put(kb, candidates);
+                
+                // Use the cached candidates where possible and only query for the rest
+                Set<String> uncachedMentions = new LinkedHashSet<>();
+                uncachedMentionsByKB.put(kb, uncachedMentions);
+                long generation = kbService.getGeneration(kb);
+                generationByKB.put(kb, generation);
+                for (String mention : mentions) {
+                    Set<KBHandle> cached = candidateCache.getIfPresent(new CandidateCacheKey(kb,
+                            generation, aConceptScope, aValueType, null, mention));
+                    if (cached != null) {
+                        candidates.put(mention, cached);
+                    }
+                    else {
+                        uncachedMentions.add(mention);
+                    }
+                }
+                
+                for (Callable<Map<String, Set<KBHandle>>> task : candidateQueries(kb,
+                        aConceptScope, aValueType, uncachedMentions)) {
+                    futures.add(candidateQueryExecutor.submit(() -> {
+                        Map<String, Set<KBHandle>> result = task.call();
+                        synchronized (candidates) {
+                            result.forEach((mention, handles) -> candidates
+                                    .computeIfAbsent(mention, k -> new HashSet<>())
+                                    .addAll(handles));
+                        }
+                        return null;
+                    }));
+                }
+            }
+            
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Candidate generation has been interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to generate candidates", e.getCause());
+        }
+        finally {
+            // If we failed, do not continue running the remaining queries
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        // The batch uses the same queries as generateCandidates does for a mention without a
+        // query (see candidateQueries), so both compute the same candidates and can share the
+        // cache entries
+        uncachedMentionsByKB.forEach((kb, uncachedMentions) -> {
+            Map<String, Set<KBHandle>> candidates = candidatesByKB.get(kb);
+            long generation = generationByKB.get(kb);
+            for (String mention : uncachedMentions) {
+                candidateCache.put(new CandidateCacheKey(kb, generation, aConceptScope,
+                        aValueType, null, mention),
+                        unmodifiableSet(candidates.getOrDefault(mention, emptySet())));
+            }
+        });
+        
+        log.debug("Generated candidates for [{}] distinct mentions in [{}] KBs in {}ms",
+                mentions.size(), aKBs.size(), currentTimeMillis() - startTime);
+        
+        // Rank the candidates for every mention - the ranking modifies the handles, so every
+        // mention gets its own copies
+        Map<AnnotationFS, List<KBHandle>> result = new LinkedHashMap<>();
+        for (AnnotationFS mention : aMentions) {
+            String text = mention.getCoveredText();
+            List<KBHandle> handles = new ArrayList<>();
+            for (Map<String, Set<KBHandle>> candidates : candidatesByKB.values()) {
+                Set<KBHandle> mentionCandidates = candidates.getOrDefault(text, emptySet())
+                        .stream()
+                        .map(this::copyHandle)
+                        .collect(Collectors.toCollection(HashSet::new));
+                handles.addAll(rankCandidates(null, text, mentionCandidates, aCas,
+                        mention.getBegin()));
+            }
+            result.put(mention, handles);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Creates the queries used to generate the candidates for the given mentions. Every mention
+     * is looked up using its own queries - the same as {@link #generateCandidates} uses for a
+     * mention without a query. Thus, the limit of the KB applies per mention and the results do
+     * not need to be mapped back to the mentions.
+     */
+    private List<Callable<Map<String, Set<KBHandle>>>> candidateQueries(KnowledgeBase aKB,
+            String aConceptScope, ConceptFeatureValueType aValueType, Set<String> aMentions)
+    {
+        List<Callable<Map<String, Set<KBHandle>>>> queries = new ArrayList<>();
+        for (String mention : aMentions) {
+            queries.add(() -> singletonMap(mention,
+                    queryCandidates(aKB, aConceptScope, aValueType, null, mention)));
+        }
+        return queries;
+    }
+    
+    private KBHandle copyHandle(KBHandle aHandle)
+    {
+        KBHandle copy = new KBHandle(aHandle.getIdentifier(), aHandle.getName(),
+                aHandle.getDescription(), aHandle.getLanguage());
+        copy.setKB(aHandle.getKB());
+        return copy;
+    }
+
     private CandidateEntity initCandidate(CandidateEntity candidate, String aQuery, String aMention,
             CAS aCas, int aBegin)
     {
@@ -370,12 +618,23 @@ public class ConceptLinkingServiceImpl
     {
         long startTime = currentTimeMillis();
         
-        // Set the feature values
+        List<EntityRankingFeatureGenerator> cheapGenerators = new ArrayList<>();
+        List<EntityRankingFeatureGenerator> expensiveGenerators = new ArrayList<>();
+        for (EntityRankingFeatureGenerator generator : featureGenerators) {
+            if (generator.isExpensive()) {
+                expensiveGenerators.add(generator);
+            }
+            else {
+                cheapGenerators.add(generator);
+            }
+        }
+        
+        // Set the cheap feature values
         List<CandidateEntity> candidates = aCandidates.stream()
                 .map(CandidateEntity::new)
                 .map(candidate -> initCandidate(candidate, aQuery, aMention, aCas, aBegin))
                 .map(candidate -> {
-                    for (EntityRankingFeatureGenerator generator : featureGenerators) {
+                    for (EntityRankingFeatureGenerator generator : cheapGenerators) {
                         generator.apply(candidate);
                     }
                     return candidate;
@@ -385,6 +644,16 @@ public class ConceptLinkingServiceImpl
         // Do the main ranking
         // Sort candidates by multiple keys.
         candidates.sort(BaselineRankingStrategy.getInstance());
+        
+        // Compute the expensive features only for the best candidates and rank these again. The
+        // remaining candidates keep the default values of the expensive features and thus stay
+        // below them.
+        if (!expensiveGenerators.isEmpty() && !candidates.isEmpty()) {
+            List<CandidateEntity> bestCandidates = candidates.subList(0,
+                    Math.min(candidates.size(), properties.getRankingCandidateLimit()));
+            applyExpensiveFeatures(bestCandidates, expensiveGenerators);
+            bestCandidates.sort(BaselineRankingStrategy.getInstance());
+        }
 
         List<KBHandle> results = candidates.stream()
                 .map(candidate -> {
@@ -405,6 +674,39 @@ public class ConceptLinkingServiceImpl
          
         return results;
     }
+    
+    private void applyExpensiveFeatures(List<CandidateEntity> aCandidates,
+            List<EntityRankingFeatureGenerator> aGenerators)
+    {
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (CandidateEntity candidate : aCandidates) {
+                futures.add(rankingExecutor.submit(() -> {
+                    for (EntityRankingFeatureGenerator generator : aGenerators) {
+                        generator.apply(candidate);
+                    }
+                }));
+            }
+            
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Candidate ranking has been interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to rank candidates", e.getCause());
+        }
+        finally {
+            // If we failed, do not continue computing the remaining features
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 
     @Override
     public List<KBHandle> getLinkingInstancesInKBScope(String aRepositoryId, String aConceptScope,
@@ -443,4 +745,54 @@ public class ConceptLinkingServiceImpl
     {
         return disambiguate(aKB, null, ConceptFeatureValueType.ANY_OBJECT, aQuery, null, 0, null);
     }
+    
+    private static final class CandidateCacheKey
+    {
+        private final Long projectId;
+        private final String repositoryId;
+        private final long generation;
+        private final String conceptScope;
+        private final ConceptFeatureValueType valueType;
+        private final String query;
+        private final String mention;
+
+        public CandidateCacheKey(KnowledgeBase aKB, long aGeneration, String aConceptScope,
+                ConceptFeatureValueType aValueType, String aQuery, String aMention)
+        {
+            projectId = aKB.getProject() != null ? aKB.getProject().getId() : null;
+            repositoryId = aKB.getRepositoryId();
+            generation = aGeneration;
+            conceptScope = aConceptScope;
+            valueType = aValueType;
+            query = aQuery;
+            // Leading and trailing whitespace in the mention does not affect the candidates
+            mention = aMention != null ? aMention.trim() : null;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof CandidateCacheKey)) {
+                return false;
+            }
+            
+            CandidateCacheKey castOther = (CandidateCacheKey) other;
+            return new EqualsBuilder()
+                    .append(repositoryId, castOther.repositoryId)
+                    .append(generation, castOther.generation)
+                    .append(conceptScope, castOther.conceptScope)
+                    .append(valueType, castOther.valueType)
+                    .append(query, castOther.query)
+                    .append(mention, castOther.mention)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(repositoryId).append(generation)
+                    .append(conceptScope).append(valueType).append(query).append(mention)
+                    .toHashCode();
+        }
+    }
 }
@@ -18,18 +18,25 @@
 
 package de.tudarmstadt.ukp.inception.conceptlinking.util;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.emptyMap;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +51,12 @@ public class FileUtils
 
     private final static Logger log = LoggerFactory.getLogger(FileUtils.class);
 
+    /**
+     * Suffix of the memory-mapped {@link MappedStringTable} which is created next to a property
+     * label or entity frequency file.
+     */
+    public static final String TABLE_SUFFIX = ".table";
+
     private static List<String> readLines(File r, String reason)
     {
         List<String> lines = new ArrayList<>();
@@ -69,35 +82,109 @@ public class FileUtils
         return new HashSet<>(lines);
     }
 
+    /**
+     * Loads the property labels. The text file is converted into a memory-mapped table on first
+     * use (or when it has changed) and the returned map is a view on that table.
+     */
     public static Map<String, Property> loadPropertyLabels(File r)
     {
         String reason = "Using entity linking support without propertyId:propertyLabel dictionary "
             + "file may have a negative impact on the suggestion ranking.";
-        Map<String, Property> property2LabelMap = new HashMap<>();
-        List<String> lines = readLines(r, reason);
-        for (String line: lines) {
-            if (!line.startsWith("#")) {
-                String[] col = line.split("\t");
-                Property label = new Property(col[1], col[3], col[4], col[5]);
-                property2LabelMap.put(col[0].trim(), label);
-            }
-        }
-        return property2LabelMap;
+        return loadTable(r, reason, FileUtils::convertPropertyLabels, FileUtils::decodeProperty);
     }
 
+    /**
+     * Loads the entity frequencies. The text file is converted into a memory-mapped table on first
+     * use (or when it has changed) and the returned map is a view on that table.
+     */
     public static Map<String, Integer> loadEntityFrequencyMap(File r)
     {
         String reason = "Using entity linking support without entity frequency file will "
             + "have a negative impact on the suggestion ranking.";
-        Map<String, Integer> entityFreqMap = new HashMap<>();
-        List<String> lines = readLines(r, reason);
-        for (String line : lines) {
-            if (!line.startsWith("#")) {
-                String[] col = line.split("\t");
-                entityFreqMap.put(col[0], Integer.parseInt(col[1]));
+        return loadTable(r, reason, FileUtils::convertEntityFrequencyMap,
+            value -> ByteBuffer.wrap(value).getInt());
+    }
+
+    /**
+     * Converts a property label file into a table which can be loaded using
+     * {@link MappedStringTable#load(File)}.
+     */
+    public static void convertPropertyLabels(File aSource, File aTarget) throws IOException
+    {
+        convertTable(aSource, aTarget, col -> {
+            // Validate the line in the same way as it is done when decoding the value
+            new Property(col[1], col[3], col[4], col[5]);
+            return String.join("\t", col[1], col[3], col[4], col[5]).getBytes(UTF_8);
+        });
+    }
+
+    /**
+     * Converts an entity frequency file into a table which can be loaded using
+     * {@link MappedStringTable#load(File)}.
+     */
+    public static void convertEntityFrequencyMap(File aSource, File aTarget) throws IOException
+    {
+        convertTable(aSource, aTarget, col -> ByteBuffer.allocate(Integer.BYTES)
+            .putInt(Integer.parseInt(col[1])).array());
+    }
+
+    private static Property decodeProperty(byte[] aValue)
+    {
+        String[] col = new String(aValue, UTF_8).split("\t", -1);
+        return new Property(col[0], col[1], col[2], col[3]);
+    }
+
+    private static <V> Map<String, V> loadTable(File aFile, String aReason,
+        TableConverter aConverter, Function<byte[], V> aDecoder)
+    {
+        File tableFile = new File(aFile.getPath() + TABLE_SUFFIX);
+        try {
+            if (aFile.exists() && (!tableFile.exists()
+                    || aFile.lastModified() > tableFile.lastModified())) {
+                long start = System.currentTimeMillis();
+                aConverter.convert(aFile, tableFile);
+                log.info("Converted [{}] into a table in {}ms", aFile.getName(),
+                    System.currentTimeMillis() - start);
+            }
+
+            if (!tableFile.exists()) {
+                log.warn("File [{}] is missing - {}", aFile.getName(), aReason);
+                return emptyMap();
+            }
+
+            return MappedStringTable.load(tableFile).asMap(aDecoder);
+        }
+        catch (IOException e) {
+            log.warn("Unable to load [{}] - {}", aFile.getName(), aReason, e);
+            return emptyMap();
+        }
+    }
+
+    private static void convertTable(File aSource, File aTarget,
+        Function<String[], byte[]> aValueEncoder)
+        throws IOException
+    {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (BufferedReader br = Files.newBufferedReader(aSource.toPath(), UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    String[] col = line.split("\t");
+                    entries.put(col[0].trim(), aValueEncoder.apply(col));
+                }
             }
         }
-        return entityFreqMap;
+
+        // Write to a temporary file first so that an aborted conversion does not leave behind
+        // a broken table
+        File tempFile = new File(aTarget.getPath() + ".tmp");
+        MappedStringTable.write(tempFile, entries);
+        Files.move(tempFile.toPath(), aTarget.toPath(), REPLACE_EXISTING);
+    }
+
+    private interface TableConverter
+    {
+        void convert(File aSource, File aTarget) throws IOException;
     }
     
     public static Set<String> loadPropertyBlacklist(File r)
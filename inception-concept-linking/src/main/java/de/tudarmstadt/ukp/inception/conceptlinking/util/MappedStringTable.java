@@ -0,0 +1,321 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Read-only string-keyed table which is memory-mapped from a file and thus lives off-heap. The
+ * file contains the UTF-8 encoded keys in sorted order followed by the values. Looking up a key is
+ * a binary search over the mapped keys.
+ * <p>
+ * Layout: magic, format version, number of entries, key offsets, value offsets, key bytes, value
+ * bytes. Each of the sections is mapped separately and must not exceed 2GB.
+ * </p>
+ */
+public class MappedStringTable
+{
+    private static final int MAGIC = 0x4D535442;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+
+    private final int size;
+    private final IntBuffer keyOffsets;
+    private final IntBuffer valueOffsets;
+    private final ByteBuffer keyData;
+    private final ByteBuffer valueData;
+
+    private MappedStringTable(int aSize, IntBuffer aKeyOffsets, IntBuffer aValueOffsets,
+            ByteBuffer aKeyData, ByteBuffer aValueData)
+    {
+        size = aSize;
+        keyOffsets = aKeyOffsets;
+        valueOffsets = aValueOffsets;
+        keyData = aKeyData;
+        valueData = aValueData;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the index of the given key or a negative value if the key is not in the table.
+     */
+    public int indexOf(String aKey)
+    {
+        byte[] key = aKey.getBytes(UTF_8);
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the value of the given key or {@code null} if the key is not in the table.
+     */
+    public byte[] get(String aKey)
+    {
+        int index = indexOf(aKey);
+        return index < 0 ? null : getValue(index);
+    }
+
+    public String getKey(int aIndex)
+    {
+        return new String(slice(keyData, keyOffsets, aIndex), UTF_8);
+    }
+
+    public byte[] getValue(int aIndex)
+    {
+        return slice(valueData, valueOffsets, aIndex);
+    }
+
+    /**
+     * @return a read-only map view of the table decoding the values using the given function.
+     */
+    public <V> Map<String, V> asMap(Function<byte[], V> aDecoder)
+    {
+        return new MapView<>(aDecoder);
+    }
+
+    private int compareKey(int aIndex, byte[] aKey)
+    {
+        int offset = keyOffsets.get(aIndex);
+        int length = keyOffsets.get(aIndex + 1) - offset;
+        int n = Math.min(length, aKey.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(keyData.get(offset + i) & 0xFF, aKey[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, aKey.length);
+    }
+
+    private static byte[] slice(ByteBuffer aData, IntBuffer aOffsets, int aIndex)
+    {
+        int offset = aOffsets.get(aIndex);
+        byte[] bytes = new byte[aOffsets.get(aIndex + 1) - offset];
+        // Work on a duplicate so concurrent readers do not interfere via the buffer position
+        ByteBuffer buffer = aData.duplicate();
+        buffer.position(offset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the given entries to a file which can then be loaded using {@link #load(File)}.
+     */
+    public static void write(File aFile, Map<String, byte[]> aEntries) throws IOException
+    {
+        List<byte[][]> entries = new ArrayList<>(aEntries.size());
+        for (Map.Entry<String, byte[]> e : aEntries.entrySet()) {
+            entries.add(new byte[][] { e.getKey().getBytes(UTF_8), e.getValue() });
+        }
+        entries.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+
+        long keyDataLength = 0;
+        long valueDataLength = 0;
+        for (byte[][] entry : entries) {
+            keyDataLength += entry[0].length;
+            valueDataLength += entry[1].length;
+        }
+
+        if (keyDataLength > Integer.MAX_VALUE || valueDataLength > Integer.MAX_VALUE
+                || (entries.size() + 1L) * Integer.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Too much data for a table in [" + aFile + "]");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(aFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            out.writeLong(keyDataLength);
+            out.writeLong(valueDataLength);
+
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[][] entry : entries) {
+                offset += entry[0].length;
+                out.writeInt(offset);
+            }
+
+            offset = 0;
+            out.writeInt(offset);
+            for (byte[][] entry : entries) {
+                offset += entry[1].length;
+                out.writeInt(offset);
+            }
+
+            for (byte[][] entry : entries) {
+                out.write(entry[0]);
+            }
+
+            for (byte[][] entry : entries) {
+                out.write(entry[1]);
+            }
+        }
+    }
+
+    public static MappedStringTable load(File aFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(aFile.toPath(), READ)) {
+            ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("File [" + aFile + "] does not contain a table");
+            }
+
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported table format version [" + version + "] in ["
+                        + aFile + "]");
+            }
+
+            int size = header.getInt();
+            long keyDataLength = header.getLong();
+            long valueDataLength = header.getLong();
+            long offsetsLength = (size + 1L) * Integer.BYTES;
+
+            long position = HEADER_SIZE;
+            IntBuffer keyOffsets = channel.map(MapMode.READ_ONLY, position, offsetsLength)
+                    .asIntBuffer();
+            position += offsetsLength;
+            IntBuffer valueOffsets = channel.map(MapMode.READ_ONLY, position, offsetsLength)
+                    .asIntBuffer();
+            position += offsetsLength;
+            ByteBuffer keyData = channel.map(MapMode.READ_ONLY, position, keyDataLength);
+            position += keyDataLength;
+            ByteBuffer valueData = channel.map(MapMode.READ_ONLY, position, valueDataLength);
+
+            // The mappings remain valid after the channel has been closed
+            return new MappedStringTable(size, keyOffsets, valueOffsets, keyData, valueData);
+        }
+    }
+
+    private class MapView<V>
+        extends AbstractMap<String, V>
+    {
+        private final Function<byte[], V> decoder;
+
+        public MapView(Function<byte[], V> aDecoder)
+        {
+            decoder = aDecoder;
+        }
+
+        @Override
+        public V get(Object aKey)
+        {
+            if (!(aKey instanceof String)) {
+                return null;
+            }
+
+            byte[] value = MappedStringTable.this.get((String) aKey);
+            return value != null ? decoder.apply(value) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object aKey)
+        {
+            return aKey instanceof String && indexOf((String) aKey) >= 0;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet()
+        {
+            return new AbstractSet<Entry<String, V>>()
+            {
+                @Override
+                public Iterator<Entry<String, V>> iterator()
+                {
+                    return new Iterator<Entry<String, V>>()
+                    {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, V> next()
+                        {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Entry<String, V> entry = new SimpleImmutableEntry<>(getKey(index),
+                                    decoder.apply(getValue(index)));
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -25,7 +25,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
 import static org.dkpro.core.api.datasets.DatasetValidationPolicy.CONTINUE;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -34,12 +35,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.collection.CollectionReader;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
@@ -61,7 +66,6 @@ import de.tudarmstadt.ukp.inception.conceptlinking.recommender.NamedEntityLinker
 import de.tudarmstadt.ukp.inception.conceptlinking.recommender.NamedEntityLinkerTraits;
 import de.tudarmstadt.ukp.inception.conceptlinking.service.ConceptLinkingServiceImpl;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureTraits;
-import de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType;
 import de.tudarmstadt.ukp.inception.kb.IriConstants;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
@@ -124,11 +128,15 @@ public class NamedEntityLinkerTest
         kb.setFullTextSearchIri(IriConstants.FTS_VIRTUOSO);
         when(kbService.getKnowledgeBaseById(any(), anyString())).thenReturn(Optional.of(kb));
         when(kbService.getEnabledKnowledgeBases(any())).thenReturn(Collections.singletonList(kb));
-        when(kbService.read(any(), any())).thenReturn(mockResult);
 
         ConceptLinkingServiceImpl clService = mock(ConceptLinkingServiceImpl.class);
-        when(clService.disambiguate(any(), anyString(), any(ConceptFeatureValueType.class),
-                anyString(), anyString(), anyInt(), any())).thenReturn(mockResult);
+        when(clService.disambiguate(anyList(), any(), any(), anyCollection(), any()))
+                .thenAnswer(invocation -> {
+                    Collection<AnnotationFS> mentions = invocation.getArgument(3);
+                    Map<AnnotationFS, List<KBHandle>> result = new HashMap<>();
+                    mentions.forEach(mention -> result.put(mention, mockResult));
+                    return result;
+                });
 
         FeatureSupportRegistry fsRegistry = mock(FeatureSupportRegistry.class);
         FeatureSupport fs = mock(FeatureSupport.class);
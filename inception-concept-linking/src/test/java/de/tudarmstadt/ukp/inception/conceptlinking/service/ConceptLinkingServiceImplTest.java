@@ -19,14 +19,25 @@
 package de.tudarmstadt.ukp.inception.conceptlinking.service;
 
 import static de.tudarmstadt.ukp.inception.kb.ConceptFeatureValueType.ANY_OBJECT;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -44,6 +55,9 @@ import org.springframework.transaction.annotation.Transactional;
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.conceptlinking.config.EntityLinkingPropertiesImpl;
+import de.tudarmstadt.ukp.inception.conceptlinking.feature.EntityRankingFeatureGenerator;
+import de.tudarmstadt.ukp.inception.conceptlinking.feature.LevenshteinFeatureGenerator;
+import de.tudarmstadt.ukp.inception.conceptlinking.model.CandidateEntity;
 import de.tudarmstadt.ukp.inception.conceptlinking.util.TestFixtures;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseServiceImpl;
@@ -124,6 +138,133 @@ public class ConceptLinkingServiceImplTest
             .contains("manatee");
     }
 
+    @Test
+    public void thatBatchLinkingWorks() throws Exception
+    {
+        kbService.registerKnowledgeBase(kb, kbService.getNativeConfig());
+        importKnowledgeBase("data/pets.ttl");
+
+        CAS cas = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+        cas.setDocumentText("Socke hates Kahmi and Socke hates Lailaps .");
+        List<AnnotationFS> mentions = new ArrayList<>();
+        for (String mention : asList("Socke", "Kahmi", "Lailaps")) {
+            int begin = -1;
+            while ((begin = cas.getDocumentText().indexOf(mention, begin + 1)) != -1) {
+                mentions.add(cas.createAnnotation(cas.getAnnotationType(), begin,
+                        begin + mention.length()));
+            }
+        }
+
+        Map<AnnotationFS, List<KBHandle>> result = sut.disambiguate(asList(kb), null,
+                ANY_OBJECT, mentions, cas);
+
+        assertThat(result).containsOnlyKeys(mentions);
+        for (AnnotationFS mention : mentions) {
+            assertThat(result.get(mention)).extracting(KBHandle::getName)
+                    .as("Check whether \"%s\" has been retrieved.", mention.getCoveredText())
+                    .contains(mention.getCoveredText());
+        }
+        
+        assertThat(result.get(mentions.get(0)).get(0))
+                .as("Every mention gets its own ranked handles")
+                .isNotSameAs(result.get(mentions.get(1)).get(0));
+    }
+
+    @Test
+    public void thatBatchLinkingSharesCandidatesWithSingleMentionLinking() throws Exception
+    {
+        kbService.registerKnowledgeBase(kb, kbService.getNativeConfig());
+        importKnowledgeBase("data/pets.ttl");
+
+        CAS cas = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+        cas.setDocumentText("Socke hates Kahmi .");
+        AnnotationFS mention = cas.createAnnotation(cas.getAnnotationType(), 0, 5);
+
+        Map<AnnotationFS, List<KBHandle>> batchResult = sut.disambiguate(asList(kb), null,
+                ANY_OBJECT, asList(mention), cas);
+        long missCount = sut.getCandidateCacheMissCount();
+        Set<KBHandle> candidates = sut.generateCandidates(kb, null, ANY_OBJECT, null, "Socke");
+
+        assertThat(sut.getCandidateCacheMissCount())
+                .as("Candidates generated by the batch are re-used")
+                .isEqualTo(missCount);
+        assertThat(candidates).extracting(KBHandle::getIdentifier)
+                .containsExactlyInAnyOrderElementsOf(batchResult.get(mention).stream()
+                        .map(KBHandle::getIdentifier).collect(toList()));
+    }
+
+    @Test
+    public void thatCandidatesAreCachedUntilKnowledgeBaseChanges() throws Exception
+    {
+        kbService.registerKnowledgeBase(kb, kbService.getNativeConfig());
+        importKnowledgeBase("data/pets.ttl");
+
+        Set<KBHandle> first = sut.generateCandidates(kb, null, ANY_OBJECT, null, "Socke");
+        Set<KBHandle> second = sut.generateCandidates(kb, null, ANY_OBJECT, null, "Socke");
+
+        assertThat(sut.getCandidateCacheHitCount()).isEqualTo(1);
+        assertThat(second).extracting(KBHandle::getName).contains("Socke");
+        assertThat(second.iterator().next())
+                .as("Cached candidates are handed out as copies")
+                .isNotSameAs(first.iterator().next());
+
+        KBConcept concept = new KBConcept();
+        concept.setName("Socke");
+        kbService.createConcept(kb, concept);
+        Set<KBHandle> third = sut.generateCandidates(kb, null, ANY_OBJECT, null, "Socke");
+
+        assertThat(sut.getCandidateCacheHitCount()).isEqualTo(1);
+        assertThat(sut.getCandidateCacheMissCount()).isEqualTo(2);
+        assertThat(third)
+                .as("Candidates cached before the change are no longer used")
+                .hasSizeGreaterThan(second.size());
+    }
+
+    @Test
+    public void thatExpensiveFeaturesAreOnlyComputedForBestCandidates() throws Exception
+    {
+        Set<String> scored = ConcurrentHashMap.newKeySet();
+        EntityRankingFeatureGenerator expensiveGenerator = new EntityRankingFeatureGenerator()
+        {
+            @Override
+            public void apply(CandidateEntity aCandidate)
+            {
+                scored.add(aCandidate.getLabel());
+            }
+
+            @Override
+            public boolean isExpensive()
+            {
+                return true;
+            }
+        };
+        
+        RepositoryProperties repoProps = new RepositoryProperties();
+        repoProps.setPath(temporaryFolder.getRoot());
+        EntityLinkingPropertiesImpl properties = new EntityLinkingPropertiesImpl();
+        properties.setRankingCandidateLimit(2);
+        ConceptLinkingServiceImpl linker = new ConceptLinkingServiceImpl(kbService, properties,
+                repoProps, asList(new LevenshteinFeatureGenerator(), expensiveGenerator));
+        try {
+            linker.afterPropertiesSet();
+            linker.init();
+
+            Set<KBHandle> candidates = new HashSet<>();
+            for (String label : asList("xyzzy", "abd", "xyz", "abc")) {
+                candidates.add(new KBHandle("http://example.org/" + label, label));
+            }
+            
+            List<KBHandle> result = linker.rankCandidates("abc", null, candidates, null, 0);
+            
+            assertThat(result).extracting(KBHandle::getName)
+                    .containsExactly("abc", "abd", "xyz", "xyzzy");
+            assertThat(scored).containsExactlyInAnyOrder("abc", "abd");
+        }
+        finally {
+            linker.destroy();
+        }
+    }
+
     private void importKnowledgeBase(String resourceName) throws Exception {
         ClassLoader classLoader = getClass().getClassLoader();
         String fileName = classLoader.getResource(resourceName).getFile();
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.conceptlinking.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.tudarmstadt.ukp.inception.conceptlinking.model.Property;
+
+public class FileUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void thatEntityFrequencyMapIsLoadedFromTable() throws Exception
+    {
+        File file = temporaryFolder.newFile("wikidata_entity_freqs.map");
+        Files.write(file.toPath(), asList("# comment", "Q1\t10", "Q42\t4711", "Q5\t7"), UTF_8);
+
+        Map<String, Integer> frequencies = FileUtils.loadEntityFrequencyMap(file);
+
+        assertThat(new File(file.getPath() + FileUtils.TABLE_SUFFIX)).exists();
+        assertThat(frequencies).hasSize(3);
+        assertThat(frequencies.get("Q42")).isEqualTo(4711);
+        assertThat(frequencies.get("Q5")).isEqualTo(7);
+        assertThat(frequencies.get("Q4")).isNull();
+        assertThat(frequencies).containsOnlyKeys("Q1", "Q42", "Q5");
+
+        // Once converted, the table is used even if the text file is gone
+        Files.delete(file.toPath());
+        assertThat(FileUtils.loadEntityFrequencyMap(file).get("Q1")).isEqualTo(10);
+    }
+
+    @Test
+    public void thatPropertyLabelsAreLoadedFromTable() throws Exception
+    {
+        File file = temporaryFolder.newFile("properties_with_labels.txt");
+        Files.write(file.toPath(), asList(
+                "#ID\tLabel\tDescription\tAliases\tData type\tCount",
+                "P6\thead of government\thead of the executive\tpresident, chancellor"
+                        + "\twikibase-item\t17,592"), UTF_8);
+
+        Map<String, Property> labels = FileUtils.loadPropertyLabels(file);
+
+        assertThat(labels).containsOnlyKeys("P6");
+        Property property = labels.get("P6");
+        assertThat(property.getLabel()).isEqualTo("head of government");
+        assertThat(property.getAltlabel()).containsExactly("president", "chancellor");
+        assertThat(property.getType()).isEqualTo("wikibase-item");
+        assertThat(property.getFreq()).isEqualTo(17592);
+    }
+
+    @Test
+    public void thatMissingFileYieldsEmptyMap()
+    {
+        File file = new File(temporaryFolder.getRoot(), "missing.map");
+
+        assertThat(FileUtils.loadEntityFrequencyMap(file)).isEmpty();
+    }
+
+    @Test
+    public void thatLookupsMatchHashMap() throws Exception
+    {
+        Random rnd = new Random(42);
+        Map<String, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            // Include non-ASCII characters to check that keys are sorted by their UTF-8 bytes
+            String key = "Q" + rnd.nextInt(100_000) + (rnd.nextBoolean() ? "ä😀" : "");
+            expected.put(key, key.getBytes(UTF_8));
+        }
+
+        File file = temporaryFolder.newFile("test.table");
+        MappedStringTable.write(file, expected);
+        MappedStringTable table = MappedStringTable.load(file);
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+            assertThat(table.get(e.getKey())).isEqualTo(e.getValue());
+        }
+        assertThat(table.get("Q-1")).isNull();
+    }
+}
@@ -17,16 +17,29 @@
  */
 package de.tudarmstadt.ukp.inception.curation;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode.AUTO_CAS_UPGRADE;
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.selectAnnotationByAddr;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
@@ -34,9 +47,14 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
@@ -53,6 +71,9 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VComment
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VCommentType;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VSpan;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casmerge.CasMerge;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casmerge.CasMergeOperationResult;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
@@ -65,7 +86,7 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 @Component(CurationEditorExtension.EXTENSION_ID)
 public class CurationEditorExtension
     extends AnnotationEditorExtensionImplBase
-    implements AnnotationEditorExtension
+    implements AnnotationEditorExtension, DisposableBean
 {
     public static final String EXTENSION_ID = "curationEditorExtension";
     
@@ -73,13 +94,44 @@ public class CurationEditorExtension
     private static final String ACTION_SELECT_ARC = "arcOpenDialog"; 
     private static final String ACTION_SELECT_SPAN = "spanOpenDialog";
     
+    private static final String COLOR = "#ccccff";  //"#cccccc" is the color for recommendations
+    
+    private static final int CAS_LOADER_THREADS = 4;
+    
     private Logger log = LoggerFactory.getLogger(getClass());
     
-    private @Autowired CurationService curationService;
-    private @Autowired PreRenderer preRenderer;
-    private @Autowired AnnotationSchemaService annotationService;
-    private @Autowired DocumentService documentService;
-    private @Autowired UserDao userRepository;
+    /**
+     * The rendered annotations of the users being curated. The CAS timestamp is part of the key,
+     * so changes to a CAS are noticed even if they do not trigger an event.
+     */
+    private final Cache<RenderingKey, UserRendering> renderingCache = Caffeine.newBuilder()
+            .expireAfterAccess(10, MINUTES)
+            .maximumSize(1_000)
+            .build();
+    
+    private final ExecutorService casLoader = Executors.newFixedThreadPool(CAS_LOADER_THREADS,
+            new BasicThreadFactory.Builder()
+                    .namingPattern("curation-cas-loader-%d")
+                    .daemon(true)
+                    .build());
+    
+    private final CurationService curationService;
+    private final PreRenderer preRenderer;
+    private final AnnotationSchemaService annotationService;
+    private final DocumentService documentService;
+    private final UserDao userRepository;
+    
+    @Autowired
+    public CurationEditorExtension(CurationService aCurationService, PreRenderer aPreRenderer,
+            AnnotationSchemaService aAnnotationService, DocumentService aDocumentService,
+            UserDao aUserRepository)
+    {
+        curationService = aCurationService;
+        preRenderer = aPreRenderer;
+        annotationService = aAnnotationService;
+        documentService = aDocumentService;
+        userRepository = aUserRepository;
+    }
     
     @Override
     public String getBeanName()
@@ -87,6 +139,28 @@ public class CurationEditorExtension
         return EXTENSION_ID;
     }
 
+    @Override
+    public void destroy()
+    {
+        casLoader.shutdownNow();
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        long documentId = aEvent.getDocument().getDocument().getId();
+        String username = aEvent.getDocument().getUser();
+        renderingCache.asMap().keySet().removeIf(key ->
+                key.documentId == documentId && key.username.equals(username));
+    }
+
+    @EventListener
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        // Layer changes are rare, so we simply drop everything
+        renderingCache.invalidateAll();
+    }
+
     @Override
     public void handleAction(AnnotationActionHandler aPanel, AnnotatorState aState,
             AjaxRequestTarget aTarget, CAS aCas, VID aParamId, String aAction)
@@ -224,70 +298,194 @@ public class CurationEditorExtension
             return;
         }
 
+        SourceDocument document = aState.getDocument();
+        List<AnnotationLayer> layers = aState.getAnnotationLayers();
+        
+        // Re-use the renderings of users whose annotations have not changed
+        Map<String, UserRendering> renderings = new HashMap<>();
+        Map<String, RenderingKey> missing = new LinkedHashMap<>();
         for (User user : selectedUsers) {
-                        
-            try {
-                CAS userCas = documentService.readAnnotationCas(aState.getDocument(),
-                        user.getUsername());
-                if (userCas == null) {
-                    log.error(String.format("Could not retrieve CAS for user %s and project %d",
-                            user.getUsername(), projectId));
-                    continue;
-                }
-                VDocument tmpDoc = new VDocument();
-                preRenderer.render(tmpDoc, aWindowBeginOffset, aWindowEndOffset, userCas,
-                        aState.getAnnotationLayers());
-                
-                String username = user.getUsername();
-                String color = "#ccccff";  //"#cccccc" is the color for recommendations
-
-                // copy all arcs and spans to existing doc with new VID
-                
-                // copy all spans and add to map as possible varc dependents
-                // spans with new vids identified by their old vid for lookup in varcs
-                Map<VID, VSpan> newIdSpan = new HashMap<>();
-                for (VSpan vspan : tmpDoc.spans()) {
-                    VID aDepVID = vspan.getVid();
-                    VID prevVID = VID.copyVID(aDepVID);
-                    VID newVID = new CurationVID(EXTENSION_ID, username,
-                            new VID(vspan.getLayer().getId(), aDepVID.getId(), aDepVID.getSubId(),
-                                    aDepVID.getAttribute(), aDepVID.getSlot()));
-                    vspan.setVid(newVID);
-                    vspan.setColorHint(color);
-                    // TODO: might be better to change after bugfix #1389
-                    vspan.setLazyDetails(Collections.emptyList());
-                    newIdSpan.put(prevVID, vspan);
-                    // set user name as comment
-                    aVdoc.add(new VComment(newVID, VCommentType.INFO, username));
-                    aVdoc.add(vspan);
-                }
+            String username = user.getUsername();
+            long timestamp = documentService.getAnnotationCasTimestamp(document, username)
+                    .orElse(-1L);
+            RenderingKey key = new RenderingKey(document.getId(), username, timestamp,
+                    aWindowBeginOffset, aWindowEndOffset, layers);
+            UserRendering rendering = renderingCache.getIfPresent(key);
+            if (rendering != null) {
+                renderings.put(username, rendering);
+            }
+            else {
+                missing.put(username, key);
+            }
+        }
+        
+        Map<String, CAS> userCases = readAnnotationCases(document, missing.keySet());
+        for (Map.Entry<String, RenderingKey> e : missing.entrySet()) {
+            String username = e.getKey();
+            CAS userCas = userCases.get(username);
+            if (userCas == null) {
+                log.error(String.format("Could not retrieve CAS for user %s and project %d",
+                        username, projectId));
+                continue;
+            }
+            
+            UserRendering rendering = renderUser(userCas, username, aWindowBeginOffset,
+                    aWindowEndOffset, layers);
+            renderingCache.put(e.getValue(), rendering);
+            renderings.put(username, rendering);
+        }
 
-                // copy arcs to VDoc
-                for (VArc varc : tmpDoc.arcs()) {
-                    // update varc vid
-                    VID vid = varc.getVid();
-                    VID extendedVID = new CurationVID(EXTENSION_ID, username,
-                            new VID(varc.getLayer().getId(), vid.getId(), vid.getSubId(),
-                                    vid.getAttribute(), vid.getSlot()));
-                    // set target and src with new vids for arc
-                    VSpan targetSpan = newIdSpan.get(varc.getTarget());
-                    VSpan srcSpan = newIdSpan.get(varc.getSource());
-                    VArc newVarc = new VArc(varc.getLayer(),extendedVID, varc.getType(), 
-                            srcSpan.getVid(), targetSpan.getVid(), varc.getLabelHint(), 
-                            varc.getFeatures(), color);
-                    // set user name as comment
-                    aVdoc.add(new VComment(extendedVID, VCommentType.INFO, username));
-                    aVdoc.add(newVarc);
+        // Add the renderings in the order of the users
+        for (User user : selectedUsers) {
+            UserRendering rendering = renderings.get(user.getUsername());
+            if (rendering != null) {
+                rendering.addTo(aVdoc);
+            }
+        }
+    }
+    
+    /**
+     * Reads the annotation CASes of the given users in parallel. The CASes are only rendered and
+     * never modified, so they are read in shared read-only mode. This way, the annotators can
+     * continue working on them after the session in which they were read has been closed.
+     */
+    private Map<String, CAS> readAnnotationCases(SourceDocument aDocument,
+            Iterable<String> aUsernames)
+    {
+        Map<String, Future<CAS>> futures = new LinkedHashMap<>();
+        for (String username : aUsernames) {
+            futures.put(username, casLoader.submit(() -> {
+                try (CasStorageSession session = CasStorageSession.open()) {
+                    return documentService.readAnnotationCas(aDocument, username,
+                            AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
                 }
-
+            }));
+        }
+        
+        Map<String, CAS> result = new HashMap<>();
+        for (Map.Entry<String, Future<CAS>> e : futures.entrySet()) {
+            try {
+                result.put(e.getKey(), e.getValue().get());
             }
-            catch (IOException e) {
-                log.error(String.format("Could not retrieve CAS for user %s and project %d",
-                        user.getUsername(), projectId));
-                e.printStackTrace();
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                break;
+            }
+            catch (ExecutionException ex) {
+                log.error("Could not retrieve CAS for user {} and document {}", e.getKey(),
+                        aDocument, ex.getCause());
             }
+        }
+        return result;
+    }
+    
+    private UserRendering renderUser(CAS aUserCas, String aUsername, int aWindowBeginOffset,
+            int aWindowEndOffset, List<AnnotationLayer> aLayers)
+    {
+        VDocument tmpDoc = new VDocument();
+        preRenderer.render(tmpDoc, aWindowBeginOffset, aWindowEndOffset, aUserCas, aLayers);
+        
+        UserRendering rendering = new UserRendering();
+
+        // copy all arcs and spans to existing doc with new VID
+        
+        // copy all spans and add to map as possible varc dependents
+        // spans with new vids identified by their old vid for lookup in varcs
+        Map<VID, VSpan> newIdSpan = new HashMap<>();
+        for (VSpan vspan : tmpDoc.spans()) {
+            VID aDepVID = vspan.getVid();
+            VID prevVID = VID.copyVID(aDepVID);
+            VID newVID = new CurationVID(EXTENSION_ID, aUsername,
+                    new VID(vspan.getLayer().getId(), aDepVID.getId(), aDepVID.getSubId(),
+                            aDepVID.getAttribute(), aDepVID.getSlot()));
+            vspan.setVid(newVID);
+            vspan.setColorHint(COLOR);
+            // TODO: might be better to change after bugfix #1389
+            vspan.setLazyDetails(Collections.emptyList());
+            newIdSpan.put(prevVID, vspan);
+            // set user name as comment
+            rendering.comments.add(new VComment(newVID, VCommentType.INFO, aUsername));
+            rendering.spans.add(vspan);
+        }
 
+        // copy arcs to VDoc
+        for (VArc varc : tmpDoc.arcs()) {
+            // update varc vid
+            VID vid = varc.getVid();
+            VID extendedVID = new CurationVID(EXTENSION_ID, aUsername,
+                    new VID(varc.getLayer().getId(), vid.getId(), vid.getSubId(),
+                            vid.getAttribute(), vid.getSlot()));
+            // set target and src with new vids for arc
+            VSpan targetSpan = newIdSpan.get(varc.getTarget());
+            VSpan srcSpan = newIdSpan.get(varc.getSource());
+            VArc newVarc = new VArc(varc.getLayer(),extendedVID, varc.getType(), 
+                    srcSpan.getVid(), targetSpan.getVid(), varc.getLabelHint(), 
+                    varc.getFeatures(), COLOR);
+            // set user name as comment
+            rendering.comments.add(new VComment(extendedVID, VCommentType.INFO, aUsername));
+            rendering.arcs.add(newVarc);
+        }
+        
+        return rendering;
+    }
+    
+    /**
+     * The annotations of a single user rendered for the curation.
+     */
+    private static class UserRendering
+    {
+        private final List<VSpan> spans = new ArrayList<>();
+        private final List<VArc> arcs = new ArrayList<>();
+        private final List<VComment> comments = new ArrayList<>();
+        
+        public void addTo(VDocument aVdoc)
+        {
+            comments.forEach(aVdoc::add);
+            spans.forEach(aVdoc::add);
+            arcs.forEach(aVdoc::add);
         }
     }
+    
+    private static class RenderingKey
+    {
+        private final long documentId;
+        private final String username;
+        private final long timestamp;
+        private final int windowBegin;
+        private final int windowEnd;
+        private final List<Long> layers;
+        
+        public RenderingKey(long aDocumentId, String aUsername, long aTimestamp,
+                int aWindowBegin, int aWindowEnd, List<AnnotationLayer> aLayers)
+        {
+            documentId = aDocumentId;
+            username = aUsername;
+            timestamp = aTimestamp;
+            windowBegin = aWindowBegin;
+            windowEnd = aWindowEnd;
+            layers = aLayers.stream().map(AnnotationLayer::getId).collect(toList());
+        }
 
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof RenderingKey)) {
+                return false;
+            }
+            RenderingKey castOther = (RenderingKey) other;
+            return new EqualsBuilder().append(documentId, castOther.documentId)
+                    .append(username, castOther.username).append(timestamp, castOther.timestamp)
+                    .append(windowBegin, castOther.windowBegin)
+                    .append(windowEnd, castOther.windowEnd).append(layers, castOther.layers)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(documentId).append(username).append(timestamp)
+                    .append(windowBegin).append(windowEnd).append(layers).toHashCode();
+        }
+    }
 }
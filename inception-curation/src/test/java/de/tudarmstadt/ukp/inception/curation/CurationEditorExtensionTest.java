@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.curation;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode.AUTO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.Optional;
+
+import org.apache.uima.cas.CAS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.PreRenderer;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VDocument;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.Role;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class CurationEditorExtensionTest
+{
+    private @Mock CurationService curationService;
+    private @Mock PreRenderer preRenderer;
+    private @Mock AnnotationSchemaService annotationService;
+    private @Mock DocumentService documentService;
+    private @Mock UserDao userRepository;
+    private @Mock AnnotatorState state;
+
+    private CurationEditorExtension sut;
+
+    private Project project;
+    private SourceDocument document;
+    private User beate;
+    private User kevin;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        initMocks(this);
+
+        project = new Project("testProject");
+        project.setId(1L);
+        document = new SourceDocument("testDoc", project, "text");
+        document.setId(2L);
+        User current = new User("current", Role.ROLE_USER);
+        beate = new User("beate", Role.ROLE_USER);
+        kevin = new User("kevin", Role.ROLE_USER);
+
+        when(state.getMode()).thenReturn(Mode.ANNOTATION);
+        when(state.getMetaData(CurationMetadata.CURATION_USER_PROJECT)).thenReturn(true);
+        when(state.getProject()).thenReturn(project);
+        when(state.getDocument()).thenReturn(document);
+        when(state.getAnnotationLayers()).thenReturn(emptyList());
+        when(userRepository.getCurrentUser()).thenReturn(current);
+        when(curationService.listUsersReadyForCuration("current", project, document))
+                .thenReturn(asList(beate, kevin));
+        when(documentService.getAnnotationCasTimestamp(document, "beate"))
+                .thenReturn(Optional.of(1L));
+        when(documentService.getAnnotationCasTimestamp(document, "kevin"))
+                .thenReturn(Optional.of(1L));
+        when(documentService.readAnnotationCas(document, "beate", AUTO_CAS_UPGRADE,
+                SHARED_READ_ONLY_ACCESS)).thenReturn(mock(CAS.class));
+        when(documentService.readAnnotationCas(document, "kevin", AUTO_CAS_UPGRADE,
+                SHARED_READ_ONLY_ACCESS)).thenReturn(mock(CAS.class));
+
+        sut = new CurationEditorExtension(curationService, preRenderer, annotationService,
+                documentService, userRepository);
+    }
+
+    @After
+    public void tearDown()
+    {
+        sut.destroy();
+    }
+
+    @Test
+    public void thatRenderingIsCachedPerUser() throws Exception
+    {
+        sut.render(null, state, new VDocument(), 0, 100);
+        sut.render(null, state, new VDocument(), 0, 100);
+
+        verify(documentService, times(1)).readAnnotationCas(document, "beate",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+        verify(documentService, times(1)).readAnnotationCas(document, "kevin",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+    }
+
+    @Test
+    public void thatOtherWindowIsNotServedFromCache() throws Exception
+    {
+        sut.render(null, state, new VDocument(), 0, 100);
+        sut.render(null, state, new VDocument(), 100, 200);
+
+        verify(documentService, times(2)).readAnnotationCas(document, "beate",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+    }
+
+    @Test
+    public void thatChangedCasTimestampCausesCacheMiss() throws Exception
+    {
+        sut.render(null, state, new VDocument(), 0, 100);
+
+        when(documentService.getAnnotationCasTimestamp(document, "beate"))
+                .thenReturn(Optional.of(2L));
+        sut.render(null, state, new VDocument(), 0, 100);
+
+        verify(documentService, times(2)).readAnnotationCas(document, "beate",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+        verify(documentService, times(1)).readAnnotationCas(document, "kevin",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+    }
+
+    @Test
+    public void thatWritingCasEvictsRenderingOfUser() throws Exception
+    {
+        sut.render(null, state, new VDocument(), 0, 100);
+
+        AnnotationDocument annDoc = new AnnotationDocument("testDoc", project, "beate", document);
+        AfterCasWrittenEvent event = mock(AfterCasWrittenEvent.class);
+        when(event.getDocument()).thenReturn(annDoc);
+        sut.onAfterCasWritten(event);
+
+        sut.render(null, state, new VDocument(), 0, 100);
+
+        verify(documentService, times(2)).readAnnotationCas(document, "beate",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+        verify(documentService, times(1)).readAnnotationCas(document, "kevin",
+                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+    }
+}
@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.recommendation.imls.datamajority;
 
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_REQUIRED;
+import static java.util.Arrays.asList;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 import java.util.ArrayList;
@@ -26,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -51,6 +53,8 @@ public class DataMajorityNerRecommender
         extends RecommendationEngine
 {
     public static final Key<DataMajorityModel> KEY_MODEL = new Key<>("model");
+    private static final Key<Map<String, List<Annotation>>> KEY_ANNOTATIONS = new Key<>(
+            "annotations");
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -83,6 +87,40 @@ public class DataMajorityNerRecommender
         return aContext.get(KEY_MODEL).map(Objects::nonNull).orElse(false);
     }
 // end::train[]
+
+    @Override
+    public boolean isIncrementalTrainingSupported()
+    {
+        return true;
+    }
+    
+    @Override
+    public RecommenderContext newContext(RecommenderContext aCurrentContext)
+    {
+        RecommenderContext ctx = new RecommenderContext();
+        aCurrentContext.get(KEY_ANNOTATIONS).ifPresent(anns -> ctx.put(KEY_ANNOTATIONS, anns));
+        return ctx;
+    }
+    
+    @Override
+    public void trainIncremental(RecommenderContext aContext, Map<String, CAS> aChangedCasses,
+            Set<String> aRemovedDocuments)
+        throws RecommendationException
+    {
+        // Keep the annotations per document so that the next incremental training only needs to
+        // extract the annotations from the documents that changed in the mean time
+        Map<String, List<Annotation>> annotationsByDocument = new HashMap<>(
+                aContext.get(KEY_ANNOTATIONS).orElseGet(HashMap::new));
+        aRemovedDocuments.forEach(annotationsByDocument::remove);
+        aChangedCasses.forEach((name, cas) -> annotationsByDocument.put(name,
+                extractAnnotations(asList(cas))));
+        
+        List<Annotation> annotations = new ArrayList<>();
+        annotationsByDocument.values().forEach(annotations::addAll);
+
+        aContext.put(KEY_ANNOTATIONS, annotationsByDocument);
+        aContext.put(KEY_MODEL, trainModel(annotations));
+    }
     
 // tag::extractAnnotations[]
     private List<Annotation> extractAnnotations(List<CAS> aCasses)
@@ -112,6 +112,13 @@ public class OpenNlpDoccatRecommender
         return RecommendationEngineCapability.TRAINING_REQUIRED;
     }
 
+    @Override
+    public boolean isPredictionThreadSafe()
+    {
+        // The model is thread-safe and each prediction creates its own categorizer
+        return true;
+    }
+
     @Override
     public void predict(RecommenderContext aContext, CAS aCas) throws RecommendationException
     {
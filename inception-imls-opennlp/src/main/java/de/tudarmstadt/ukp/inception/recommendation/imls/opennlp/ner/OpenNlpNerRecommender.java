@@ -114,6 +114,13 @@ public class OpenNlpNerRecommender
         return RecommendationEngineCapability.TRAINING_REQUIRED;
     }
 
+    @Override
+    public boolean isPredictionThreadSafe()
+    {
+        // The model is thread-safe and each prediction creates its own name finder
+        return true;
+    }
+
     @Override
     public void predict(RecommenderContext aContext, CAS aCas) throws RecommendationException
     {
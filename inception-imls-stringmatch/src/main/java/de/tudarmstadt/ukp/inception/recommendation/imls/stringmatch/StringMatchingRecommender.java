@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch;
 
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Comparator.comparingInt;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
@@ -29,9 +30,12 @@ import static org.apache.uima.fit.util.CasUtil.selectCovered;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -57,12 +61,26 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer.Gaz
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.Trie;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.TrieLookup;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.WhitespaceNormalizingSanitizer;
 
 public class StringMatchingRecommender
     extends RecommendationEngine
 {
     public static final Key<Trie<DictEntry>> KEY_MODEL = new Key<>("model");
+    
+    /**
+     * The entries learned from the annotations per document. Used to rebuild the model during
+     * incremental training without having to look at the unchanged documents again.
+     */
+    private static final Key<Map<String, List<GazeteerEntry>>> KEY_TRAINING_DATA = new Key<>(
+            "trainingData");
+
+    /**
+     * The compiled gazeteers. These are shared with other contexts and are overlaid over the
+     * {@link #KEY_MODEL model} learned from the annotations during prediction.
+     */
+    private static final Key<List<TrieLookup<String[]>>> KEY_GAZETEERS = new Key<>("gazeteers");
 
     private static final String UNKNOWN_LABEL = "unknown";
     private static final String NO_LABEL = "O";
@@ -114,11 +132,79 @@ public class StringMatchingRecommender
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses) throws RecommendationException
     {
-        // Pre-load the gazeteers into the model
+        pretrainGazeteers(aContext);
+        
+        Trie<DictEntry> dict = aContext.get(KEY_MODEL).orElseGet(this::createTrie);
+        
+        for (CAS cas : aCasses) {
+            for (GazeteerEntry entry : extractEntries(cas)) {
+                learn(dict, entry.text, entry.label);
+            }
+        }
+        
+        aContext.put(KEY_MODEL, dict);
+        
+        log.debug("Learned dictionary model with {} entries", dict.size());
+    }
+    
+    @Override
+    public boolean isIncrementalTrainingSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isPredictionThreadSafe()
+    {
+        // Prediction only reads from the dictionary and the gazeteers
+        return true;
+    }
+    
+    @Override
+    public RecommenderContext newContext(RecommenderContext aCurrentContext)
+    {
+        RecommenderContext ctx = new RecommenderContext();
+        aCurrentContext.get(KEY_TRAINING_DATA).ifPresent(data -> ctx.put(KEY_TRAINING_DATA, data));
+        return ctx;
+    }
+    
+    @Override
+    public void trainIncremental(RecommenderContext aContext, Map<String, CAS> aChangedCasses,
+            Set<String> aRemovedDocuments)
+        throws RecommendationException
+    {
+        // The training data map of the previous context may still be in use, so we update a copy
+        Map<String, List<GazeteerEntry>> trainingData = new HashMap<>(
+                aContext.get(KEY_TRAINING_DATA).orElseGet(HashMap::new));
+        aRemovedDocuments.forEach(trainingData::remove);
+        aChangedCasses.forEach((name, cas) -> trainingData.put(name, extractEntries(cas)));
+        
+        pretrainGazeteers(aContext);
+        
+        Trie<DictEntry> dict = aContext.get(KEY_MODEL).orElseGet(this::createTrie);
+        
+        for (List<GazeteerEntry> entries : trainingData.values()) {
+            for (GazeteerEntry entry : entries) {
+                learn(dict, entry.text, entry.label);
+            }
+        }
+        
+        aContext.put(KEY_MODEL, dict);
+        aContext.put(KEY_TRAINING_DATA, trainingData);
+        
+        log.debug("Incrementally learned dictionary model with {} entries from [{}] changed "
+                + "documents", dict.size(), aChangedCasses.size());
+    }
+    
+    private void pretrainGazeteers(RecommenderContext aContext)
+    {
+        // Attach the compiled gazeteers to the model - these are compiled only once and then
+        // shared, so we do not need to insert the gazeteer entries into the model on every run
         if (gazeteerService != null) {
+            List<TrieLookup<String[]>> gazeteers = new ArrayList<>();
             for (Gazeteer gaz : gazeteerService.listGazeteers(recommender)) {
                 try {
-                    pretrain(gazeteerService.readGazeteerFile(gaz), aContext);
+                    gazeteers.add(gazeteerService.getCompiledGazeteer(gaz));
                 }
                 catch (IOException e) {
                     log.info("Unable to load gazeteer [{}] for recommender [{}]({}) in project [{}]({})",
@@ -128,22 +214,21 @@ public class StringMatchingRecommender
                             gaz.getRecommender().getProject().getId(), e);
                 }
             }
+            aContext.put(KEY_GAZETEERS, gazeteers);
         }
-        
-        Trie<DictEntry> dict = aContext.get(KEY_MODEL).orElseGet(this::createTrie);
-        
-        for (CAS cas : aCasses) {
-            Type predictedType = getPredictedType(cas);
-            Feature predictedFeature = getPredictedFeature(cas);
+    }
+    
+    private List<GazeteerEntry> extractEntries(CAS aCas)
+    {
+        Type predictedType = getPredictedType(aCas);
+        Feature predictedFeature = getPredictedFeature(aCas);
 
-            for (AnnotationFS ann : select(cas, predictedType)) {
-                learn(dict, ann.getCoveredText(), ann.getFeatureValueAsString(predictedFeature));
-            }
+        List<GazeteerEntry> entries = new ArrayList<>();
+        for (AnnotationFS ann : select(aCas, predictedType)) {
+            entries.add(new GazeteerEntry(ann.getCoveredText(),
+                    ann.getFeatureValueAsString(predictedFeature)));
         }
-        
-        aContext.put(KEY_MODEL, dict);
-        
-        log.debug("Learned dictionary model with {} entries", dict.size());
+        return entries;
     }
 
     @Override
@@ -157,7 +242,10 @@ public class StringMatchingRecommender
         Feature isPredictionFeature = getIsPredictionFeature(aCas);
         Feature scoreFeature = getScoreFeature(aCas);
 
-        List<Sample> data = predict(0, aCas, dict);
+        List<TrieLookup<String[]>> gazeteers = aContext.get(KEY_GAZETEERS)
+                .orElse(emptyList());
+
+        List<Sample> data = predict(0, aCas, dict, gazeteers);
         
         for (Sample sample : data) {
             for (Span span : sample.getSpans()) {
@@ -171,7 +259,8 @@ public class StringMatchingRecommender
         }
     }
 
-    private List<Sample> predict(int aDocNo, CAS aCas, Trie<DictEntry> aDict)
+    private List<Sample> predict(int aDocNo, CAS aCas, Trie<DictEntry> aDict,
+            List<TrieLookup<String[]>> aGazeteers)
     {
         boolean requireEndAtTokenBoundary = !CHARACTERS
                 .equals(getRecommender().getLayer().getAnchoringMode());
@@ -189,10 +278,10 @@ public class StringMatchingRecommender
             List<Annotation> tokens = aCas.<Annotation>select(tokenType).coveredBy(sentence)
                     .asList();
             for (Annotation token : tokens) {
-                Trie<DictEntry>.Node node = aDict.getNode(text, token.getBegin());
-                if (node != null) {
+                Match match = match(aDict, aGazeteers, text, token.getBegin());
+                if (match != null) {
                     int begin = token.getBegin();
-                    int end = begin + node.level;
+                    int end = begin + match.level;
 
                     // If the end is not in the same sentence as the start, skip
                     if (requireSingleSentence && !(end <= sentence.getEnd())) {
@@ -208,7 +297,7 @@ public class StringMatchingRecommender
                         continue;
                     }
                     
-                    for (LabelStats lc : node.value.getBest(maxRecommendations)) {
+                    for (LabelStats lc : match.entry.getBest(maxRecommendations)) {
                         String label = lc.getLabel();
                         // check instance equality to avoid collision with user labels
                         if (label == UNKNOWN_LABEL) {
@@ -226,6 +315,42 @@ public class StringMatchingRecommender
         return data;
     }
 
+    /**
+     * Finds the longest match at the given offset in the model learned from the annotations and
+     * in the gazeteers. If several of them have a match of the same length, their labels are
+     * merged.
+     */
+    private Match match(Trie<DictEntry> aDict, List<TrieLookup<String[]>> aGazeteers,
+            String aText, int aOffset)
+    {
+        Trie<DictEntry>.Node node = aDict.getNode(aText, aOffset);
+        Match match = node != null ? new Match(node.level, node.value) : null;
+        boolean shared = true;
+
+        for (TrieLookup<String[]> gazeteer : aGazeteers) {
+            TrieLookup.MatchedNode<String[]> gazNode = gazeteer.getNode(aText, aOffset);
+            if (gazNode == null || (match != null && gazNode.getLevel() < match.level)) {
+                continue;
+            }
+
+            if (match == null || gazNode.getLevel() > match.level) {
+                match = new Match(gazNode.getLevel(), new DictEntry(null));
+                shared = false;
+            }
+            else if (shared) {
+                // Do not modify the entry of the model - it may be used concurrently
+                match = new Match(match.level, match.entry.copy());
+                shared = false;
+            }
+
+            for (String label : gazNode.getValue()) {
+                match.entry.put(label);
+            }
+        }
+
+        return match;
+    }
+
     @Override
     public EvaluationResult evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
     {
@@ -514,6 +639,18 @@ public class StringMatchingRecommender
         }
     }
     
+    private static class Match
+    {
+        private final int level;
+        private final DictEntry entry;
+
+        public Match(int aLevel, DictEntry aEntry)
+        {
+            level = aLevel;
+            entry = aEntry;
+        }
+    }
+    
     private static class DictEntry
     {
         private String key;
@@ -556,6 +693,14 @@ public class StringMatchingRecommender
             counts[counts.length - 1] = 1;
         }
         
+        public DictEntry copy()
+        {
+            DictEntry copy = new DictEntry(key);
+            copy.labels = labels.clone();
+            copy.counts = counts.clone();
+            return copy;
+        }
+        
         public List<LabelStats> getBest(int aN)
         {
             int total = IntStream.of(counts).sum();
@@ -25,6 +25,8 @@ import java.util.List;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.CompactTrie;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.WhitespaceNormalizingSanitizer;
 
 public interface GazeteerService
 {
@@ -59,5 +61,15 @@ public interface GazeteerService
      */
     List<GazeteerEntry> readGazeteerFile(Gazeteer aGaz) throws IOException;
 
+    /**
+     * Loads the gazeteer as a trie mapping each entry text to its labels. A label occurs multiple
+     * times if the gazeteer contains the same entry multiple times. The keys are normalized using
+     * the {@link WhitespaceNormalizingSanitizer}.
+     * <p>
+     * The trie is compiled once and stored next to the gazeteer file. The returned trie is shared
+     * and must not be modified.
+     */
+    CompactTrie<String[]> getCompiledGazeteer(Gazeteer aGaz) throws IOException;
+
     boolean existsGazeteer(Recommender aRecommender, String aName);
 }
@@ -20,14 +20,18 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.lang3.StringUtils.trimToNull;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 
@@ -46,6 +50,9 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.config.StringMatchingRecommenderAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.CompactTrie;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.Trie;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.WhitespaceNormalizingSanitizer;
 
 /**
  * <p>
@@ -56,12 +63,19 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazete
 public class GazeteerServiceImpl
     implements GazeteerService
 {
+    private static final LabelsCodec LABELS_CODEC = new LabelsCodec();
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
     
     private final EntityManager entityManager;
     
     private final RepositoryProperties repositoryProperties;
     
+    /**
+     * Compiled gazeteers by gazeteer ID. These are shared between all recommender contexts.
+     */
+    private final Map<Long, CompactTrie<String[]>> compiledGazeteers = new ConcurrentHashMap<>();
+    
     @Autowired
     public GazeteerServiceImpl(RepositoryProperties aRepositoryProperties,
             EntityManager aEntityManager)
@@ -128,6 +142,8 @@ public class GazeteerServiceImpl
         try (OutputStream os = new FileOutputStream(gazFile)) {
             IOUtils.copyLarge(aStream, os);
         }
+        
+        discardCompiledGazeteer(aGazeteer);
     }
 
     @Override
@@ -140,6 +156,12 @@ public class GazeteerServiceImpl
                 .resolve(aGazeteer.getId() + ".txt")
                 .toFile();
     }
+    
+    private File getCompiledGazeteerFile(Gazeteer aGazeteer) throws IOException
+    {
+        File gazFile = getGazeteerFile(aGazeteer);
+        return new File(gazFile.getParentFile(), aGazeteer.getId() + ".trie");
+    }
 
     @Override
     @Transactional
@@ -153,6 +175,8 @@ public class GazeteerServiceImpl
             gaz.delete();
         }
         
+        discardCompiledGazeteer(aGazeteer);
+        
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aGazeteer.getRecommender().getProject().getId()))) {
             log.info("Removed gazeteer [{}] from recommender [{}]({}) in project [{}]({})",
@@ -178,6 +202,75 @@ public class GazeteerServiceImpl
         return data;
     }
     
+    @Override
+    public CompactTrie<String[]> getCompiledGazeteer(Gazeteer aGaz) throws IOException
+    {
+        CompactTrie<String[]> trie = compiledGazeteers.get(aGaz.getId());
+        if (trie != null) {
+            return trie;
+        }
+        
+        synchronized (compiledGazeteers) {
+            trie = compiledGazeteers.get(aGaz.getId());
+            if (trie != null) {
+                return trie;
+            }
+            
+            File gazFile = getGazeteerFile(aGaz);
+            File compiledFile = getCompiledGazeteerFile(aGaz);
+            if (compiledFile.exists() && compiledFile.lastModified() >= gazFile.lastModified()) {
+                trie = CompactTrie.load(compiledFile, WhitespaceNormalizingSanitizer.factory(),
+                        LABELS_CODEC);
+            }
+            else {
+                trie = compileGazeteer(aGaz);
+                trie.save(compiledFile, LABELS_CODEC);
+            }
+            
+            compiledGazeteers.put(aGaz.getId(), trie);
+            return trie;
+        }
+    }
+    
+    private CompactTrie<String[]> compileGazeteer(Gazeteer aGaz) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        
+        Trie<String[]> trie = new Trie<>(WhitespaceNormalizingSanitizer.factory());
+        for (GazeteerEntry entry : readGazeteerFile(aGaz)) {
+            String[] labels = trie.get(entry.text);
+            if (labels == null) {
+                labels = new String[] { entry.label };
+            }
+            else {
+                String[] newLabels = new String[labels.length + 1];
+                System.arraycopy(labels, 0, newLabels, 0, labels.length);
+                newLabels[labels.length] = entry.label;
+                labels = newLabels;
+            }
+            trie.put(entry.text, labels);
+        }
+        
+        CompactTrie<String[]> compactTrie = CompactTrie.of(trie);
+        
+        log.info("Compiled gazeteer [{}]({}) with {} entries in {}ms", aGaz.getName(),
+                aGaz.getId(), compactTrie.size(), System.currentTimeMillis() - start);
+        
+        return compactTrie;
+    }
+    
+    private void discardCompiledGazeteer(Gazeteer aGaz) throws IOException
+    {
+        synchronized (compiledGazeteers) {
+            compiledGazeteers.remove(aGaz.getId());
+            
+            File compiledFile = getCompiledGazeteerFile(aGaz);
+            if (compiledFile.exists()) {
+                compiledFile.delete();
+            }
+        }
+    }
+    
     public void parseGazeteer(Gazeteer aGaz, InputStream aStream, List<GazeteerEntry> aTarget)
         throws IOException
     {
@@ -226,4 +319,35 @@ public class GazeteerServiceImpl
 
         return count > 0;
     }
+    
+    /**
+     * Reads and writes the labels of a compiled gazeteer entry.
+     */
+    private static class LabelsCodec
+        implements CompactTrie.ValueCodec<String[]>
+    {
+        @Override
+        public void write(DataOutputStream aOut, String[] aLabels) throws IOException
+        {
+            aOut.writeInt(aLabels.length);
+            for (String label : aLabels) {
+                byte[] bytes = label.getBytes(UTF_8);
+                aOut.writeInt(bytes.length);
+                aOut.write(bytes);
+            }
+        }
+
+        @Override
+        public String[] read(ByteBuffer aBuffer)
+        {
+            String[] labels = new String[aBuffer.getInt()];
+            for (int i = 0; i < labels.length; i++) {
+                byte[] bytes = new byte[aBuffer.getInt()];
+                aBuffer.get(bytes);
+                // There are usually only few distinct labels, so we share the instances
+                labels[i] = new String(bytes, UTF_8).intern();
+            }
+            return labels;
+        }
+    }
 }
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, array-backed Trie implementing the same {@link TrieLookup} operations as
+ * {@link Trie}.
+ * <p>
+ * The nodes are stored in breadth-first order in a few primitive arrays. Because of the
+ * breadth-first order, the children of each node are stored next to each other, sorted by their
+ * character, so the children of a node can be located via binary search. Unlike {@link Trie}, no
+ * per-node objects, child maps or boxed characters are required.
+ * </p>
+ *
+ * @param <V>
+ *            the value type.
+ */
+public class CompactTrie<V>
+    implements TrieLookup<V>
+{
+    private static final int NO_VALUE = -1;
+
+    private static final int MAGIC = 0x54524945; // "TRIE"
+    private static final int FORMAT_VERSION = 1;
+
+    private final KeySanitizerFactory sanitizerFactory;
+
+    /**
+     * The character on the edge leading to each node. The root node is at index 0.
+     */
+    private final char[] labels;
+
+    /**
+     * The index of the first child of each node. The children of node {@code i} are located at
+     * the indices {@code firstChild[i]} (inclusive) to {@code firstChild[i + 1]} (exclusive).
+     */
+    private final int[] firstChild;
+
+    /**
+     * The index into {@link #values} for each node or {@link #NO_VALUE} if no key ends at the
+     * node.
+     */
+    private final int[] valueIndex;
+
+    private final Object[] values;
+
+    public class Node
+        implements TrieLookup.MatchedNode<V>
+    {
+        public final V value;
+        public final int level;
+
+        Node(final V aValue, final int aLevel)
+        {
+            value = aValue;
+            level = aLevel;
+        }
+
+        @Override
+        public V getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public int getLevel()
+        {
+            return level;
+        }
+    }
+
+    private CompactTrie(KeySanitizerFactory aSanitizerFactory, char[] aLabels, int[] aFirstChild,
+            int[] aValueIndex, Object[] aValues)
+    {
+        sanitizerFactory = aSanitizerFactory;
+        labels = aLabels;
+        firstChild = aFirstChild;
+        valueIndex = aValueIndex;
+        values = aValues;
+    }
+
+    /**
+     * Creates a compact copy of the given trie. Subsequent changes to the given trie are not
+     * reflected in the copy.
+     *
+     * @param aTrie
+     *            the trie to copy.
+     * @return the compact trie.
+     */
+    public static <V> CompactTrie<V> of(Trie<V> aTrie)
+    {
+        // Count the nodes so we can allocate the arrays once
+        int nodeCount = 0;
+        Deque<Trie<V>.Node> pending = new ArrayDeque<>();
+        pending.add(aTrie.getRoot());
+        while (!pending.isEmpty()) {
+            Trie<V>.Node node = pending.poll();
+            nodeCount++;
+            pending.addAll(node.children.values());
+        }
+
+        char[] labels = new char[nodeCount];
+        int[] firstChild = new int[nodeCount + 1];
+        int[] valueIndex = new int[nodeCount];
+        Object[] values = new Object[aTrie.size()];
+
+        // Lay out the nodes in breadth-first order - since the children of each node are in a
+        // sorted map, the children also end up sorted in the arrays
+        int next = 1;
+        int valueCount = 0;
+        Deque<Trie<V>.Node> queue = new ArrayDeque<>();
+        queue.add(aTrie.getRoot());
+        for (int i = 0; i < nodeCount; i++) {
+            Trie<V>.Node node = queue.poll();
+
+            if (node.set) {
+                values[valueCount] = node.value;
+                valueIndex[i] = valueCount;
+                valueCount++;
+            }
+            else {
+                valueIndex[i] = NO_VALUE;
+            }
+
+            firstChild[i] = next;
+            for (Map.Entry<Character, Trie<V>.Node> child : node.children.entrySet()) {
+                labels[next] = child.getKey();
+                queue.add(child.getValue());
+                next++;
+            }
+        }
+        firstChild[nodeCount] = next;
+
+        return new CompactTrie<>(aTrie.getSanitizerFactory(), labels, firstChild, valueIndex,
+                values);
+    }
+
+    /**
+     * Writes the trie to the given file. The node arrays are stored as-is such that they can be
+     * loaded via {@link #load} without having to parse or re-insert the keys.
+     *
+     * @param aFile
+     *            the target file.
+     * @param aCodec
+     *            the codec used to write the values.
+     * @throws IOException
+     *             if the trie could not be written.
+     */
+    public void save(File aFile, ValueCodec<V> aCodec) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(aFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(labels.length);
+            out.writeInt(values.length);
+            for (char label : labels) {
+                out.writeChar(label);
+            }
+            for (int offset : firstChild) {
+                out.writeInt(offset);
+            }
+            for (int index : valueIndex) {
+                out.writeInt(index);
+            }
+            for (Object value : values) {
+                @SuppressWarnings("unchecked")
+                V v = (V) value;
+                aCodec.write(out, v);
+            }
+        }
+    }
+
+    /**
+     * Loads a trie previously written using {@link #save}. The file is memory-mapped and the node
+     * arrays are bulk-copied from the mapped buffer.
+     *
+     * @param aFile
+     *            the source file.
+     * @param aSanitizerFactory
+     *            the sanitizer factory which was used when building the trie (may be
+     *            {@code null}). The sanitizer is not part of the file.
+     * @param aCodec
+     *            the codec used to read the values.
+     * @return the trie.
+     * @throws IOException
+     *             if the trie could not be read.
+     */
+    public static <V> CompactTrie<V> load(File aFile, KeySanitizerFactory aSanitizerFactory,
+            ValueCodec<V> aCodec)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(aFile.toPath(), READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Trie file [" + aFile + "] is too large");
+            }
+
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("File [" + aFile + "] does not contain a trie");
+            }
+
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported trie format version [" + version + "] in ["
+                        + aFile + "]");
+            }
+
+            int nodeCount = buffer.getInt();
+            int valueCount = buffer.getInt();
+
+            char[] labels = new char[nodeCount];
+            buffer.asCharBuffer().get(labels);
+            buffer.position(buffer.position() + nodeCount * Character.BYTES);
+
+            int[] firstChild = new int[nodeCount + 1];
+            buffer.asIntBuffer().get(firstChild);
+            buffer.position(buffer.position() + (nodeCount + 1) * Integer.BYTES);
+
+            int[] valueIndex = new int[nodeCount];
+            buffer.asIntBuffer().get(valueIndex);
+            buffer.position(buffer.position() + nodeCount * Integer.BYTES);
+
+            Object[] values = new Object[valueCount];
+            for (int i = 0; i < valueCount; i++) {
+                values[i] = aCodec.read(buffer);
+            }
+
+            return new CompactTrie<>(aSanitizerFactory, labels, firstChild, valueIndex, values);
+        }
+    }
+
+    /**
+     * @return the index of the child of the given node which is reached via the given character
+     *         or {@code -1} if there is no such child.
+     */
+    private int child(int aNode, char aChar)
+    {
+        int low = firstChild[aNode];
+        int high = firstChild[aNode + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = labels[mid];
+            if (c < aChar) {
+                low = mid + 1;
+            }
+            else if (c > aChar) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node node(int aNode, int aLevel)
+    {
+        return new Node((V) values[valueIndex[aNode]], aLevel);
+    }
+
+    /**
+     * Try to match the character sequence given in key against the trie starting at the given
+     * offset in the key string. The longest matching key is returned.
+     *
+     * @param key
+     *            the key.
+     * @param offset
+     *            the offset.
+     * @return the node.
+     * @see Trie#getNode(CharSequence, int)
+     */
+    @Override
+    public Node getNode(final CharSequence key, final int offset)
+    {
+        // offset outside range
+        if (offset > key.length() - 1) {
+            return null;
+        }
+
+        KeySanitizer sanitizer = null;
+        if (sanitizerFactory != null) {
+            sanitizer = sanitizerFactory.create();
+        }
+
+        int last = 0;
+        int level = 0;
+        int match = -1;
+        int matchLevel = 0;
+        for (int i = offset; i < key.length(); i++) {
+            char k = key.charAt(i);
+
+            if (sanitizer != null) {
+                k = sanitizer.map(k);
+                if (k == KeySanitizer.SKIP_CHAR) {
+                    continue;
+                }
+            }
+
+            final int cur = child(last, k);
+            if (cur == -1) {
+                break;
+            }
+
+            level++;
+            if (valueIndex[cur] != NO_VALUE) {
+                match = cur;
+                matchLevel = level;
+            }
+            last = cur;
+        }
+
+        return match != -1 ? node(match, matchLevel) : null;
+    }
+
+    /**
+     * Try to match the character sequence given in key against the trie. This is the same as
+     * calling get(key, 0, key.length()).
+     *
+     * @param key
+     *            the key.
+     * @return the node.
+     */
+    @Override
+    public Node getNode(final CharSequence key)
+    {
+        return getNode(key, 0, key.length());
+    }
+
+    /**
+     * Try to match the character sequence given in key against the trie starting at the given
+     * offset in the key string using exactly the specified number of characters.
+     *
+     * @param key
+     *            the key.
+     * @param offset
+     *            the offset.
+     * @param length
+     *            the length.
+     * @return the node.
+     */
+    @Override
+    public Node getNode(final CharSequence key, final int offset, final int length)
+    {
+        if (key == null) {
+            return null;
+        }
+
+        int cur = walk(key, offset, length);
+        return (cur != -1 && valueIndex[cur] != NO_VALUE) ? node(cur, level(key, offset, length))
+                : null;
+    }
+
+    /**
+     * @return the node reached after consuming the given characters or {@code -1} if the
+     *         characters cannot be fully consumed.
+     */
+    private int walk(final CharSequence key, final int offset, final int length)
+    {
+        // offset or length outside range
+        if ((offset > key.length() - 1) || (offset + length > key.length())) {
+            return -1;
+        }
+
+        KeySanitizer sanitizer = null;
+        if (sanitizerFactory != null) {
+            sanitizer = sanitizerFactory.create();
+        }
+
+        int last = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char k = key.charAt(i);
+
+            if (sanitizer != null) {
+                k = sanitizer.map(k);
+                if (k == KeySanitizer.SKIP_CHAR) {
+                    continue;
+                }
+            }
+
+            last = child(last, k);
+            if (last == -1) {
+                return -1;
+            }
+        }
+
+        return last;
+    }
+
+    private int level(final CharSequence key, final int offset, final int length)
+    {
+        if (sanitizerFactory == null) {
+            return length;
+        }
+
+        KeySanitizer sanitizer = sanitizerFactory.create();
+        int level = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (sanitizer.map(key.charAt(i)) != KeySanitizer.SKIP_CHAR) {
+                level++;
+            }
+        }
+        return level;
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        if (!(key instanceof CharSequence)) {
+            return false;
+        }
+
+        return get(key) != null;
+    }
+
+    /**
+     * Checks if the given string is a prefix of a key in the Trie.
+     *
+     * @param prefix
+     *            the prefix.
+     * @return if the prefix is in the trie.
+     */
+    @Override
+    public boolean containsPrefix(final CharSequence prefix)
+    {
+        return containsPrefix(prefix, 0, prefix.length());
+    }
+
+    /**
+     * Checks if the given character sequence matches against the trie starting at the given offset
+     * in the key string using a specified number of characters.
+     *
+     * @param prefix
+     *            the prefix.
+     * @param offset
+     *            the offset.
+     * @param length
+     *            the length to match.
+     * @return whether the prefix is in the trie.
+     */
+    @Override
+    public boolean containsPrefix(final CharSequence prefix, final int offset, final int length)
+    {
+        if (prefix == null) {
+            return false;
+        }
+
+        return walk(prefix, offset, length) != -1;
+    }
+
+    @Override
+    public V get(final Object key)
+    {
+        if (!(key instanceof CharSequence)) {
+            return null;
+        }
+
+        final Node n = getNode((CharSequence) key);
+
+        return (n == null) ? null : n.value;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return values.length == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return values.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Collection<V> values()
+    {
+        final List<V> vals = new ArrayList<V>(values.length);
+        for (Object value : values) {
+            vals.add((V) value);
+        }
+        return vals;
+    }
+
+    @Override
+    public Set<String> keys()
+    {
+        final Set<String> vals = new HashSet<String>(values.length);
+        keys(0, new StringBuilder(), vals);
+        return vals;
+    }
+
+    private void keys(final int aNode, final StringBuilder b, final Set<String> vals)
+    {
+        if (valueIndex[aNode] != NO_VALUE) {
+            vals.add(b.toString());
+        }
+
+        int length = b.length();
+        for (int child = firstChild[aNode]; child < firstChild[aNode + 1]; child++) {
+            b.append(labels[child]);
+            keys(child, b, vals);
+            b.setLength(length);
+        }
+    }
+
+    /**
+     * @return the number of nodes in the trie including the root node.
+     */
+    public int nodeCount()
+    {
+        return labels.length;
+    }
+
+    /**
+     * Encodes and decodes the values of a trie when it is saved or loaded.
+     *
+     * @param <V>
+     *            the value type.
+     */
+    public interface ValueCodec<V>
+    {
+        void write(DataOutputStream aOut, V aValue) throws IOException;
+
+        V read(ByteBuffer aBuffer) throws IOException;
+    }
+}
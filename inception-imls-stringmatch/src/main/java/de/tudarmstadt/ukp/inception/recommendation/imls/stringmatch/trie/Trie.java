@@ -34,12 +34,14 @@ import java.util.TreeMap;
  *            the value type.
  */
 public class Trie<V>
+    implements TrieLookup<V>
 // implements Map<CharSequence, V>
 {
     private int size = 0;
     private KeySanitizerFactory sanitizerFactory;
 
     public class Node
+        implements TrieLookup.MatchedNode<V>
     {
         final Map<Character, Node> children;
         public V value;
@@ -52,6 +54,18 @@ public class Trie<V>
             level = l;
             set = false;
         }
+
+        @Override
+        public V getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public int getLevel()
+        {
+            return level;
+        }
     }
 
     private Node root;
@@ -73,6 +87,16 @@ public class Trie<V>
         sanitizerFactory = aSanitizer;
     }
 
+    Node getRoot()
+    {
+        return root;
+    }
+
+    KeySanitizerFactory getSanitizerFactory()
+    {
+        return sanitizerFactory;
+    }
+
     /**
      * @see Map#clear()
      */
@@ -141,6 +165,7 @@ public class Trie<V>
      *            the offset.
      * @return the node.
      */
+    @Override
     public Node getNode(final CharSequence key, final int offset)
     {
         // offset outside range
@@ -191,6 +216,7 @@ public class Trie<V>
      *            the key.
      * @return the node.
      */
+    @Override
     public Node getNode(final CharSequence key)
     {
         return getNode(key, 0, key.length());
@@ -262,6 +288,7 @@ public class Trie<V>
      *            the length.
      * @return the node.
      */
+    @Override
     public Node getNode(final CharSequence key, final int offset, final int length)
     {
         if (key == null) {
@@ -272,6 +299,7 @@ public class Trie<V>
         return ((match != null) && match.set) ? match : null;
     }
 
+    @Override
     public boolean containsKey(final Object key)
     {
         if (!(key instanceof CharSequence)) {
@@ -288,6 +316,7 @@ public class Trie<V>
      *            the prefix.
      * @return if the prefix is in the trie.
      */
+    @Override
     public boolean containsPrefix(final CharSequence prefix)
     {
         return containsPrefix(prefix, 0, prefix.length());
@@ -305,6 +334,7 @@ public class Trie<V>
      *            the length to match.
      * @return whether the prefix is in the trie.
      */
+    @Override
     public boolean containsPrefix(final CharSequence prefix, final int offset, final int length)
     {
         if (prefix == null) {
@@ -320,6 +350,7 @@ public class Trie<V>
      *
      * @see java.util.Map#get(java.lang.Object)
      */
+    @Override
     public V get(final Object key)
     {
         if (!(key instanceof CharSequence)) {
@@ -331,6 +362,7 @@ public class Trie<V>
         return (n == null) ? null : n.value;
     }
 
+    @Override
     public boolean isEmpty()
     {
         return size == 0;
@@ -348,11 +380,13 @@ public class Trie<V>
         }
     }
 
+    @Override
     public int size()
     {
         return size;
     }
 
+    @Override
     public Collection<V> values()
     {
         final List<V> vals = new ArrayList<V>(size);
@@ -375,6 +409,7 @@ public class Trie<V>
         }
     }
 
+    @Override
     public Set<String> keys()
     {
         final Set<String> vals = new HashSet<String>(size);
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * The lookup operations shared by the mutable {@link Trie} and the immutable {@link CompactTrie},
+ * such that code which only matches against a trie can work with either implementation.
+ *
+ * @param <V>
+ *            the value type.
+ */
+public interface TrieLookup<V>
+{
+    /**
+     * A node of the trie at which a key ends.
+     *
+     * @param <V>
+     *            the value type.
+     */
+    interface MatchedNode<V>
+    {
+        /**
+         * @return the value stored for the key ending at this node.
+         */
+        V getValue();
+
+        /**
+         * @return the length of the (sanitized) key ending at this node.
+         */
+        int getLevel();
+    }
+
+    /**
+     * Try to match the character sequence given in key against the trie starting at the given
+     * offset in the key string. The longest matching key is returned.
+     *
+     * @param key
+     *            the key.
+     * @param offset
+     *            the offset.
+     * @return the node.
+     */
+    MatchedNode<V> getNode(CharSequence key, int offset);
+
+    /**
+     * Try to match the character sequence given in key against the trie. This is the same as
+     * calling get(key, 0, key.length()).
+     *
+     * @param key
+     *            the key.
+     * @return the node.
+     */
+    MatchedNode<V> getNode(CharSequence key);
+
+    /**
+     * Try to match the character sequence given in key against the trie starting at the given
+     * offset in the key string using a specified number of characters.
+     *
+     * @param key
+     *            the key.
+     * @param offset
+     *            the offset.
+     * @param length
+     *            the length.
+     * @return the node.
+     */
+    MatchedNode<V> getNode(CharSequence key, int offset, int length);
+
+    boolean containsKey(Object key);
+
+    /**
+     * Checks if the given string is a prefix of a key in the Trie.
+     *
+     * @param prefix
+     *            the prefix.
+     * @return if the prefix is in the trie.
+     */
+    boolean containsPrefix(CharSequence prefix);
+
+    /**
+     * Checks if the given character sequence matches against the trie starting at the given offset
+     * in the key string using a specified number of characters.
+     *
+     * @param prefix
+     *            the prefix.
+     * @param offset
+     *            the offset.
+     * @param length
+     *            the length to match.
+     * @return whether the prefix is in the trie.
+     */
+    boolean containsPrefix(CharSequence prefix, int offset, int length);
+
+    V get(Object key);
+
+    boolean isEmpty();
+
+    int size();
+
+    Collection<V> values();
+
+    Set<String> keys();
+}
@@ -22,9 +22,13 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
 import static de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper.getPredictions;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.apache.uima.fit.util.JCasUtil.select;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.Assumptions.assumeThat;
 import static org.dkpro.core.api.datasets.DatasetValidationPolicy.CONTINUE;
 
@@ -32,7 +36,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
@@ -259,6 +265,44 @@ public class StringMatchingRecommenderTest
             .anyMatch(prediction -> getScore(prediction) > 0.0 && getScore(prediction) < 1.0 );
     }
 
+    @Test
+    public void thatIncrementalTrainingWorks() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+
+        int[][] sentences = new int[][] { { 0, 14 } };
+        int[][] tokens = new int[][] { { 0, 4 }, { 5, 7 }, { 8, 12 }, { 13, 14 } };
+        CAS doc1 = getTestNECas("John is here .", new String[] { "PER" },
+                new int[][] { { 0, 4 } }, sentences, tokens).get(0);
+        CAS doc2 = getTestNECas("Rome is nice .", new String[] { "LOC" },
+                new int[][] { { 0, 4 } }, sentences, tokens).get(0);
+
+        Map<String, CAS> allDocuments = new LinkedHashMap<>();
+        allDocuments.put("doc1", doc1);
+        allDocuments.put("doc2", doc2);
+        sut.trainIncremental(context, allDocuments, emptySet());
+        context.close();
+
+        // The annotation in doc1 changes and doc2 no longer provides training data
+        CAS doc1Changed = getTestNECas("John is here .", new String[] { "ORG" },
+                new int[][] { { 0, 4 } }, sentences, tokens).get(0);
+        RecommenderContext nextContext = sut.newContext(context);
+        sut.trainIncremental(nextContext, singletonMap("doc1", doc1Changed), singleton("doc2"));
+
+        CAS cas = getTestNECas("John and Rome .", new String[0], new int[0][],
+                new int[][] { { 0, 15 } }, new int[][] { { 0, 4 }, { 5, 8 }, { 9, 13 },
+                        { 14, 15 } }).get(0);
+        casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+
+        sut.predict(nextContext, cas);
+
+        List<NamedEntity> predictions = getPredictions(cas, NamedEntity.class);
+
+        assertThat(predictions)
+                .extracting(NamedEntity::getCoveredText, NamedEntity::getValue)
+                .containsExactly(tuple("John", "ORG"));
+    }
 
     @Test
     public void thatEvaluationWorks() throws Exception
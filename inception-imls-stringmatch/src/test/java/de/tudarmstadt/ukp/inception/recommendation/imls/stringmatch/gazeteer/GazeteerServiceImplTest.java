@@ -59,6 +59,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
+import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.CompactTrie;
 
 @RunWith(SpringRunner.class) 
 @DataJpaTest
@@ -211,6 +212,37 @@ public class GazeteerServiceImplTest
                 .isFalse();
     }
     
+    @Test
+    public void thatCompiledGazeteerWorks() throws Exception
+    {
+        Gazeteer gaz = new Gazeteer("gaz", rec1);
+        sut.createOrUpdateGazeteer(gaz);
+        
+        try (InputStream is = new FileInputStream("src/test/resources/gazeteers/gaz1.txt")) {
+            sut.importGazeteerFile(gaz, is);
+        }
+        
+        CompactTrie<String[]> trie = sut.getCompiledGazeteer(gaz);
+        assertThat(trie.keys()).containsExactlyInAnyOrder("John", "London", "ACME");
+        assertThat(trie.get("London")).containsExactlyInAnyOrder("LOC", "GPE");
+        assertThat(sut.getCompiledGazeteer(gaz))
+                .describedAs("Compiled gazeteer is shared")
+                .isSameAs(trie);
+        
+        // Check that a fresh service instance loads the compiled gazeteer from disk
+        RepositoryProperties repoProps = new RepositoryProperties();
+        repoProps.setPath(temporaryFolder.getRoot());
+        GazeteerServiceImpl sut2 = new GazeteerServiceImpl(repoProps,
+                testEntityManager.getEntityManager());
+        CompactTrie<String[]> loadedTrie = sut2.getCompiledGazeteer(gaz);
+        assertThat(loadedTrie.keys()).isEqualTo(trie.keys());
+        assertThat(loadedTrie.get("London")).containsExactly(trie.get("London"));
+        
+        // Check that re-importing the gazeteer invalidates the compiled gazeteer
+        sut.importGazeteerFile(gaz, toInputStream("Paris\tLOC", UTF_8));
+        assertThat(sut.getCompiledGazeteer(gaz).keys()).containsExactly("Paris");
+    }
+
     @Test
     public void thatGazeteerCommentLineIsIgnored() throws Exception
     {
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactTrieTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void thatElementsCanBeRetrieved()
+    {
+        List<String> keys = asList("1", "asf", "asf sadf", "dsjkla sfasd kj92");
+
+        Trie<String> trie = new Trie<>();
+        int i = 0;
+        for (String key : keys) {
+            trie.put(key, String.valueOf(i));
+            i++;
+        }
+
+        CompactTrie<String> sut = CompactTrie.of(trie);
+
+        assertThat(sut.size()).isEqualTo(keys.size());
+        assertThat(sut.keys()).containsExactlyInAnyOrderElementsOf(keys);
+        assertThat(sut.values()).containsExactlyInAnyOrder("0", "1", "2", "3");
+
+        i = 0;
+        for (String key : keys) {
+            assertThat(sut.get(key)).isEqualTo(String.valueOf(i));
+            assertThat(sut.getNode(key).level).isEqualTo(key.length());
+            i++;
+        }
+
+        assertThat(sut.getNode("029332")).isNull();
+        assertThat(sut.getNode("asf sa")).isNull();
+        assertThat(sut.containsPrefix("asf sa")).isTrue();
+        assertThat(sut.containsPrefix("asx")).isFalse();
+    }
+
+    @Test
+    public void thatLongestMatchIsFoundAtOffset()
+    {
+        Trie<String> trie = new Trie<>();
+        trie.put("New", "a");
+        trie.put("New York", "b");
+        trie.put("New York City Hall", "c");
+
+        CompactTrie<String> sut = CompactTrie.of(trie);
+
+        String text = "I live in New York City.";
+
+        CompactTrie<String>.Node node = sut.getNode(text, text.indexOf("New"));
+        assertThat(node.value).isEqualTo("b");
+        assertThat(node.level).isEqualTo("New York".length());
+
+        assertThat(sut.getNode(text, 0)).isNull();
+    }
+
+    @Test
+    public void testThatKeySanitizerWorks()
+    {
+        Trie<String> trie = new Trie<>(WhitespaceNormalizingSanitizer.factory());
+        trie.put("  this is\ta test  .", "exists");
+
+        CompactTrie<String> sut = CompactTrie.of(trie);
+
+        assertThat(sut.getNode("this is a test .")).isNotNull();
+        assertThat(sut.getNode("  this is\ta test  .")).isNotNull();
+        assertThat(sut.getNode("xx  this is\ta test  .", 2).value).isEqualTo("exists");
+    }
+
+    @Test
+    public void thatLookupsMatchTrie()
+    {
+        Random rnd = new Random(42);
+
+        Trie<Integer> trie = new Trie<>(WhitespaceNormalizingSanitizer.factory());
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = randomString(rnd, 1 + rnd.nextInt(12));
+            keys.add(key);
+            trie.put(key, i);
+        }
+
+        // Both implementations are accessed only through the shared lookup interface
+        TrieLookup<Integer> reference = trie;
+        TrieLookup<Integer> sut = CompactTrie.of(trie);
+
+        assertThat(sut.size()).isEqualTo(reference.size());
+        assertThat(sut.keys()).isEqualTo(reference.keys());
+
+        String text = randomString(rnd, 50_000);
+        for (int offset = 0; offset < text.length(); offset++) {
+            TrieLookup.MatchedNode<Integer> expected = reference.getNode(text, offset);
+            TrieLookup.MatchedNode<Integer> actual = sut.getNode(text, offset);
+
+            if (expected == null) {
+                assertThat(actual).isNull();
+            }
+            else {
+                assertThat(actual).isNotNull();
+                assertThat(actual.getValue()).isEqualTo(expected.getValue());
+                assertThat(actual.getLevel()).isEqualTo(expected.getLevel());
+            }
+        }
+    }
+
+    @Test
+    public void thatSaveAndLoadWorks() throws Exception
+    {
+        Trie<Integer> trie = new Trie<>(WhitespaceNormalizingSanitizer.factory());
+        trie.put("New", 1);
+        trie.put("New York", 2);
+        trie.put("Paris", 3);
+
+        CompactTrie<Integer> sut = CompactTrie.of(trie);
+
+        CompactTrie.ValueCodec<Integer> codec = new CompactTrie.ValueCodec<Integer>()
+        {
+            @Override
+            public void write(DataOutputStream aOut, Integer aValue) throws IOException
+            {
+                aOut.writeInt(aValue);
+            }
+
+            @Override
+            public Integer read(ByteBuffer aBuffer)
+            {
+                return aBuffer.getInt();
+            }
+        };
+
+        File file = temporaryFolder.newFile("test.trie");
+        sut.save(file, codec);
+
+        CompactTrie<Integer> loaded = CompactTrie.load(file,
+                WhitespaceNormalizingSanitizer.factory(), codec);
+
+        assertThat(loaded.size()).isEqualTo(sut.size());
+        assertThat(loaded.nodeCount()).isEqualTo(sut.nodeCount());
+        assertThat(loaded.keys()).isEqualTo(sut.keys());
+        assertThat(loaded.get("New")).isEqualTo(1);
+        assertThat(loaded.get("New York")).isEqualTo(2);
+        assertThat(loaded.getNode("I like  New  York.", 8).value).isEqualTo(2);
+    }
+
+    private static String randomString(Random aRandom, int aLength)
+    {
+        // Use a small alphabet to get many shared prefixes and matches
+        String alphabet = "abcde ";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < aLength; i++) {
+            sb.append(alphabet.charAt(aRandom.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import java.io.Serializable;
+
+/**
+ * Progress of importing data into a knowledge base.
+ */
+public class ImportProgress
+    implements Serializable
+{
+    private static final long serialVersionUID = 2630916224549727383L;
+
+    public enum Phase
+    {
+        /**
+         * The statements are being read and stored.
+         */
+        IMPORTING,
+
+        /**
+         * All statements have been stored and the full text index is being rebuilt.
+         */
+        INDEXING,
+
+        /**
+         * The import has completed successfully.
+         */
+        COMPLETED,
+
+        /**
+         * The import has failed.
+         */
+        FAILED
+    }
+
+    private final String filename;
+    private final Phase phase;
+    private final long statements;
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long duration;
+
+    public ImportProgress(String aFilename, Phase aPhase, long aStatements, long aBytesRead,
+            long aTotalBytes, long aDuration)
+    {
+        filename = aFilename;
+        phase = aPhase;
+        statements = aStatements;
+        bytesRead = aBytesRead;
+        totalBytes = aTotalBytes;
+        duration = aDuration;
+    }
+
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    public Phase getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * @return number of statements which have already been imported.
+     */
+    public long getStatements()
+    {
+        return statements;
+    }
+
+    /**
+     * @return number of bytes which have already been read from the (possibly compressed) data.
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * @return total number of bytes of the (possibly compressed) data or {@code -1} if unknown.
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * @return time since the import has started in milliseconds.
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    public long getStatementsPerSecond()
+    {
+        return duration > 0 ? statements * 1000 / duration : 0;
+    }
+
+    /**
+     * @return the share of the data which has already been read in percent or {@code -1} if
+     *         the total size is unknown.
+     */
+    public int getPercentage()
+    {
+        return totalBytes > 0 ? (int) (bytesRead * 100 / totalBytes) : -1;
+    }
+
+    public boolean isDone()
+    {
+        return phase == Phase.COMPLETED || phase == Phase.FAILED;
+    }
+}
@@ -17,9 +17,11 @@
  */
 package de.tudarmstadt.ukp.inception.kb;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -57,7 +59,53 @@ public interface KnowledgeBaseService
      */
     Map<String, KnowledgeBaseProfile> readKnowledgeBaseProfiles() throws IOException;
 
+    /**
+     * Imports the data from the given stream into a local knowledge base. The data is parsed in a
+     * streaming fashion and committed in chunks. The full text index (if any) is updated along
+     * with every chunk.
+     * 
+     * @param kb
+     *            the knowledge base to import the data into
+     * @param aFilename
+     *            the name of the file - used to determine the format of the data
+     * @param aIS
+     *            the data - may be compressed
+     * @throws IOException
+     *             if the data cannot be read
+     */
     void importData(KnowledgeBase kb, String aFilename, InputStream aIS) throws IOException;
+    
+    /**
+     * Imports the data from the given file like {@link #importData} but in a background task.
+     * Background imports run one after another. Use {@link #listImportProgress} to monitor them.
+     * <p>
+     * Background imports are meant for bulk data. If the knowledge base has a full text index, it
+     * is not updated along with every chunk. Instead, the index is rebuilt from all the data in
+     * the knowledge base after the import. When multiple background imports into the same
+     * knowledge base are queued, only the last of them rebuilds the index.
+     * 
+     * @param kb
+     *            the knowledge base to import the data into
+     * @param aFilename
+     *            the name of the file - used to determine the format of the data
+     * @param aFile
+     *            the file containing the data - may be compressed. The file is opened right
+     *            away, so it may be deleted as soon as this method returns.
+     * @throws IOException
+     *             if the file cannot be opened.
+     */
+    void importDataInBackground(KnowledgeBase kb, String aFilename, File aFile)
+        throws IOException;
+    
+    /**
+     * @param kb
+     *            the knowledge base
+     * @return the progress of the imports into the given knowledge base in the order in which
+     *         they have been started. Finished imports are included until a new import is
+     *         started while no other import is pending or running. The list is empty if there has
+     *         been no import since the application has been started.
+     */
+    List<ImportProgress> listImportProgress(KnowledgeBase kb);
 
     /**
      * Writes the contents of a knowledge base of type {@link RepositoryType#LOCAL} to a given
@@ -327,6 +375,22 @@ public interface KnowledgeBaseService
 
     boolean hasChildConcepts(KnowledgeBase aKB, String aParentIdentifier, boolean aAll);
     
+    /**
+     * Counts the child concepts of each of the given concepts. All concepts are checked using a
+     * single query. The counts are cached for all KBs. Modifying a KB increments its generation,
+     * which invalidates the cached counts.
+     * 
+     * @param aKB
+     *            the knowledge base to query
+     * @param aParentIdentifiers
+     *            the identifiers of the concepts whose children should be counted
+     * @param aAll
+     *            whether to count children from implicit namespaces (e.g. defined by RDF)
+     * @return the number of children for every given identifier (0 if it has no children)
+     */
+    Map<String, Integer> countChildConcepts(KnowledgeBase aKB,
+            Collection<String> aParentIdentifiers, boolean aAll);
+    
     List<KBHandle> listChildConcepts(KnowledgeBase kb, String parentIdentifier, boolean aAll)
         throws QueryEvaluationException;
 
@@ -536,4 +600,15 @@ public interface KnowledgeBaseService
     List<KBHandle> listHandlesCaching(KnowledgeBase aKB, SPARQLQuery aQuery, boolean aAll);
     
     Optional<KBHandle> fetchHandleCaching(KnowledgeBase aKB, SPARQLQuery aQuery, boolean aAll);
+    
+    /**
+     * Returns the generation of the data in the given knowledge base. The generation changes
+     * whenever the data in the knowledge base is modified. Including it in cache keys ensures that
+     * results cached before a modification are never used afterwards.
+     * 
+     * @param aKB
+     *            the knowledge base
+     * @return the current generation of the knowledge base
+     */
+    long getGeneration(KnowledgeBase aKB);
 }
@@ -19,12 +19,17 @@ package de.tudarmstadt.ukp.inception.kb;
 
 import static de.tudarmstadt.ukp.inception.kb.querybuilder.Path.zeroOrMore;
 import static de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder.DEFAULT_LIMIT;
+import static de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder.VAR_COUNT_NAME;
+import static de.tudarmstadt.ukp.inception.kb.querybuilder.SPARQLQueryBuilder.VAR_PARENT_NAME;
+import static java.lang.System.currentTimeMillis;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.emptyList;
 import static org.eclipse.rdf4j.sparqlbuilder.rdf.Rdf.iri;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,12 +37,20 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
@@ -48,12 +61,15 @@ import javax.persistence.TypedQuery;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
@@ -74,8 +90,11 @@ import org.eclipse.rdf4j.repository.sail.config.SailRepositoryConfig;
 import org.eclipse.rdf4j.repository.sparql.config.SPARQLRepositoryConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.RDFWriter;
 import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.lucene.LuceneSail;
 import org.eclipse.rdf4j.sail.lucene.config.LuceneSailConfig;
 import org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreConfig;
@@ -90,6 +109,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.Transactional;
@@ -97,6 +117,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -105,9 +126,11 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRe
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.support.SettingsUtil;
 import de.tudarmstadt.ukp.clarin.webanno.support.StopWatch;
+import de.tudarmstadt.ukp.inception.kb.ImportProgress.Phase;
 import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseProperties;
 import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseContentChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBConcept;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBInstance;
@@ -142,8 +165,23 @@ public class KnowledgeBaseServiceImpl
     private final File kbRepositoriesRoot;
 
     private @SpringBean FeatureSupportRegistry featureSupportRegistry;
+    private @Autowired(required = false) ApplicationEventPublisher applicationEventPublisher;
 
     private final LoadingCache<QueryKey, List<KBHandle>> queryCache;
+    private final Cache<ChildCountKey, Integer> childCountCache;
+    
+    /**
+     * Generation of the data in each knowledge base (by repository ID). The generation is part of
+     * the cache keys and is incremented whenever the knowledge base is modified. Thus, cached
+     * results of writable knowledge bases are never used after a modification - even if a query
+     * which was still running during the modification adds its (outdated) result to the cache.
+     * Writes are cheap because the caches do not need to be scanned for outdated entries.
+     */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    
+    private final int importChunkSize;
+    private final ExecutorService importExecutor;
+    private final Map<String, ImportQueue> importQueues = new ConcurrentHashMap<>();
     
     @Autowired
     public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties,
@@ -161,6 +199,17 @@ public class KnowledgeBaseServiceImpl
         
         queryCache = cacheBuilder.build(this::runQuery);
         
+        childCountCache = Caffeine.newBuilder()
+                .maximumSize(aKBProperties.getCacheSize())
+                .expireAfterAccess(aKBProperties.getCacheExpireDelay())
+                .build();
+        
+        importChunkSize = aKBProperties.getImportChunkSize();
+        importExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("kb-import-%d")
+                .daemon(true)
+                .build());
+        
         kbRepositoriesRoot = new File(aRepoProperties.getPath(), "kb");
         
         // Originally, the KBs were stored next to the repository folder - but they should be
@@ -237,6 +286,7 @@ public class KnowledgeBaseServiceImpl
     @Override
     public void destroy() throws Exception
     {
+        importExecutor.shutdownNow();
         repoManager.shutDown();
     }
 
@@ -338,6 +388,8 @@ public class KnowledgeBaseServiceImpl
         assertRegistration(kb);
         repoManager.addRepositoryConfig(new RepositoryConfig(kb.getRepositoryId(), cfg));
         entityManager.merge(kb);
+        
+        fireContentChanged(kb);
     }
 
     @SuppressWarnings("unchecked")
@@ -381,6 +433,10 @@ public class KnowledgeBaseServiceImpl
         repoManager.removeRepository(aKB.getRepositoryId());
 
         entityManager.remove(entityManager.contains(aKB) ? aKB : entityManager.merge(aKB));
+        
+        fireContentChanged(aKB);
+        generations.remove(aKB.getRepositoryId());
+        importQueues.remove(aKB.getRepositoryId());
     }
 
     @Override
@@ -421,13 +477,80 @@ public class KnowledgeBaseServiceImpl
     @Override
     public void importData(KnowledgeBase kb, String aFilename, InputStream aIS)
         throws RDFParseException, RepositoryException, IOException
+    {
+        ImportQueue queue = getImportQueue(kb);
+        ImportTracker tracker = new ImportTracker(aFilename, -1, false);
+        queue.add(tracker);
+        try {
+            importData(kb, aIS, queue, tracker);
+        }
+        finally {
+            queue.finish(tracker);
+        }
+    }
+    
+    @Override
+    public void importDataInBackground(KnowledgeBase kb, String aFilename, File aFile)
+        throws IOException
+    {
+        // Open the file right away - it may be a temporary file which is removed soon
+        InputStream input = new FileInputStream(aFile);
+        
+        // Register the import right away so it is visible as pending while other imports run
+        ImportQueue queue = getImportQueue(kb);
+        ImportTracker tracker = new ImportTracker(aFilename, aFile.length(), true);
+        queue.add(tracker);
+        
+        try {
+            importExecutor.submit(() -> {
+                try (InputStream is = input) {
+                    importData(kb, is, queue, tracker);
+                }
+                catch (Exception e) {
+                    log.error("Unable to import [{}] into knowledge base [{}]", aFilename,
+                            kb.getName(), e);
+                }
+                finally {
+                    queue.finish(tracker);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            tracker.setPhase(Phase.FAILED);
+            queue.finish(tracker);
+            input.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public List<ImportProgress> listImportProgress(KnowledgeBase kb)
+    {
+        ImportQueue queue = importQueues.get(kb.getRepositoryId());
+        return queue != null ? queue.listProgress() : emptyList();
+    }
+    
+    private ImportQueue getImportQueue(KnowledgeBase aKB)
+    {
+        return importQueues.computeIfAbsent(aKB.getRepositoryId(), id -> new ImportQueue());
+    }
+    
+    private void importData(KnowledgeBase kb, InputStream aIS, ImportQueue aQueue,
+            ImportTracker aTracker)
+        throws RDFParseException, RepositoryException, IOException
     {
         if (kb.isReadOnly()) {
             log.warn("Knowledge base [{}] is read only, will not import!", kb.getName());
+            aTracker.setPhase(Phase.FAILED);
             return;
         }
+        
+        aTracker.start();
 
-        InputStream is = new BufferedInputStream(aIS);
+        CountingInputStream counter = new CountingInputStream(aIS);
+        aTracker.setInput(counter);
+        
+        InputStream is = new BufferedInputStream(counter);
         try {
             // Stream is expected to be closed by caller of importData
             is = new CompressorStreamFactory().createCompressorInputStream(is);
@@ -438,15 +561,84 @@ public class KnowledgeBaseServiceImpl
         }
 
         // Detect the file format
-        RDFFormat format = Rio.getParserFormatForFileName(aFilename).orElse(RDFFormat.RDFXML);
-
+        RDFFormat format = Rio.getParserFormatForFileName(aTracker.filename)
+                .orElse(RDFFormat.RDFXML);
+        RDFParser parser = Rio.createParser(format);
+
+        // If the RDF file contains relative URLs, then they probably start with a hash.
+        // To avoid having two hashes here, we drop the hash from the base prefix configured
+        // by the user.
+        String prefix = StringUtils.removeEnd(kb.getBasePrefix(), "#");
+        
         // Load files into the repository
-        try (RepositoryConnection conn = getConnection(kb)) {
-            // If the RDF file contains relative URLs, then they probably start with a hash.
-            // To avoid having two hashes here, we drop the hash from the base prefix configured
-            // by the user.
-            String prefix = StringUtils.removeEnd(kb.getBasePrefix(), "#");
-            conn.add(is, prefix, format);
+        try {
+            // Updating the full text index along with every chunk is slow for bulk imports, so
+            // for these we write to the store underneath the index and rebuild the index once at
+            // the end. Other imports update the index incrementally since rebuilding the index of
+            // a large knowledge base after importing a small file would be even slower.
+            LuceneSail luceneSail = aTracker.deferIndexing ? getLuceneSail(kb) : null;
+            if (luceneSail != null) {
+                try (SailConnection conn = luceneSail.getBaseSail().getConnection()) {
+                    parser.setRDFHandler(new ChunkedImportHandler(aTracker,
+                        (statements, namespaces) -> {
+                            conn.begin();
+                            for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+                                if (conn.getNamespace(ns.getKey()) == null) {
+                                    conn.setNamespace(ns.getKey(), ns.getValue());
+                                }
+                            }
+                            for (Statement st : statements) {
+                                Resource[] contexts = st.getContext() != null
+                                        ? new Resource[] { st.getContext() }
+                                        : new Resource[0];
+                                conn.addStatement(st.getSubject(), st.getPredicate(),
+                                        st.getObject(), contexts);
+                            }
+                            conn.commit();
+                        }));
+                    parser.parse(is, prefix);
+                }
+                finally {
+                    // The statements stored so far need to be indexed even if the import failed.
+                    // Rebuilding the index always covers all the data in the knowledge base, so
+                    // if further bulk imports into it are queued already, we leave it to the last
+                    // one.
+                    if (aQueue.isLastDeferringIndexing(aTracker)) {
+                        aTracker.setPhase(Phase.INDEXING);
+                        reindex(kb, luceneSail);
+                    }
+                }
+            }
+            else {
+                try (RepositoryConnection conn = getConnection(kb)) {
+                    parser.setRDFHandler(new ChunkedImportHandler(aTracker,
+                        (statements, namespaces) -> {
+                            conn.begin();
+                            for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+                                if (conn.getNamespace(ns.getKey()) == null) {
+                                    conn.setNamespace(ns.getKey(), ns.getValue());
+                                }
+                            }
+                            conn.add(statements);
+                            conn.commit();
+                        }));
+                    parser.parse(is, prefix);
+                }
+            }
+            
+            aTracker.setPhase(Phase.COMPLETED);
+            ImportProgress progress = aTracker.toImportProgress();
+            log.info("Imported [{}] statements from [{}] into knowledge base [{}] in {}ms "
+                    + "({} statements/s)", progress.getStatements(), progress.getFilename(),
+                    kb.getName(), progress.getDuration(), progress.getStatementsPerSecond());
+        }
+        catch (RuntimeException | IOException e) {
+            aTracker.setPhase(Phase.FAILED);
+            throw e;
+        }
+        finally {
+            // Even if the import failed, some data may have been added
+            fireContentChanged(kb);
         }
     }
     
@@ -469,6 +661,8 @@ public class KnowledgeBaseServiceImpl
         try (RepositoryConnection conn = getConnection(kb)) {
             conn.clear();
         }
+        
+        fireContentChanged(kb);
     }
 
     @Override
@@ -505,13 +699,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .retrieveDescription();
             
-            Optional<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = fetchHandleCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandle(conn, aAll));
-            }
+            Optional<KBHandle> result = fetchHandleCaching(aKB, query, aAll);
             
             return result
                     .map(handle -> KBHandle.convertTo(KBConcept.class, handle));
@@ -562,13 +750,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveDescription()
                     .excludeInferred();
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
 
             return result;
         }
@@ -600,13 +782,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveDomainAndRange()
                     .excludeInferred();
             
-            Optional<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = fetchHandleCaching(aKB, query, true);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandle(conn, true));
-            }
+            Optional<KBHandle> result = fetchHandleCaching(aKB, query, true);
             
             return result
                     .map(handle -> KBHandle.convertTo(KBProperty.class, handle));
@@ -654,13 +830,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveDomainAndRange()
                     .includeInferred(aIncludeInferred);
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
             
             return result;
         }
@@ -692,13 +862,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .excludeInferred();
             
-            Optional<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = fetchHandleCaching(aKB, query, true);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandle(conn, true));
-            }
+            Optional<KBHandle> result = fetchHandleCaching(aKB, query, true);
             
             return result
                     .map(handle -> KBHandle.convertTo(KBInstance.class, handle));
@@ -749,13 +913,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .retrieveDescription();
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
 
             return result;
         }
@@ -841,6 +999,26 @@ public class KnowledgeBaseServiceImpl
                 }
             }
         }
+        
+        fireContentChanged(kb);
+    }
+    
+    @Override
+    public long getGeneration(KnowledgeBase aKB)
+    {
+        return generations.computeIfAbsent(aKB.getRepositoryId(), id -> new AtomicLong())
+                .get();
+    }
+    
+    private void fireContentChanged(KnowledgeBase aKB)
+    {
+        generations.computeIfAbsent(aKB.getRepositoryId(), id -> new AtomicLong())
+                .incrementAndGet();
+        // Outdated cache entries are no longer accessed and get evicted eventually
+        
+        if (applicationEventPublisher != null) {
+            applicationEventPublisher.publishEvent(new KnowledgeBaseContentChangedEvent(this, aKB));
+        }
     }
 
     @Override
@@ -865,13 +1043,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveDomainAndRange()
                     .includeInferred(aIncludeInferred);
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
             
             return result.stream()
                     .map(handle -> KBHandle.convertTo(KBProperty.class, handle))
@@ -890,13 +1062,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .retrieveDescription();
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
             
             return result;
         }
@@ -913,6 +1079,59 @@ public class KnowledgeBaseServiceImpl
         }
     }
 
+    @Override
+    public Map<String, Integer> countChildConcepts(KnowledgeBase aKB,
+            Collection<String> aParentIdentifiers, boolean aAll)
+    {
+        try (StopWatch watch = new StopWatch(log, "countChildConcepts(%d)",
+                aParentIdentifiers.size())) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            long generation = getGeneration(aKB);
+            
+            Set<String> uncachedIdentifiers = new LinkedHashSet<>();
+            for (String identifier : aParentIdentifiers) {
+                Integer count = childCountCache
+                        .getIfPresent(new ChildCountKey(aKB, generation, identifier, aAll));
+                if (count != null) {
+                    counts.put(identifier, count);
+                }
+                else {
+                    uncachedIdentifiers.add(identifier);
+                }
+            }
+            
+            if (uncachedIdentifiers.isEmpty()) {
+                return counts;
+            }
+            
+            Map<String, Integer> queriedCounts = read(aKB, conn -> {
+                SelectQuery query = SPARQLQueryBuilder.countChildClassesQuery(aKB,
+                        uncachedIdentifiers, aAll);
+                
+                TupleQuery tupleQuery = conn.prepareTupleQuery(query.getQueryString());
+                
+                Map<String, Integer> result = new HashMap<>();
+                try (TupleQueryResult bindingsIterator = tupleQuery.evaluate()) {
+                    while (bindingsIterator.hasNext()) {
+                        BindingSet bindings = bindingsIterator.next();
+                        result.put(bindings.getValue(VAR_PARENT_NAME).stringValue(),
+                                Integer.parseInt(
+                                        bindings.getValue(VAR_COUNT_NAME).stringValue()));
+                    }
+                }
+                return result;
+            });
+            
+            for (String identifier : uncachedIdentifiers) {
+                int count = queriedCounts.getOrDefault(identifier, 0);
+                counts.put(identifier, count);
+                childCountCache.put(new ChildCountKey(aKB, generation, identifier, aAll), count);
+            }
+            
+            return counts;
+        }
+    }
+
     @Override
     public List<KBHandle> listChildConcepts(KnowledgeBase aKB, String aParentIdentifier,
             boolean aAll)
@@ -933,13 +1152,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .retrieveDescription();
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
             
             return result;
         }
@@ -956,13 +1169,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveLabel()
                     .retrieveDescription();
             
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
             
             return result;
         }
@@ -981,13 +1188,7 @@ public class KnowledgeBaseServiceImpl
                     .retrieveDescription()
                     .limit(aLimit);
                     
-            List<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = listHandlesCaching(aKB, query, aAll);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandles(conn, aAll));
-            }
+            List<KBHandle> result = listHandlesCaching(aKB, query, aAll);
 
             return result;
         }
@@ -1118,13 +1319,7 @@ public class KnowledgeBaseServiceImpl
                     .withIdentifier(aIdentifier)
                     .retrieveLabel();
             
-            Optional<KBHandle> result;
-            if (aKB.isReadOnly()) {
-                result = fetchHandleCaching(aKB, query, true);
-            }
-            else {
-                result = read(aKB, conn -> query.asHandle(conn, true));
-            }
+            Optional<KBHandle> result = fetchHandleCaching(aKB, query, true);
             
             return result;
         }
@@ -1277,25 +1472,35 @@ public class KnowledgeBaseServiceImpl
             throw new IllegalArgumentException("Reindexing is only supported on local KBs");
         }
         
-        boolean reindexSupported = false;
-        
         // Handle re-indexing of local repos that use a Lucene FTS
+        LuceneSail luceneSail = getLuceneSail(aKB);
+        if (luceneSail == null) {
+            throw new IllegalArgumentException(
+                    aKB + "] does not support rebuilding its full text index.");
+        }
+        
+        reindex(aKB, luceneSail);
+        fireContentChanged(aKB);
+    }
+    
+    private LuceneSail getLuceneSail(KnowledgeBase aKB)
+    {
         if (repoManager.getRepository(aKB.getRepositoryId()) instanceof SailRepository) {
             SailRepository sailRepo = (SailRepository) repoManager
                 .getRepository(aKB.getRepositoryId());
             if (sailRepo.getSail() instanceof LuceneSail) {
-                reindexSupported = true;
-                LuceneSail luceneSail = (LuceneSail) (sailRepo.getSail());
-                try (RepositoryConnection conn = getConnection(aKB)) {
-                    luceneSail.reindex();
-                    conn.commit();
-                }
+                return (LuceneSail) sailRepo.getSail();
             }
         }
         
-        if (!reindexSupported) {
-            throw new IllegalArgumentException(
-                    aKB + "] does not support rebuilding its full text index.");
+        return null;
+    }
+    
+    private void reindex(KnowledgeBase aKB, LuceneSail aLuceneSail)
+    {
+        try (RepositoryConnection conn = getConnection(aKB)) {
+            aLuceneSail.reindex();
+            conn.commit();
         }
     }
 
@@ -1313,18 +1518,21 @@ public class KnowledgeBaseServiceImpl
     @Override
     public List<KBHandle> listHandlesCaching(KnowledgeBase aKB, SPARQLQuery aQuery, boolean aAll)
     {
-        List<KBHandle> results = queryCache.get(QueryKey.of(aKB, aQuery, aAll));
+        List<KBHandle> results = queryCache
+                .get(QueryKey.of(aKB, getGeneration(aKB), aQuery, aAll));
         if (log.isTraceEnabled()) {
             log.trace("KB cache stats: {}", queryCache.stats());
         }
-        return results;
+        // Callers may modify the returned list, so they must not get the cached one
+        return new ArrayList<>(results);
     }
 
     @Override
     public Optional<KBHandle> fetchHandleCaching(KnowledgeBase aKB, SPARQLQuery aQuery,
             boolean aAll)
     {
-        Optional<KBHandle> result = queryCache.get(QueryKey.of(aKB, aQuery, aAll)).stream()
+        Optional<KBHandle> result = queryCache
+                .get(QueryKey.of(aKB, getGeneration(aKB), aQuery, aAll)).stream()
                 .findFirst();
         if (log.isTraceEnabled()) {
             log.trace("KB cache stats: {}", queryCache.stats());
@@ -1334,7 +1542,7 @@ public class KnowledgeBaseServiceImpl
 
     private List<KBHandle> runQuery(QueryKey aKey)
     {
-        return read(aKey.kb, conn -> aKey.query.asHandles(conn, true));
+        return read(aKey.kb, conn -> aKey.query.asHandles(conn, aKey.all));
     }
     
     /**
@@ -1350,22 +1558,27 @@ public class KnowledgeBaseServiceImpl
         queryCache.asMap().keySet().stream()
             .filter(key -> key.kb.getProject().equals(aEvent.getProject()))
             .forEach(key -> queryCache.invalidate(key));
+        childCountCache.asMap().keySet()
+            .removeIf(key -> key.kb.getProject().equals(aEvent.getProject()));
     }
     
     private static final class QueryKey
     {
         private final KnowledgeBase kb;
+        private final long generation;
         private final SPARQLQuery query;
         private final boolean all;
 
-        public static QueryKey of(KnowledgeBase aKb, SPARQLQuery aQuery, boolean aAll)
+        public static QueryKey of(KnowledgeBase aKb, long aGeneration, SPARQLQuery aQuery,
+                boolean aAll)
         {
-            return new QueryKey(aKb, aQuery, aAll);
+            return new QueryKey(aKb, aGeneration, aQuery, aAll);
         }
         
-        public QueryKey(KnowledgeBase aKb, SPARQLQuery aQuery, boolean aAll)
+        public QueryKey(KnowledgeBase aKb, long aGeneration, SPARQLQuery aQuery, boolean aAll)
         {
             kb = aKb;
+            generation = aGeneration;
             query = aQuery;
             all = aAll;
         }
@@ -1380,6 +1593,7 @@ public class KnowledgeBaseServiceImpl
             QueryKey castOther = (QueryKey) other;
             return new EqualsBuilder()
                     .append(kb, castOther.kb)
+                    .append(generation, castOther.generation)
                     .append(all, castOther.all)
                     .append(query, castOther.query)
                     .isEquals();
@@ -1388,7 +1602,193 @@ public class KnowledgeBaseServiceImpl
         @Override
         public int hashCode()
         {
-            return new HashCodeBuilder().append(kb).append(query).append(all).toHashCode();
+            return new HashCodeBuilder().append(kb).append(generation).append(query).append(all)
+                    .toHashCode();
+        }
+    }
+    
+    /**
+     * Collects the parsed statements and hands them to the writer in chunks of
+     * {@link KnowledgeBaseProperties#getImportChunkSize()} statements.
+     */
+    private class ChunkedImportHandler
+        extends AbstractRDFHandler
+    {
+        private final ImportTracker tracker;
+        private final ChunkWriter writer;
+        private final List<Statement> statements = new ArrayList<>();
+        private final Map<String, String> namespaces = new LinkedHashMap<>();
+
+        public ChunkedImportHandler(ImportTracker aTracker, ChunkWriter aWriter)
+        {
+            tracker = aTracker;
+            writer = aWriter;
+        }
+
+        @Override
+        public void handleNamespace(String aPrefix, String aUri)
+        {
+            namespaces.putIfAbsent(aPrefix, aUri);
+        }
+
+        @Override
+        public void handleStatement(Statement aStatement)
+        {
+            statements.add(aStatement);
+            if (statements.size() >= importChunkSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void endRDF()
+        {
+            flush();
+        }
+
+        private void flush()
+        {
+            if (statements.isEmpty() && namespaces.isEmpty()) {
+                return;
+            }
+            
+            writer.write(statements, namespaces);
+            tracker.addStatements(statements.size());
+            statements.clear();
+            namespaces.clear();
+        }
+    }
+    
+    private interface ChunkWriter
+    {
+        void write(List<Statement> aStatements, Map<String, String> aNamespaces);
+    }
+    
+    /**
+     * The imports into a knowledge base. Trackers are only kept while their import is pending or
+     * running. Once an import has finished, only its final progress is kept and that only until
+     * a new import is started after all imports have finished.
+     */
+    private static class ImportQueue
+    {
+        private final List<ImportProgress> finished = new ArrayList<>();
+        private final List<ImportTracker> active = new ArrayList<>();
+        
+        public synchronized void add(ImportTracker aTracker)
+        {
+            if (active.isEmpty()) {
+                finished.clear();
+            }
+            active.add(aTracker);
+        }
+        
+        public synchronized void finish(ImportTracker aTracker)
+        {
+            if (active.remove(aTracker)) {
+                finished.add(aTracker.toImportProgress());
+            }
+        }
+        
+        public synchronized boolean isLastDeferringIndexing(ImportTracker aTracker)
+        {
+            return active.subList(active.indexOf(aTracker) + 1, active.size()).stream()
+                    .noneMatch(tracker -> tracker.deferIndexing);
+        }
+        
+        public synchronized List<ImportProgress> listProgress()
+        {
+            List<ImportProgress> progress = new ArrayList<>(finished);
+            active.forEach(tracker -> progress.add(tracker.toImportProgress()));
+            return progress;
+        }
+    }
+    
+    private static class ImportTracker
+    {
+        private final String filename;
+        private final long totalBytes;
+        private final boolean deferIndexing;
+        private final AtomicLong statements = new AtomicLong();
+        private volatile CountingInputStream input;
+        private volatile Phase phase = Phase.IMPORTING;
+        private volatile long startTime = currentTimeMillis();
+        private volatile long endTime = -1;
+
+        public ImportTracker(String aFilename, long aTotalBytes, boolean aDeferIndexing)
+        {
+            filename = aFilename;
+            totalBytes = aTotalBytes;
+            deferIndexing = aDeferIndexing;
+        }
+        
+        public void start()
+        {
+            startTime = currentTimeMillis();
+        }
+
+        public void setInput(CountingInputStream aInput)
+        {
+            input = aInput;
+        }
+
+        public void setPhase(Phase aPhase)
+        {
+            phase = aPhase;
+            if (aPhase == Phase.COMPLETED || aPhase == Phase.FAILED) {
+                endTime = currentTimeMillis();
+            }
+        }
+
+        public void addStatements(long aCount)
+        {
+            statements.addAndGet(aCount);
+        }
+
+        public ImportProgress toImportProgress()
+        {
+            CountingInputStream in = input;
+            long end = endTime >= 0 ? endTime : currentTimeMillis();
+            return new ImportProgress(filename, phase, statements.get(),
+                    in != null ? in.getByteCount() : 0, totalBytes, end - startTime);
+        }
+    }
+    
+    private static final class ChildCountKey
+    {
+        private final KnowledgeBase kb;
+        private final long generation;
+        private final String identifier;
+        private final boolean all;
+
+        public ChildCountKey(KnowledgeBase aKb, long aGeneration, String aIdentifier, boolean aAll)
+        {
+            kb = aKb;
+            generation = aGeneration;
+            identifier = aIdentifier;
+            all = aAll;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof ChildCountKey)) {
+                return false;
+            }
+            
+            ChildCountKey castOther = (ChildCountKey) other;
+            return new EqualsBuilder()
+                    .append(kb, castOther.kb)
+                    .append(generation, castOther.generation)
+                    .append(all, castOther.all)
+                    .append(identifier, castOther.identifier)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(kb).append(generation).append(identifier)
+                    .append(all).toHashCode();
         }
     }
 }
@@ -41,4 +41,9 @@ public interface KnowledgeBaseProperties
      * The time before KB items are asynchronously refreshed (in minutes).
      */
     Duration getCacheRefreshDelay();
+
+    /**
+     * The number of statements which are committed at once when importing data.
+     */
+    int getImportChunkSize();
 }
@@ -38,6 +38,8 @@ public class KnowledgeBasePropertiesImpl
     
     @DurationUnit(ChronoUnit.MINUTES)
     private Duration cacheRefreshDelay = Duration.ofMinutes(5);
+    
+    private int importChunkSize = 50_000;
 
     @Override
     public int getDefaultMaxResults()
@@ -93,4 +95,15 @@ public class KnowledgeBasePropertiesImpl
     {
         cacheRefreshDelay = aCacheRefreshDelay;
     }
+
+    @Override
+    public int getImportChunkSize()
+    {
+        return importChunkSize;
+    }
+    
+    public void setImportChunkSize(int aImportChunkSize)
+    {
+        importChunkSize = aImportChunkSize;
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.tudarmstadt.ukp.inception.kb.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+/**
+ * Fired after the data in a knowledge base has been changed, e.g. after an item or statement has
+ * been created, updated or deleted or after data has been imported.
+ */
+public class KnowledgeBaseContentChangedEvent
+    extends ApplicationEvent
+{
+    private static final long serialVersionUID = 4376516373862429423L;
+
+    private final KnowledgeBase knowledgeBase;
+
+    public KnowledgeBaseContentChangedEvent(Object aSource, KnowledgeBase aKnowledgeBase)
+    {
+        super(aSource);
+        knowledgeBase = aKnowledgeBase;
+    }
+
+    public KnowledgeBase getKnowledgeBase()
+    {
+        return knowledgeBase;
+    }
+}
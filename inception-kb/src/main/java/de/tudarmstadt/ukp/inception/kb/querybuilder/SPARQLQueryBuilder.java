@@ -23,6 +23,7 @@ import static de.tudarmstadt.ukp.inception.kb.IriConstants.FTS_LUCENE;
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.FTS_NONE;
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.FTS_VIRTUOSO;
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.FTS_WIKIDATA;
+import static de.tudarmstadt.ukp.inception.kb.IriConstants.IMPLICIT_NAMESPACES;
 import static de.tudarmstadt.ukp.inception.kb.IriConstants.hasImplicitNamespace;
 import static de.tudarmstadt.ukp.inception.kb.querybuilder.Path.oneOrMore;
 import static de.tudarmstadt.ukp.inception.kb.querybuilder.Path.zeroOrMore;
@@ -39,9 +40,11 @@ import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.function;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.notEquals;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.Expressions.or;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.CONTAINS;
+import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.IS_IRI;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.LANG;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.LANGMATCHES;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.REGEX;
+import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.STRING;
 import static org.eclipse.rdf4j.sparqlbuilder.constraint.SparqlFunction.STRSTARTS;
 import static org.eclipse.rdf4j.sparqlbuilder.core.SparqlBuilder.prefix;
 import static org.eclipse.rdf4j.sparqlbuilder.core.SparqlBuilder.var;
@@ -56,6 +59,7 @@ import static org.eclipse.rdf4j.sparqlbuilder.rdf.Rdf.literalOfLanguage;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -94,6 +98,7 @@ import org.eclipse.rdf4j.sparqlbuilder.graphpattern.GraphPatterns;
 import org.eclipse.rdf4j.sparqlbuilder.rdf.Iri;
 import org.eclipse.rdf4j.sparqlbuilder.rdf.Rdf;
 import org.eclipse.rdf4j.sparqlbuilder.rdf.RdfBlankNode.LabeledBlankNode;
+import org.eclipse.rdf4j.sparqlbuilder.rdf.RdfObject;
 import org.eclipse.rdf4j.sparqlbuilder.rdf.RdfValue;
 import org.eclipse.rdf4j.sparqlbuilder.util.SparqlBuilderUtils;
 import org.slf4j.Logger;
@@ -131,6 +136,8 @@ public class SPARQLQueryBuilder
     public static final String VAR_DESCRIPTION_CANDIDATE_NAME = "dc";
     public static final String VAR_RANGE_NAME = "range";
     public static final String VAR_DOMAIN_NAME = "domain";
+    public static final String VAR_PARENT_NAME = "parent";
+    public static final String VAR_COUNT_NAME = "count";
     
     public static final Variable VAR_SUBJECT = var(VAR_SUBJECT_NAME);
     public static final Variable VAR_PREDICATE = var(VAR_PREDICATE_NAME);
@@ -142,6 +149,8 @@ public class SPARQLQueryBuilder
     public static final Variable VAR_LABEL_PROPERTY = var(VAR_LABEL_PROPERTY_NAME);
     public static final Variable VAR_DESCRIPTION = var(VAR_DESCRIPTION_NAME);
     public static final Variable VAR_DESC_CANDIDATE = var(VAR_DESCRIPTION_CANDIDATE_NAME);
+    public static final Variable VAR_PARENT = var(VAR_PARENT_NAME);
+    public static final Variable VAR_COUNT = var(VAR_COUNT_NAME);
 
     public static final Prefix PREFIX_LUCENE_SEARCH = prefix("search",
             iri("http://www.openrdf.org/contrib/lucenesail#"));
@@ -334,7 +343,7 @@ public class SPARQLQueryBuilder
         /**
          * @see SPARQLQueryPrimaryConditions#childrenOf(String)
          */
-        protected GraphPattern childrenPattern(KnowledgeBase aKB, Iri aContext)
+        protected GraphPattern childrenPattern(KnowledgeBase aKB, RdfObject aContext)
         {
             Iri subPropertyProperty = iri(aKB.getSubPropertyIri());
             Iri subClassProperty = iri(aKB.getSubclassIri());
@@ -498,6 +507,52 @@ public class SPARQLQueryBuilder
         return builder;
     }
 
+    /**
+     * Counts the child classes of each of the given classes using a single query. The query binds
+     * each class to {@link #VAR_PARENT_NAME} and the number of its children to
+     * {@link #VAR_COUNT_NAME}. Classes without children do not appear in the result. Children are
+     * considered in the same way as by {@link SPARQLQueryPrimaryConditions#childrenOf(String)}.
+     * 
+     * @param aKB
+     *            the KB configuration.
+     * @param aClassIris
+     *            the classes whose children should be counted.
+     * @param aAll
+     *            whether to count children from implicit namespaces (e.g. defined by RDF).
+     * @return the query.
+     */
+    public static SelectQuery countChildClassesQuery(KnowledgeBase aKB,
+            Collection<String> aClassIris, boolean aAll)
+    {
+        // Unlike in evaluateListQuery, we need to drop the children which we would not list on
+        // the server side already since we only get the counts back
+        List<Expression<?>> filters = new ArrayList<>();
+        filters.add(function(IS_IRI, VAR_SUBJECT));
+        if (!aAll) {
+            for (String ns : IMPLICIT_NAMESPACES) {
+                filters.add(Expressions.not(
+                        function(STRSTARTS, function(STRING, VAR_SUBJECT), literalOf(ns))));
+            }
+        }
+        
+        SelectQuery query = Queries.SELECT(VAR_PARENT,
+                Expressions.count(VAR_SUBJECT).distinct().as(VAR_COUNT));
+        query.where(GraphPatterns.and(
+                new ValuesPattern(VAR_PARENT, aClassIris.stream()
+                        .map(Rdf::iri)
+                        .toArray(RdfValue[]::new)),
+                Mode.CLASS.childrenPattern(aKB, VAR_PARENT))
+                .filter(and(filters.toArray(new Expression<?>[filters.size()]))));
+        query.groupBy(VAR_PARENT);
+        
+        if (aKB.getDefaultDatasetIri() != null) {
+            query.from(SparqlBuilder.dataset(
+                    SparqlBuilder.from(iri(aKB.getDefaultDatasetIri()))));
+        }
+        
+        return query;
+    }
+
     private SPARQLQueryBuilder(KnowledgeBase aKB, Mode aMode)
     {
         kb = aKB;
@@ -18,15 +18,20 @@
 
 package de.tudarmstadt.ukp.inception.kb;
 
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeFalse;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -600,6 +605,28 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .matches(h -> h.getIdentifier().startsWith(IriConstants.INCEPTION_NAMESPACE));
     }
 
+    @Test
+    public void listConcepts_AfterModification_ShouldNotReturnCachedResults() {
+        KBConcept concept = buildConcept();
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        sut.createConcept(kb, concept);
+        assertThat(sut.listAllConcepts(kb, false))
+            .extracting(KBHandle::getName)
+            .containsExactly(concept.getName());
+
+        concept.setName("New name");
+        sut.updateConcept(kb, concept);
+        assertThat(sut.listAllConcepts(kb, false))
+            .as("Check that the cached result is not used after an update")
+            .extracting(KBHandle::getName)
+            .containsExactly("New name");
+
+        sut.deleteConcept(kb, concept);
+        assertThat(sut.listAllConcepts(kb, false))
+            .as("Check that the cached result is not used after a delete")
+            .isEmpty();
+    }
+
     @Test
     public void listConcepts_WithNoSavedConceptAndAll_ShouldFindRdfConcepts() {
         sut.registerKnowledgeBase(kb, sut.getNativeConfig());
@@ -1349,6 +1376,86 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .containsExactlyInAnyOrder(expectedLabels);
     }
 
+    @Test
+    public void countChildConcepts_WithSparqlPlayground_ReturnsCountsInSingleCall()
+        throws Exception
+    {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        importKnowledgeBase("data/sparql_playground.ttl");
+        setSchema(kb, RDFS.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        Map<String, Integer> childCounts = sut.countChildConcepts(kb, asList(
+                "http://example.org/tuto/ontology#Creature",
+                "http://example.org/tuto/ontology#Animal",
+                "http://example.org/tuto/ontology#Cat"), false);
+
+        assertThat(childCounts)
+            .as("Check that the children of all concepts have been counted")
+            .containsEntry("http://example.org/tuto/ontology#Creature", 2)
+            .containsEntry("http://example.org/tuto/ontology#Animal", 3)
+            .containsEntry("http://example.org/tuto/ontology#Cat", 0)
+            .hasSize(3);
+    }
+
+    @Test
+    public void importData_WithSmallChunkSize_ImportsAllStatementsAndReportsProgress()
+        throws Exception
+    {
+        sut.destroy();
+        RepositoryProperties repoProps = new RepositoryProperties();
+        repoProps.setPath(temporaryFolder.newFolder());
+        KnowledgeBasePropertiesImpl kbProperties = new KnowledgeBasePropertiesImpl();
+        kbProperties.setImportChunkSize(3);
+        sut = new KnowledgeBaseServiceImpl(repoProps, kbProperties,
+                testEntityManager.getEntityManager());
+
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        importKnowledgeBase("data/sparql_playground.ttl");
+        setSchema(kb, RDFS.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        long size = sut.read(kb, conn -> conn.size());
+        List<ImportProgress> imports = sut.listImportProgress(kb);
+        assertThat(imports)
+            .as("Check that only the last import is tracked")
+            .hasSize(1);
+        ImportProgress progress = imports.get(0);
+        assertThat(progress.getPhase())
+            .as("Check that the import has completed")
+            .isEqualTo(ImportProgress.Phase.COMPLETED);
+        assertThat(progress.getStatements())
+            .as("Check that all statements have been imported")
+            .isEqualTo(size)
+            .isGreaterThan(3);
+        assertThat(sut.readConcept(kb, "http://example.org/tuto/ontology#Animal", true))
+            .as("Check that the imported data can be read")
+            .isPresent();
+    }
+
+    @Test
+    public void importDataInBackground_WithMultipleFiles_TracksEachImport() throws Exception
+    {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        for (String resourceName : asList("data/streams.ttl", "data/wildlife_ontology.ttl")) {
+            File file = new File(classLoader.getResource(resourceName).getFile());
+            sut.importDataInBackground(kb, file.getName(), file);
+        }
+
+        await().atMost(60, SECONDS).until(() -> sut.listImportProgress(kb).stream()
+                .allMatch(ImportProgress::isDone));
+
+        assertThat(sut.listImportProgress(kb))
+            .as("Check that each import is tracked separately")
+            .extracting(ImportProgress::getFilename, ImportProgress::getPhase)
+            .containsExactly(
+                    tuple("streams.ttl", ImportProgress.Phase.COMPLETED),
+                    tuple("wildlife_ontology.ttl", ImportProgress.Phase.COMPLETED));
+        assertThat(sut.readConcept(kb, "http://mrklie.com/schemas/streams#input", true))
+            .as("Check that the data of the first import can be read")
+            .isPresent();
+    }
+
     @Test
     public void getChildConcepts_WithStreams_ReturnsOnlyImmediateChildren() throws Exception {
         sut.registerKnowledgeBase(kb, sut.getNativeConfig());
@@ -18,10 +18,16 @@
 package de.tudarmstadt.ukp.inception.kb.reification;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
@@ -163,6 +169,46 @@ public class WikiDataReificationTest
                 .containsExactlyInAnyOrder(stmt1, stmt2, stmt3, stmt4);
     }
     
+    /**
+     * Lists the statements of an item with many statements and qualifiers. The properties and
+     * value labels of all statements and qualifiers are resolved at once, so the number of
+     * queries must not grow with the number of statements.
+     */
+    @Test
+    public void thatStatementsAreRetrievedWithFixedNumberOfQueries() throws Exception
+    {
+        final int STATEMENTS = 200;
+        final String ITEM = "http://www.wikidata.org/entity/Q1";
+        
+        List<String> data = new ArrayList<>();
+        data.add(TURTLE_PREFIX);
+        for (int i = 0; i < STATEMENTS; i++) {
+            String stmt = "wds:s" + i;
+            data.addAll(asList(
+                    "wd:Q1 p:P" + (i % 10) + " " + stmt + " .",
+                    stmt + " ps:P" + (i % 10) + " wd:Q" + (1000 + i) + " ;",
+                    "    pq:P580 " + i + " ;",
+                    "    pq:P518 wd:Q" + (2000 + i) + " .",
+                    "wd:Q" + (1000 + i) + " <http://www.w3.org/2000/01/rdf-schema#label> "
+                            + "'value " + i + "'@en ."));
+        }
+        importDataFromString(RDFFormat.TURTLE, data.toArray(new String[data.size()]));
+        
+        List<KBStatement> result;
+        try (RepositoryConnection conn = spy(rdf4jLocalRepo.getConnection())) {
+            result = sut.listStatements(conn, kb, new KBHandle(ITEM), true);
+            
+            // One query for the statements, one for the properties and one for the value labels
+            verify(conn, times(3)).prepareTupleQuery(anyString());
+        }
+        
+        assertThat(result)
+                .hasSize(STATEMENTS)
+                .allMatch(stmt -> stmt.getInstance().getIdentifier().equals(ITEM))
+                .allMatch(stmt -> stmt.getQualifiers().size() == 2)
+                .allMatch(stmt -> stmt.getValueLabel().startsWith("value "));
+    }
+    
     private void importDataFromString(RDFFormat aFormat, String... aRdfData) throws IOException
     {
         String data = String.join("\n", aRdfData);
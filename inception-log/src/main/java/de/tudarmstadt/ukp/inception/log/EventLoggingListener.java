@@ -17,16 +17,17 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.collections4.map.HashedMap;
 import org.apache.commons.lang3.ClassUtils;
@@ -39,15 +40,31 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapter;
 import de.tudarmstadt.ukp.inception.log.adapter.GenericEventAdapter;
 import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
 
+/**
+ * Captures Spring events and writes them to the event log.
+ * <p>
+ * The events are put into a bounded queue and are written to the database in batches by a
+ * dedicated flusher thread - either once per second or as soon as a full batch is available. The
+ * threads publishing the events never write to the database themselves. If the queue is full
+ * because the database cannot keep up, new events are dropped and counted.
+ * </p>
+ */
 @Component
+@ManagedResource
 public class EventLoggingListener implements DisposableBean
 {
+    /* package private */ static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final long FLUSH_INTERVAL = SECONDS.toNanos(1);
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final List<EventLoggingAdapter<?>> adapterProxy;
@@ -57,9 +74,13 @@ public class EventLoggingListener implements DisposableBean
 
     private final EventRepository repo;
 
-    private final ScheduledExecutorService scheduler;
+    private final BlockingQueue<LoggedEvent> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
     
-    private final Deque<LoggedEvent> queue;
+    private final AtomicLong writtenEventCount = new AtomicLong();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final AtomicLong failedEventCount = new AtomicLong();
 
     public EventLoggingListener(
             @Autowired EventRepository aRepo,
@@ -69,10 +90,11 @@ public class EventLoggingListener implements DisposableBean
         adapterProxy = aAdapters;
         adapterCache = new HashedMap<>();
         
-        queue = new ConcurrentLinkedDeque<>();
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
         
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> flush(), 1, 1, TimeUnit.SECONDS);
+        flusher = new Thread(this::runFlusher, "Event log flusher");
+        flusher.setDaemon(true);
+        flusher.start();
     }
 
     @EventListener
@@ -139,35 +161,92 @@ public class EventLoggingListener implements DisposableBean
             e.setDocument(a.getDocument(aEvent));
             e.setAnnotator(a.getAnnotator(aEvent));
             e.setDetails(a.getDetails(aEvent));
-            // Add to the writing queue which gets flushed regularly by a timer
-            queue.add(e);
+            e.setRecommender(a.getRecommender(aEvent));
+            e.setLayer(a.getLayer(aEvent));
+            e.setFeature(a.getFeature(aEvent));
+            // Add to the writing queue which gets flushed regularly by the flusher thread. We
+            // never block the publishing thread - if the database cannot keep up, we drop the
+            // event.
+            if (!queue.offer(e)) {
+                long dropped = droppedEventCount.incrementAndGet();
+                if (dropped % BATCH_SIZE == 1) {
+                    log.warn("Event log queue is full - {} events dropped so far", dropped);
+                }
+                return;
+            }
             
-            // If the queue gets too large, force a flush even if the timer is not there yet
-            if (queue.size() > 1000) {
-                flush();
+            // If a full batch is available, wake up the flusher even if the interval has not
+            // passed yet
+            if (queue.size() >= BATCH_SIZE) {
+                LockSupport.unpark(flusher);
             }
         }
     }
     
+    private void runFlusher()
+    {
+        while (running) {
+            if (queue.size() < BATCH_SIZE) {
+                LockSupport.parkNanos(this, FLUSH_INTERVAL);
+            }
+            
+            flush();
+        }
+    }
+    
+    /**
+     * Writes all events that are currently in the queue to the database.
+     */
     public void flush()
     {
         synchronized (this) {
-            // Fetch all items that are currently in the queue
-            List<LoggedEvent> batch = new ArrayList<>();
-            while (!queue.isEmpty()) {
-                batch.add(queue.pop());
+            List<LoggedEvent> batch = new ArrayList<>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                try {
+                    repo.createBatch(batch);
+                    writtenEventCount.addAndGet(batch.size());
+                }
+                catch (Exception e) {
+                    // The flusher must keep running even if the database is unavailable
+                    failedEventCount.addAndGet(batch.size());
+                    log.error("Unable to write {} events to the event log", batch.size(), e);
+                }
+                batch.clear();
             }
-            
-            // And dump them into the database
-            repo.create(batch.toArray(new LoggedEvent[batch.size()]));
         }
     }
 
+    @ManagedAttribute
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    @ManagedAttribute
+    public long getWrittenEventCount()
+    {
+        return writtenEventCount.get();
+    }
+
+    @ManagedAttribute
+    public long getDroppedEventCount()
+    {
+        return droppedEventCount.get();
+    }
+
+    @ManagedAttribute
+    public long getFailedEventCount()
+    {
+        return failedEventCount.get();
+    }
+
     @Override
     public void destroy() throws Exception
     {
-        // Kill the flush scheduler
-        scheduler.shutdownNow();
+        // Stop the flusher thread
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(SECONDS.toMillis(10));
         
         // Make sure and pending events are flushed before the application shuts down
         flush();
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -29,6 +30,13 @@ public interface EventRepository
 
     void create(LoggedEvent... aEvents);
 
+    /**
+     * Stores the given events using JDBC batch inserts. This is much faster than
+     * {@link #create(LoggedEvent...)} for many events, but the events do not become managed
+     * entities and their IDs are not set.
+     */
+    void createBatch(Collection<LoggedEvent> aEvents);
+
     /**
      * Get the aMaxSize amount of logged events of the given type, user name, project
      * and recommender id from the db.
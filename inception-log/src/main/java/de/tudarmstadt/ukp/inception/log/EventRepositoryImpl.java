@@ -17,7 +17,11 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -26,6 +30,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -38,6 +43,12 @@ import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
 public class EventRepositoryImpl
     implements EventRepository
 {
+    private static final String INSERT_EVENT = String.join(" ",
+            "INSERT INTO logged_event",
+            "(event, created, user, project, document, annotator, details,",
+            "recommender, layer, feature)",
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @PersistenceContext
@@ -68,14 +79,86 @@ public class EventRepositoryImpl
         }
     }
 
+    @Override
+    @Transactional
+    public void createBatch(Collection<LoggedEvent> aEvents)
+    {
+        if (aEvents.isEmpty()) {
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        // The IDs of the events are generated by the database (identity column) which keeps
+        // Hibernate from batching the inserts, so we use JDBC directly here
+        entityManager.unwrap(Session.class).doWork(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_EVENT)) {
+                for (LoggedEvent event : aEvents) {
+                    log.trace("{}", event);
+                    stmt.setString(1, event.getEvent());
+                    stmt.setTimestamp(2, new Timestamp(event.getCreated().getTime()));
+                    stmt.setString(3, event.getUser());
+                    stmt.setLong(4, event.getProject());
+                    stmt.setLong(5, event.getDocument());
+                    if (event.getAnnotator() != null) {
+                        stmt.setString(6, event.getAnnotator());
+                    }
+                    else {
+                        stmt.setNull(6, Types.VARCHAR);
+                    }
+                    if (event.getDetails() != null) {
+                        stmt.setString(7, event.getDetails());
+                    }
+                    else {
+                        stmt.setNull(7, Types.CLOB);
+                    }
+                    if (event.getRecommender() != null) {
+                        stmt.setLong(8, event.getRecommender());
+                    }
+                    else {
+                        stmt.setNull(8, Types.BIGINT);
+                    }
+                    if (event.getLayer() != null) {
+                        stmt.setString(9, event.getLayer());
+                    }
+                    else {
+                        stmt.setNull(9, Types.VARCHAR);
+                    }
+                    if (event.getFeature() != null) {
+                        stmt.setString(10, event.getFeature());
+                    }
+                    else {
+                        stmt.setNull(10, Types.VARCHAR);
+                    }
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        });
+        long duration = System.currentTimeMillis() - start;
+
+        log.debug("... {} events stored in batch ... ({}ms)", aEvents.size(), duration);
+    }
+
     @Override
     @Transactional
     public List<LoggedEvent> listLoggedEventsForRecommender(Project aProject, String aUsername,
             String aEventType, int aMaxSize, long aRecommenderId)
     {
-        String detailStr = "%\"recommenderId\":" + aRecommenderId + "%";
+        // The recommender is stored in an indexed column, so we do not need to search the details
+        String query = String.join("\n", 
+                "FROM LoggedEvent WHERE ", 
+                "user=:user AND ",
+                "project = :project AND ", 
+                "event = :event AND ", 
+                "recommender = :recommender ",
+                "ORDER BY created DESC");
 
-        return listLoggedEventsForDetail(aProject, aUsername, aEventType, aMaxSize, detailStr);
+        return entityManager.createQuery(query, LoggedEvent.class)
+                .setParameter("user", aUsername)
+                .setParameter("project", aProject.getId())
+                .setParameter("event", aEventType)
+                .setParameter("recommender", aRecommenderId)
+                .setMaxResults(aMaxSize).getResultList();
     }
     
     @Override
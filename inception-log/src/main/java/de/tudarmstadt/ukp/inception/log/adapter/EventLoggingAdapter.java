@@ -47,6 +47,30 @@ public interface EventLoggingAdapter<T>
         return null;
     }
 
+    /**
+     * @return the ID of the recommender the event relates to or {@code null}.
+     */
+    default Long getRecommender(T aEvent)
+    {
+        return null;
+    }
+
+    /**
+     * @return the name of the layer the event relates to or {@code null}.
+     */
+    default String getLayer(T aEvent)
+    {
+        return null;
+    }
+
+    /**
+     * @return the name of the feature the event relates to or {@code null}.
+     */
+    default String getFeature(T aEvent)
+    {
+        return null;
+    }
+
     default Date getCreated(T aEvent)
     {
         if (aEvent instanceof ApplicationEvent) {
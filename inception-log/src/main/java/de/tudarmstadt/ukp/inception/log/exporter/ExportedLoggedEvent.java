@@ -50,6 +50,12 @@ public class ExportedLoggedEvent
     @JsonProperty("annotator")
     private String annotator;
 
+    @JsonProperty("layer")
+    private String layer;
+
+    @JsonProperty("feature")
+    private String feature;
+
     @JsonProperty("details")
     @JsonRawValue
     @JsonDeserialize(using = RawJsonDeserializer.class)
@@ -124,4 +130,24 @@ public class ExportedLoggedEvent
     {
         details = aDetails;
     }
+
+    public String getLayer()
+    {
+        return layer;
+    }
+
+    public void setLayer(String aLayer)
+    {
+        layer = aLayer;
+    }
+
+    public String getFeature()
+    {
+        return feature;
+    }
+
+    public void setFeature(String aFeature)
+    {
+        feature = aFeature;
+    }
 }
@@ -133,6 +133,8 @@ public class LoggedEventExporter implements ProjectExporter
                 exportedEvent.setAnnotator(event.getAnnotator());
                 exportedEvent.setUser(event.getUser());
                 exportedEvent.setDetails(event.getDetails());
+                exportedEvent.setLayer(event.getLayer());
+                exportedEvent.setFeature(event.getFeature());
                 
                 // Write DTO
                 try {
@@ -196,6 +198,8 @@ public class LoggedEventExporter implements ProjectExporter
                 event.setCreated(exportedEvent.getCreated());
                 event.setAnnotator(exportedEvent.getAnnotator());
                 event.setDetails(exportedEvent.getDetails());
+                event.setLayer(exportedEvent.getLayer());
+                event.setFeature(exportedEvent.getFeature());
 
                 // If an event is not associated with a document, then the default ID -1 is used
                 if (exportedEvent.getDocumentName() != null) {
@@ -73,6 +73,25 @@ public class LoggedEvent
     @Column(length = 64000, nullable = true)
     private String details;
 
+    /**
+     * If the event relates to a recommender, then the ID of the recommender. This is also contained
+     * in the details, but kept in a separate indexed column to allow querying efficiently.
+     */
+    @Column(name = "recommender", nullable = true)
+    private Long recommender;
+
+    /**
+     * If the event relates to a layer, then the name of the layer.
+     */
+    @Column(name = "layer", nullable = true)
+    private String layer;
+
+    /**
+     * If the event relates to a feature, then the name of the feature.
+     */
+    @Column(name = "feature", nullable = true)
+    private String feature;
+
     public LoggedEvent()
     {
         // Needed by JPA
@@ -146,6 +165,36 @@ public class LoggedEvent
         details = aDetails;
     }
 
+    public Long getRecommender()
+    {
+        return recommender;
+    }
+
+    public void setRecommender(Long aRecommender)
+    {
+        recommender = aRecommender;
+    }
+
+    public String getLayer()
+    {
+        return layer;
+    }
+
+    public void setLayer(String aLayer)
+    {
+        layer = aLayer;
+    }
+
+    public String getFeature()
+    {
+        return feature;
+    }
+
+    public void setFeature(String aFeature)
+    {
+        feature = aFeature;
+    }
+
     public long getDocument()
     {
         return document;
@@ -185,6 +234,18 @@ public class LoggedEvent
             builder.append(", annotator=");
             builder.append(annotator);
         }
+        if (recommender != null) {
+            builder.append(", recommender=");
+            builder.append(recommender);
+        }
+        if (layer != null) {
+            builder.append(", layer=");
+            builder.append(layer);
+        }
+        if (feature != null) {
+            builder.append(", feature=");
+            builder.append(feature);
+        }
         if (details != null) {
             builder.append(", details=");
             builder.append(details);
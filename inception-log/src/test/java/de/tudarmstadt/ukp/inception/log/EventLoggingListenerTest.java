@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log;
+
+import static de.tudarmstadt.ukp.inception.log.EventLoggingListener.QUEUE_CAPACITY;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+
+public class EventLoggingListenerTest
+{
+    private StubEventRepository repo;
+    private EventLoggingListener sut;
+
+    @Before
+    public void setUp()
+    {
+        repo = new StubEventRepository();
+        sut = new EventLoggingListener(repo, null);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        repo.unblock();
+        sut.destroy();
+    }
+
+    @Test
+    public void thatEventsAreDroppedAndCountedWhenQueueIsFull() throws Exception
+    {
+        // Keep the flusher busy writing the first event so the queue is not drained
+        repo.block();
+        sut.onApplicationEvent(new TestEvent(this));
+        assertThat(repo.awaitWriting()).isTrue();
+
+        for (int i = 0; i < QUEUE_CAPACITY + 5; i++) {
+            sut.onApplicationEvent(new TestEvent(this));
+        }
+
+        assertThat(sut.getQueueSize()).isEqualTo(QUEUE_CAPACITY);
+        assertThat(sut.getDroppedEventCount()).isEqualTo(5);
+
+        repo.unblock();
+        sut.destroy();
+
+        assertThat(repo.events).hasSize(QUEUE_CAPACITY + 1);
+        assertThat(sut.getWrittenEventCount()).isEqualTo(QUEUE_CAPACITY + 1);
+        assertThat(sut.getDroppedEventCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void thatPendingEventsAreWrittenOnDestroy() throws Exception
+    {
+        // Less than a full batch, so the flusher does not wake up early to write them
+        for (int i = 0; i < 10; i++) {
+            sut.onApplicationEvent(new TestEvent(this));
+        }
+
+        sut.destroy();
+
+        assertThat(repo.events)
+                .hasSize(10)
+                .allMatch(e -> TestEvent.class.getSimpleName().equals(e.getEvent()));
+        assertThat(sut.getWrittenEventCount()).isEqualTo(10);
+        assertThat(sut.getQueueSize()).isZero();
+        assertThat(sut.getDroppedEventCount()).isZero();
+    }
+
+    private static class TestEvent
+        extends ApplicationEvent
+    {
+        private static final long serialVersionUID = 4302549370513283838L;
+
+        public TestEvent(Object aSource)
+        {
+            super(aSource);
+        }
+    }
+
+    /**
+     * Records the events written in batches. Writing can be blocked to simulate a database which
+     * cannot keep up.
+     */
+    private static class StubEventRepository
+        implements EventRepository
+    {
+        private final List<LoggedEvent> events = new ArrayList<>();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private volatile CountDownLatch blocker = new CountDownLatch(0);
+
+        public void block()
+        {
+            blocker = new CountDownLatch(1);
+        }
+
+        public void unblock()
+        {
+            blocker.countDown();
+        }
+
+        public boolean awaitWriting() throws InterruptedException
+        {
+            return writing.await(10, SECONDS);
+        }
+
+        @Override
+        public void createBatch(Collection<LoggedEvent> aEvents)
+        {
+            writing.countDown();
+            try {
+                blocker.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            synchronized (events) {
+                events.addAll(aEvents);
+            }
+        }
+
+        @Override
+        public void create(LoggedEvent... aEvents)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<LoggedEvent> listLoggedEventsForRecommender(Project aProject,
+                String aUsername, String aEventType, int aMaxSize, long aRecommenderId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachLoggedEvent(Project aProject, Consumer<LoggedEvent> aConsumer)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<LoggedEvent> listUniqueLoggedEventsForDoc(Project aProject,
+                String aUsername, String[] aEventType, int aMaxSize)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<LoggedEvent> listLoggedEventsForDetail(Project aProject, String aUsername,
+                String aEventType, int aMaxSize, String aDetail)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -135,6 +136,20 @@ public class EventRepositoryImplIntegrationTest  {
                 .hasSize(1).contains(le);
     }
 
+    @Test
+    public void getLoggedEvents_WithLoggedEventOfOtherRecommender_ShouldReturnEmptyList()
+    {
+        le = buildLoggedEvent(project, USERNAME, EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 
+                new Date(), -1, DETAIL_JSON);
+        le.setRecommender(RECOMMENDER_ID + 1L);
+
+        sut.create(le);
+        List<LoggedEvent> loggedEvents = sut.listLoggedEventsForRecommender(project,
+                user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID);
+
+        assertThat(loggedEvents).as("Check that no logged event is found").isEmpty();
+    }
+
     @Test
     public void getLoggedEvents_WithoutLoggedEvent_ShouldReturnEmptyList()
     {
@@ -249,6 +264,36 @@ public class EventRepositoryImplIntegrationTest  {
         assertThat(loggedEvents).as("Check that no logged event is found").isEmpty();
     }
     
+    @Test
+    public void createBatch_WithManyLoggedEvents_ShouldStoreAllLoggedEvents()
+    {
+        List<LoggedEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            le = buildLoggedEvent(project, user.getUsername(),
+                    EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, new Date(), i, DETAIL_JSON);
+            batch.add(le);
+        }
+        // An event without details also carries no recommender
+        batch.get(0).setDetails(null);
+        batch.get(0).setRecommender(null);
+        batch.get(1).setAnnotator(USERNAME);
+
+        sut.createBatch(batch);
+
+        List<LoggedEvent> loggedEvents = sut.listLoggedEventsForRecommender(project,
+                user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 100, RECOMMENDER_ID);
+        assertThat(loggedEvents)
+                .as("Check that all logged events with a recommender have been stored")
+                .hasSize(19)
+                .extracting(LoggedEvent::getDocument)
+                .containsExactlyInAnyOrder(batch.stream().skip(1)
+                        .map(LoggedEvent::getDocument).toArray(Long[]::new));
+        assertThat(loggedEvents)
+                .filteredOn(e -> e.getDocument() == 1)
+                .extracting(LoggedEvent::getAnnotator)
+                .containsExactly(USERNAME);
+    }
+    
     // Helper
     private Project createProject(String aName)
     {
@@ -265,6 +310,7 @@ public class EventRepositoryImplIntegrationTest  {
         le.setUser(aUsername);
         le.setProject(aProject.getId());
         le.setDetails(aDetails);
+        le.setRecommender((long) RECOMMENDER_ID);
         le.setCreated(aDate);
         le.setEvent(aEventType);
         le.setDocument(aDocId);
@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.recommendation.api;
 
 import java.util.List;
+import java.util.Optional;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
@@ -40,6 +41,16 @@ public interface LearningRecordService
      */
     List<LearningRecord> listRecords(String user, AnnotationLayer layer, int aLimit);
 
+    /**
+     * Looks up the action the given user most recently performed on a suggestion with the given
+     * label at the given position in the given document. Learning records with the action
+     * {@link LearningRecordType#SHOWN} are not considered. The lookup is answered from an
+     * in-memory index of the learning records of the user on the given layer, so it is cheap
+     * enough to be called for every suggestion being rendered.
+     */
+    Optional<LearningRecordType> getUserAction(String aUsername, AnnotationLayer aLayer,
+            String aDocumentName, int aBegin, int aEnd, String aLabel);
+
     void deleteRecords(SourceDocument document, String user);
 
     LearningRecord getRecordById(long recordId);
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.recommendation.api;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.uima.cas.CAS;
 
@@ -118,6 +119,36 @@ public interface RecommendationService
      *            The new active context of the given recommender.
      */
     void putContext(User aUser, Recommender aRecommender, RecommenderContext aContext);
+
+    /**
+     * Returns the current value of the document change counter. The counter is shared by all
+     * users and projects. It is incremented every time an annotation document or its state
+     * changes. It never decreases, not even when the recommendation state of a user is cleared.
+     * 
+     * @param aUser
+     *            The annotator.
+     * @param aProject
+     *            The project.
+     * @return the current change counter value.
+     */
+    long getDocumentChangeSequence(User aUser, Project aProject);
+
+    /**
+     * Returns the names of the documents of the given user which have changed after the
+     * document change counter had reached the given value. The changes are only tracked as long
+     * as the recommendation state of the user exists. If the state has been created after the
+     * counter had reached the given value, the changes are not known.
+     * 
+     * @param aUser
+     *            The annotator.
+     * @param aProject
+     *            The project.
+     * @param aSequence
+     *            A value previously obtained via {@link #getDocumentChangeSequence}.
+     * @return the names of the changed documents or nothing if the changes are not known.
+     */
+    Optional<Set<String>> listDocumentsChangedSince(User aUser, Project aProject,
+            long aSequence);
     
     /**
      * Uses the given annotation suggestion to create a new annotation or to update a feature in an
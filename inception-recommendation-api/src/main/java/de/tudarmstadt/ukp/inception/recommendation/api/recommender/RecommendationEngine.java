@@ -22,7 +22,10 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationServ
 import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService.FEATURE_NAME_SCORE_SUFFIX;
 import static org.apache.uima.fit.util.CasUtil.getType;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -116,6 +119,52 @@ public abstract class RecommendationEngine
         return RecommendationEngineCapability.TRAINING_SUPPORTED;
     }
     
+    /**
+     * Returns whether the engine supports {@link #trainIncremental}. If it does, the engine is only
+     * fed with the documents that changed since the context it builds upon was trained instead of
+     * with all training documents. Engines supporting incremental training must carry over
+     * whatever they need to update their model from the previous context in {@link #newContext}.
+     */
+    public boolean isIncrementalTrainingSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Returns whether {@link #predict} may be called concurrently on the same context, e.g. when
+     * predicting on several documents in parallel. Engines which keep non-thread-safe objects in
+     * the context (e.g. a neural network) must not return {@code true}. Calls to {@link #predict}
+     * for engines which do not support this are serialized per context.
+     */
+    public boolean isPredictionThreadSafe()
+    {
+        return false;
+    }
+
+    /**
+     * Update the model in {@code aContext} given only the documents which changed since the
+     * previous context was trained. The given context has been obtained via {@link #newContext}
+     * from the previous context. If there was no previous context, {@code aChangedCasses} contains
+     * all training documents. This method must not mutate {@code aChangedCasses} in any way.
+     * <p>
+     * By default, this falls back to a full {@link #train} on the given documents. This is only
+     * correct if they are all the training documents, so engines which declare support via
+     * {@link #isIncrementalTrainingSupported} must override this method.
+     * 
+     * @param aContext
+     *            The context of the recommender
+     * @param aChangedCasses
+     *            The training data of the changed documents by document name
+     * @param aRemovedDocuments
+     *            The names of documents which no longer provide any training data
+     */
+    public void trainIncremental(RecommenderContext aContext, Map<String, CAS> aChangedCasses,
+            Set<String> aRemovedDocuments)
+        throws RecommendationException
+    {
+        train(aContext, new ArrayList<>(aChangedCasses.values()));
+    }
+
     /**
      * Create a new context given the previous context. This allows incrementally training 
      * recommenders to salvage information from the current context for a new iteration. By default,
@@ -24,6 +24,7 @@ import javax.persistence.PersistenceContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -58,6 +59,7 @@ import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
  * Provides all back-end Spring beans for the external search functionality.
  */
 @Configuration
+@EnableConfigurationProperties(RecommenderPropertiesImpl.class)
 @ConditionalOnProperty(prefix = "recommender", name = "enabled", havingValue = "true", 
         matchIfMissing = true)
 public class RecommenderServiceAutoConfiguration
@@ -70,11 +72,19 @@ public class RecommenderServiceAutoConfiguration
             UserDao aUserRepository, RecommenderFactoryRegistry aRecommenderFactoryRegistry,
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, LearningRecordService aLearningRecordService,
-            ProjectService aProjectService, ApplicationEventPublisher aApplicationEventPublisher)
+            ProjectService aProjectService, ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aRecommenderProperties)
     {
         return new RecommendationServiceImpl(aSessionRegistry, aUserRepository,
                 aRecommenderFactoryRegistry, aSchedulingService, aAnnoService, aDocumentService,
-                aLearningRecordService, aProjectService, entityManager, aApplicationEventPublisher);
+                aLearningRecordService, aProjectService, entityManager, aApplicationEventPublisher,
+                aRecommenderProperties);
+    }
+    
+    @Bean
+    public RecommenderProperties recommenderProperties()
+    {
+        return new RecommenderPropertiesImpl();
     }
     
     @Bean
@@ -65,6 +65,24 @@ public class RecommenderEvaluationResultEventAdapter
         return aEvent.getUser();
     }
 
+    @Override
+    public Long getRecommender(RecommenderEvaluationResultEvent aEvent)
+    {
+        return aEvent.getRecommender().getId();
+    }
+
+    @Override
+    public String getLayer(RecommenderEvaluationResultEvent aEvent)
+    {
+        return aEvent.getRecommender().getLayer().getName();
+    }
+
+    @Override
+    public String getFeature(RecommenderEvaluationResultEvent aEvent)
+    {
+        return aEvent.getRecommender().getFeature().getName();
+    }
+
     @Override
     public String getDetails(RecommenderEvaluationResultEvent aEvent)
     {
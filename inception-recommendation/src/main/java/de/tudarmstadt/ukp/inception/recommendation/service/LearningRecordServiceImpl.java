@@ -17,15 +17,34 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.service;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
@@ -47,10 +66,22 @@ public class LearningRecordServiceImpl
     implements LearningRecordService
 {
     private final EntityManager entityManager;
+    
+    /*
+     * In-memory index of the learning records per user and layer which is used to quickly check
+     * whether a suggestion has been rejected or skipped. An index is loaded from the database
+     * when it is first accessed and is afterwards kept up-to-date by the methods of this service
+     * which modify learning records. Indexes which have not been used for a while are evicted.
+     */
+    private final Cache<RecordIndexKey, RecordIndex> recordIndexes;
 
     public LearningRecordServiceImpl(EntityManager aEntityManager)
     {
         entityManager = aEntityManager;
+        recordIndexes = Caffeine.newBuilder()
+                .expireAfterAccess(10, MINUTES)
+                .maximumSize(1_000)
+                .build();
     }
     
     @Transactional
@@ -61,6 +92,26 @@ public class LearningRecordServiceImpl
         deleteRecords(currentDocument, currentUser);
     }
     
+    @EventListener
+    public void onDocumentRemoved(BeforeDocumentRemovedEvent aEvent)
+    {
+        SourceDocument document = aEvent.getDocument();
+        long projectId = document.getProject().getId();
+        updateIndexes(key -> key.projectId == projectId, () -> recordIndexes.asMap()
+                .forEach((key, index) -> {
+                    if (key.projectId == projectId) {
+                        index.removeIf(r -> r.key.document.equals(document.getName()));
+                    }
+                }));
+    }
+    
+    @EventListener
+    public void onProjectRemoved(BeforeProjectRemovedEvent aEvent)
+    {
+        long projectId = aEvent.getProject().getId();
+        recordIndexes.asMap().keySet().removeIf(key -> key.projectId == projectId);
+    }
+    
     @Transactional
     @Override
     public void logRecord(SourceDocument aDocument, String aUsername,
@@ -102,6 +153,12 @@ public class LearningRecordServiceImpl
                 .setParameter("annotation", aAlternativeLabel)
                 .executeUpdate();
         
+        RecordKey key = new RecordKey(aDocument.getName(), aSuggestion.getBegin(),
+                aSuggestion.getEnd(), aAlternativeLabel);
+        updateIndexes(aUsername, aLayer, () -> findIndex(aUsername, aLayer)
+                .ifPresent(index -> index.removeIf(key,
+                        r -> Objects.equals(r.featureId, aFeature.getId()))));
+        
         LearningRecord record = new LearningRecord();
         record.setUser(aUsername);
         record.setSourceDocument(aDocument);
@@ -147,6 +204,14 @@ public class LearningRecordServiceImpl
     {
         return listRecords(aUsername, aLayer, 0);
     }
+    
+    @Override
+    public Optional<LearningRecordType> getUserAction(String aUsername, AnnotationLayer aLayer,
+            String aDocumentName, int aBegin, int aEnd, String aLabel)
+    {
+        return getIndex(aUsername, aLayer)
+                .lookup(new RecordKey(aDocumentName, aBegin, aEnd, aLabel));
+    }
 
     @Transactional
     @Override
@@ -167,6 +232,15 @@ public class LearningRecordServiceImpl
             .setParameter("document", document)
             .setParameter("user",user)
             .executeUpdate();
+        
+        long projectId = document.getProject().getId();
+        Predicate<RecordIndexKey> affected = key -> key.user.equals(user)
+                && key.projectId == projectId;
+        updateIndexes(affected, () -> recordIndexes.asMap().forEach((key, index) -> {
+            if (affected.test(key)) {
+                index.removeIf(r -> r.key.document.equals(document.getName()));
+            }
+        }));
     }
 
     @Override
@@ -174,6 +248,9 @@ public class LearningRecordServiceImpl
     public void create(LearningRecord learningRecord) {
         entityManager.persist(learningRecord);
         entityManager.flush();
+        
+        updateIndexes(learningRecord,
+                () -> findIndex(learningRecord).ifPresent(index -> index.add(learningRecord)));
     }
 
     @Override
@@ -181,6 +258,11 @@ public class LearningRecordServiceImpl
     public void update(LearningRecord learningRecord) {
         entityManager.merge(learningRecord);
         entityManager.flush();
+        
+        updateIndexes(learningRecord, () -> findIndex(learningRecord).ifPresent(index -> {
+            index.removeIf(r -> r.id == learningRecord.getId());
+            index.add(learningRecord);
+        }));
     }
 
     @Override
@@ -188,6 +270,9 @@ public class LearningRecordServiceImpl
     public void delete(LearningRecord learningRecord) {
         entityManager.remove(entityManager.contains(learningRecord) ? learningRecord :
             entityManager.merge(learningRecord));
+        
+        updateIndexes(learningRecord, () -> findIndex(learningRecord)
+                .ifPresent(index -> index.removeIf(r -> r.id == learningRecord.getId())));
     }
 
     @Override
@@ -230,5 +315,243 @@ public class LearningRecordServiceImpl
                 .setParameter("layer", aLayer)
                 .setParameter("action", LearningRecordType.SKIPPED)
                 .executeUpdate();
+        
+        updateIndexes(aUser.getUsername(), aLayer, () -> findIndex(aUser.getUsername(), aLayer)
+                .ifPresent(index -> index.removeIf(r -> r.action == LearningRecordType.SKIPPED)));
+    }
+    
+    /**
+     * Applies the given change to the in-memory indexes. Within a transaction, the change is
+     * applied again after the commit because an index might have been loaded concurrently from
+     * the database before the change became visible there - all changes are idempotent. If the
+     * transaction is rolled back, the affected indexes are dropped instead since they may contain
+     * changes which never made it to the database. They are re-loaded when next accessed.
+     */
+    private void updateIndexes(Predicate<RecordIndexKey> aAffected, Runnable aChange)
+    {
+        aChange.run();
+        
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        
+        TransactionSynchronizationManager
+                .registerSynchronization(new TransactionSynchronizationAdapter()
+                {
+                    @Override
+                    public void afterCompletion(int aStatus)
+                    {
+                        if (aStatus == STATUS_COMMITTED) {
+                            aChange.run();
+                        }
+                        else {
+                            recordIndexes.asMap().keySet().removeIf(aAffected);
+                        }
+                    }
+                });
+    }
+    
+    private void updateIndexes(String aUsername, AnnotationLayer aLayer, Runnable aChange)
+    {
+        RecordIndexKey affected = new RecordIndexKey(aUsername, aLayer);
+        updateIndexes(affected::equals, aChange);
+    }
+    
+    private void updateIndexes(LearningRecord aRecord, Runnable aChange)
+    {
+        if (aRecord.getUser() == null || aRecord.getLayer() == null) {
+            return;
+        }
+        
+        updateIndexes(aRecord.getUser(), aRecord.getLayer(), aChange);
+    }
+    
+    private RecordIndex getIndex(String aUsername, AnnotationLayer aLayer)
+    {
+        RecordIndex index = recordIndexes.get(new RecordIndexKey(aUsername, aLayer),
+                key -> new RecordIndex());
+        
+        // Records created or deleted while the index is being loaded are applied to the index
+        // after the loading is complete since the index methods are synchronized.
+        index.load(() -> listRecords(aUsername, aLayer));
+
+        return index;
+    }
+
+    private Optional<RecordIndex> findIndex(String aUsername, AnnotationLayer aLayer)
+    {
+        return Optional.ofNullable(
+                recordIndexes.getIfPresent(new RecordIndexKey(aUsername, aLayer)));
+    }
+
+    private Optional<RecordIndex> findIndex(LearningRecord aRecord)
+    {
+        if (aRecord.getUser() == null || aRecord.getLayer() == null) {
+            return Optional.empty();
+        }
+        
+        return findIndex(aRecord.getUser(), aRecord.getLayer());
+    }
+    
+    private static class RecordIndexKey
+    {
+        private final String user;
+        private final long projectId;
+        private final long layerId;
+
+        public RecordIndexKey(String aUser, AnnotationLayer aLayer)
+        {
+            user = aUser;
+            projectId = aLayer.getProject().getId();
+            layerId = aLayer.getId();
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof RecordIndexKey)) {
+                return false;
+            }
+            RecordIndexKey castOther = (RecordIndexKey) other;
+            return new EqualsBuilder().append(user, castOther.user)
+                    .append(layerId, castOther.layerId).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(user).append(layerId).toHashCode();
+        }
+    }
+    
+    private static class RecordKey
+    {
+        private final String document;
+        private final int begin;
+        private final int end;
+        private final String label;
+
+        public RecordKey(String aDocument, int aBegin, int aEnd, String aLabel)
+        {
+            document = aDocument;
+            begin = aBegin;
+            end = aEnd;
+            label = aLabel;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof RecordKey)) {
+                return false;
+            }
+            RecordKey castOther = (RecordKey) other;
+            return new EqualsBuilder().append(document, castOther.document)
+                    .append(begin, castOther.begin).append(end, castOther.end)
+                    .append(label, castOther.label).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(document).append(begin).append(end).append(label)
+                    .toHashCode();
+        }
+    }
+    
+    private static class IndexedRecord
+    {
+        private final long id;
+        private final RecordKey key;
+        private final Long featureId;
+        private final LearningRecordType action;
+
+        public IndexedRecord(LearningRecord aRecord)
+        {
+            id = aRecord.getId();
+            key = new RecordKey(aRecord.getSourceDocument().getName(),
+                    aRecord.getOffsetCharacterBegin(), aRecord.getOffsetCharacterEnd(),
+                    aRecord.getAnnotation());
+            featureId = aRecord.getAnnotationFeature() != null
+                    ? aRecord.getAnnotationFeature().getId()
+                    : null;
+            action = aRecord.getUserAction();
+        }
+    }
+    
+    private static class RecordIndex
+    {
+        /*
+         * Records at the same position with the same label, most recent record first.
+         */
+        private final Map<RecordKey, List<IndexedRecord>> records = new HashMap<>();
+        private boolean loaded = false;
+        
+        public synchronized void load(Supplier<List<LearningRecord>> aLoader)
+        {
+            if (loaded) {
+                return;
+            }
+            
+            aLoader.get().forEach(this::add);
+            loaded = true;
+        }
+        
+        public synchronized void add(LearningRecord aRecord)
+        {
+            // SHOWN records are not relevant for determining the visibility of a suggestion
+            if (aRecord.getUserAction() == LearningRecordType.SHOWN) {
+                return;
+            }
+            
+            IndexedRecord record = new IndexedRecord(aRecord);
+            List<IndexedRecord> recordsAtKey = records.computeIfAbsent(record.key,
+                    key -> new ArrayList<>(1));
+            
+            if (recordsAtKey.stream().anyMatch(r -> r.id == record.id)) {
+                return;
+            }
+            
+            int i = 0;
+            while (i < recordsAtKey.size() && recordsAtKey.get(i).id > record.id) {
+                i++;
+            }
+            recordsAtKey.add(i, record);
+        }
+        
+        public synchronized void removeIf(Predicate<IndexedRecord> aFilter)
+        {
+            Iterator<List<IndexedRecord>> i = records.values().iterator();
+            while (i.hasNext()) {
+                List<IndexedRecord> recordsAtKey = i.next();
+                recordsAtKey.removeIf(aFilter);
+                if (recordsAtKey.isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+        
+        public synchronized void removeIf(RecordKey aKey, Predicate<IndexedRecord> aFilter)
+        {
+            List<IndexedRecord> recordsAtKey = records.get(aKey);
+            if (recordsAtKey == null) {
+                return;
+            }
+            
+            recordsAtKey.removeIf(aFilter);
+            if (recordsAtKey.isEmpty()) {
+                records.remove(aKey);
+            }
+        }
+        
+        public synchronized Optional<LearningRecordType> lookup(RecordKey aKey)
+        {
+            List<IndexedRecord> recordsAtKey = records.get(aKey);
+            if (recordsAtKey == null) {
+                return Optional.empty();
+            }
+            
+            return Optional.of(recordsAtKey.get(0).action);
+        }
     }
 }
@@ -28,8 +28,8 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_NOT_SUPPORTED;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.uima.fit.util.CasUtil.getType;
-import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectAt;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
@@ -41,11 +41,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -57,9 +64,11 @@ import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.CasUtil;
@@ -75,6 +84,7 @@ import org.apache.wicket.request.cycle.PageRequestHandlerTracker;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
@@ -84,6 +94,7 @@ import org.springframework.security.core.session.SessionDestroyedEvent;
 import org.springframework.security.core.session.SessionInformation;
 import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
@@ -99,7 +110,10 @@ import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AnnotationStateChangeEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -117,7 +131,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommenderFactoryRegistry;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender;
-import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Offset;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Preferences;
@@ -127,6 +141,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
 import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderDeletedEvent;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderUpdatedEvent;
@@ -145,7 +161,7 @@ import de.tudarmstadt.ukp.inception.scheduling.Task;
  * </p>
  */
 public class RecommendationServiceImpl
-    implements RecommendationService
+    implements RecommendationService, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -164,10 +180,29 @@ public class RecommendationServiceImpl
     private final LearningRecordService learningRecordService;
     private final ProjectService projectService;
     private final ApplicationEventPublisher applicationEventPublisher;
+    private final RecommenderProperties properties;
+    
+    /*
+     * Pool of workers predicting on documents in parallel. Shared by all prediction tasks so that
+     * the overall number of threads is bounded. Null if prediction runs single-threaded.
+     */
+    private final ExecutorService predictionExecutor;
     
     private final ConcurrentMap<RecommendationStateKey, AtomicInteger> trainingTaskCounter;
     private final ConcurrentMap<RecommendationStateKey, RecommendationState> states;
     
+    /*
+     * Counts document changes across all users and projects. This counter lives outside the
+     * recommendation states so that it never goes back, even when a state is cleared while a
+     * training task is still running with a sequence it obtained from the cleared state.
+     */
+    private final AtomicLong documentChangeSequence = new AtomicLong();
+    
+    /*
+     * Project type systems extended with the score and prediction features by project ID.
+     */
+    private final ConcurrentMap<Long, TypeSystemDescription> predictionTypeSystems;
+    
     /*
      * Marks user/projects to which annotations were added during this request. 
      */
@@ -189,7 +224,8 @@ public class RecommendationServiceImpl
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, LearningRecordService aLearningRecordService,
             ProjectService aProjectService, EntityManager aEntityManager,
-            ApplicationEventPublisher aApplicationEventPublisher)
+            ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aProperties)
     {
         sessionRegistry = aSessionRegistry;
         userRepository = aUserRepository;
@@ -201,9 +237,22 @@ public class RecommendationServiceImpl
         projectService = aProjectService;
         entityManager = aEntityManager;
         applicationEventPublisher = aApplicationEventPublisher;
+        properties = aProperties;
+        
+        if (properties.getPredictionThreads() > 1) {
+            predictionExecutor = Executors.newFixedThreadPool(properties.getPredictionThreads(),
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("prediction-worker-%d")
+                            .daemon(true)
+                            .build());
+        }
+        else {
+            predictionExecutor = null;
+        }
         
         trainingTaskCounter = new ConcurrentHashMap<>();
         states = new ConcurrentHashMap<>();
+        predictionTypeSystems = new ConcurrentHashMap<>();
     }
 
     public RecommendationServiceImpl(SessionRegistry aSessionRegistry, UserDao aUserRepository,
@@ -214,12 +263,21 @@ public class RecommendationServiceImpl
     {
         this(aSessionRegistry, aUserRepository, aRecommenderFactoryRegistry, aSchedulingService,
                 aAnnoService, aDocumentService, aLearningRecordService, (ProjectService) null,
-                aEntityManager, null);
+                aEntityManager, null, new RecommenderPropertiesImpl());
     }
 
     public RecommendationServiceImpl(EntityManager aEntityManager)
     {
-        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null);
+        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null,
+                new RecommenderPropertiesImpl());
+    }
+    
+    @Override
+    public void destroy()
+    {
+        if (predictionExecutor != null) {
+            predictionExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -509,6 +567,17 @@ public class RecommendationServiceImpl
     @EventListener
     public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
     {
+        // Remember which documents have changed so that recommenders supporting incremental
+        // training only need to look at these during the next training run. We only do this if
+        // there already is a state because creating the state here would prevent the initial
+        // training from being triggered when the user opens a document.
+        RecommendationState state = states.get(new RecommendationStateKey(
+                aEvent.getDocument().getUser(), aEvent.getDocument().getProject()));
+        if (state != null) {
+            state.recordDocumentChange(aEvent.getDocument().getDocument().getName(),
+                    documentChangeSequence.incrementAndGet());
+        }
+        
         RequestCycle requestCycle = RequestCycle.get();
         
         if (requestCycle == null) {
@@ -557,6 +626,19 @@ public class RecommendationServiceImpl
         }
     }
     
+    @EventListener
+    public void onAnnotationStateChanged(AnnotationStateChangeEvent aEvent)
+    {
+        // Changing the state of a document does not write its CAS, but it may still change
+        // whether the document is used for training
+        RecommendationState state = states.get(new RecommendationStateKey(
+                aEvent.getAnnotationDocument().getUser(), aEvent.getDocument().getProject()));
+        if (state != null) {
+            state.recordDocumentChange(aEvent.getDocument().getName(),
+                    documentChangeSequence.incrementAndGet());
+        }
+    }
+    
     @EventListener
     public void onRecommenderUpdated(RecommenderUpdatedEvent aEvent)
     {
@@ -584,6 +666,18 @@ public class RecommendationServiceImpl
         clearState(aEvent.getDocument().getProject());
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        predictionTypeSystems.remove(aEvent.getProject().getId());
+    }
+
+    @EventListener
+    public void onProjectRemoved(BeforeProjectRemovedEvent aEvent)
+    {
+        predictionTypeSystems.remove(aEvent.getProject().getId());
+    }
+
     @Override
     public void triggerTrainingAndClassification(String aUser, Project aProject, String aEventName,
             SourceDocument aCurrentDocument)
@@ -696,7 +790,7 @@ public class RecommendationServiceImpl
     {
         synchronized (states) {
             return states.computeIfAbsent(new RecommendationStateKey(aUsername, aProject), (v) -> 
-                    new RecommendationState());
+                    new RecommendationState(documentChangeSequence.incrementAndGet()));
         }
     }
     
@@ -762,6 +856,22 @@ public class RecommendationServiceImpl
         }
     }
     
+    @Override
+    public long getDocumentChangeSequence(User aUser, Project aProject)
+    {
+        // Make sure the state exists before obtaining the sequence - otherwise, changes made
+        // between obtaining the sequence and creating the state would not be tracked
+        getState(aUser.getUsername(), aProject);
+        return documentChangeSequence.get();
+    }
+    
+    @Override
+    public Optional<Set<String>> listDocumentsChangedSince(User aUser, Project aProject,
+            long aSequence)
+    {
+        return getState(aUser.getUsername(), aProject).listDocumentsChangedSince(aSequence);
+    }
+    
     @Override
     public int upsertFeature(AnnotationSchemaService annotationService, SourceDocument aDocument,
             String aUsername, CAS aCas, AnnotationLayer layer, AnnotationFeature aFeature,
@@ -836,6 +946,27 @@ public class RecommendationServiceImpl
         }
     }
     
+    private static class PredictionProgress
+    {
+        private final int total;
+        private final AtomicInteger completed = new AtomicInteger();
+        
+        public PredictionProgress(int aTotal)
+        {
+            total = aTotal;
+        }
+        
+        public int documentCompleted()
+        {
+            return completed.incrementAndGet();
+        }
+        
+        public int getTotal()
+        {
+            return total;
+        }
+    }
+    
     /**
      * We are assuming that the user is actively working on one project at a time.
      * Otherwise, the RecommendationUserState might take up a lot of memory.
@@ -849,6 +980,14 @@ public class RecommendationServiceImpl
         private Predictions activePredictions;
         private Predictions incomingPredictions;
         private boolean predictForAllDocuments;
+        // Document changes are only tracked from this sequence on
+        private final long createdAtSequence;
+        private final Map<String, Long> documentChanges = new ConcurrentHashMap<>();
+        
+        public RecommendationState(long aCreatedAtSequence)
+        {
+            createdAtSequence = aCreatedAtSequence;
+        }
 
         public Preferences getPreferences()
         {
@@ -967,249 +1106,343 @@ public class RecommendationServiceImpl
         {
             predictForAllDocuments = aPredictForAllDocuments;
         }
+        
+        public void recordDocumentChange(String aDocumentName, long aSequence)
+        {
+            documentChanges.put(aDocumentName, aSequence);
+        }
+        
+        public Optional<Set<String>> listDocumentsChangedSince(long aSequence)
+        {
+            // Changes made before this state was created are unknown
+            if (aSequence < createdAtSequence) {
+                return Optional.empty();
+            }
+            
+            return Optional.of(documentChanges.entrySet().stream()
+                    .filter(e -> e.getValue() > aSequence)
+                    .map(Map.Entry::getKey)
+                    .collect(toSet()));
+        }
     }
     
     @Override
     public Predictions computePredictions(User aUser, Project aProject,
             List<SourceDocument> aDocuments, List<SourceDocument> aInherit)
     {
-        CAS predictionCas = null;
-        try {
-            String username = aUser.getUsername();
+        String username = aUser.getUsername();
+        
+        Predictions activePredictions = getPredictions(aUser, aProject);
+        Predictions predictions = new Predictions(aUser, aProject);
+
+        // Inherit at the document level. If inheritance at a recommender level is possible,
+        // this is done below.
+        if (activePredictions != null) {
+            for (SourceDocument document : aInherit) {
+                if (activePredictions.hasRunPredictionOnDocument(document)) {
+                    List<AnnotationSuggestion> suggestions = inheritSuggestions(aProject,
+                            activePredictions, document, username);
+                    predictions.putPredictions(suggestions);
+                    predictions.markDocumentAsPredictionCompleted(document);
+                }
+            }
+        }
+
+        // Generate new predictions or inherit at the recommender level
+        Queue<SourceDocument> documents = new ConcurrentLinkedQueue<>(aDocuments);
+        PredictionProgress progress = new PredictionProgress(aDocuments.size());
+        int workers = Math.min(properties.getPredictionThreads(), aDocuments.size());
+        if (workers <= 1) {
+            predictDocuments(aUser, aProject, documents, activePredictions, predictions, progress);
+        }
+        else {
+            log.debug("[{}]: Predicting on [{}] documents using [{}] workers", username,
+                    aDocuments.size(), workers);
+            
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(predictionExecutor.submit(() -> {
+                    // The CAS storage session is bound to the thread, so each worker needs its own
+                    try (CasStorageSession session = CasStorageSession.open()) {
+                        predictDocuments(aUser, aProject, documents, activePredictions,
+                                predictions, progress);
+                    }
+                }));
+            }
             
-            Predictions activePredictions = getPredictions(aUser, aProject);
-            Predictions predictions = new Predictions(aUser, aProject);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (InterruptedException e) {
+                    // If the prediction task is aborted, make sure the workers stop as well
+                    documents.clear();
+                    futures.forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                catch (ExecutionException e) {
+                    predictions.log(LogMessage.error(this, "Prediction worker failed: %s",
+                            e.getCause().getMessage()));
+                    log.error("[{}]: Prediction worker failed", username, e.getCause());
+                }
+            }
+        }
+
+        predictions.log(LogMessage.info(this, "Prediction complete"));
+        log.debug("Prediction complete");
+
+        return predictions;
+    }
     
+    /**
+     * Generates the predictions for documents taken from the given queue until the queue is empty.
+     * The prediction CAS used for this is registered with the CAS storage session of the current
+     * thread.
+     */
+    private void predictDocuments(User aUser, Project aProject, Queue<SourceDocument> aDocuments,
+            Predictions aActivePredictions, Predictions aPredictions, PredictionProgress aProgress)
+    {
+        CAS predictionCas = null;
+        try {
             try {
                 predictionCas = WebAnnoCasUtil.createCas();
                 CasStorageSession.get().add(PREDICTION_CAS, EXCLUSIVE_WRITE_ACCESS, predictionCas);
             }
             catch (ResourceInitializationException e) {
-                predictions.log(
+                aPredictions.log(
                         LogMessage.error(this, "Cannot create prediction CAS, stopping predictions!"));
                 log.error("Cannot create prediction CAS, stopping predictions!");
-                return predictions;
+                return;
             }
             
-            // Inherit at the document level. If inheritance at a recommender level is possible,
-            // this is done below.
-            if (activePredictions != null) {
-                for (SourceDocument document : aInherit) {
-                    if (activePredictions.hasRunPredictionOnDocument(document)) {
-                        List<AnnotationSuggestion> suggestions = inheritSuggestions(aProject,
-                                activePredictions, document, username);
-                        predictions.putPredictions(suggestions);
-                        predictions.markDocumentAsPredictionCompleted(document);
-                    }
-                }
+            SourceDocument document;
+            while ((document = aDocuments.poll()) != null) {
+                predictDocument(aUser, aProject, document, predictionCas, aActivePredictions,
+                        aPredictions);
+                
+                int completed = aProgress.documentCompleted();
+                aPredictions.log(LogMessage.info(this, "Predictions for document [%s] complete "
+                        + "(%d/%d)", document.getName(), completed, aProgress.getTotal()));
+                log.trace("[{}]: Predictions for document [{}] complete ({}/{})",
+                        aUser.getUsername(), document.getName(), completed, aProgress.getTotal());
             }
+        }
+        finally {
+            CasStorageSession.get().remove(predictionCas);
+        }
+    }
     
-            // Generate new predictions or inherit at the recommender level
-            nextDocument: for (SourceDocument document : aDocuments) {
-                Optional<CAS> originalCas = Optional.empty();
-                nextLayer: for (AnnotationLayer layer : annoService
-                        .listAnnotationLayer(document.getProject())) {
-                    if (!layer.isEnabled()) {
-                        continue nextLayer;
-                    }
+    private void predictDocument(User aUser, Project aProject, SourceDocument aDocument,
+            CAS aPredictionCas, Predictions aActivePredictions, Predictions aPredictions)
+    {
+        String username = aUser.getUsername();
+        
+        Optional<CAS> originalCas = Optional.empty();
+        // The prediction CAS is prepared only once per document and then re-used by all
+        // recommenders. After each recommender, its predictions are removed again.
+        boolean predictionCasPrepared = false;
+        nextLayer: for (AnnotationLayer layer : annoService
+                .listAnnotationLayer(aDocument.getProject())) {
+            if (!layer.isEnabled()) {
+                continue nextLayer;
+            }
     
-                    List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
-                    
-                    if (recommenders.isEmpty()) {
-                        predictions.log(LogMessage.info(this, "No active recommenders on layer [%s]",
-                                layer.getUiName()));
-                        log.trace("[{}]: No active recommenders on layer [{}]", username,
-                                layer.getUiName());
-                        continue;
-                    }
+            List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
+            
+            if (recommenders.isEmpty()) {
+                aPredictions.log(LogMessage.info(this, "No active recommenders on layer [%s]",
+                        layer.getUiName()));
+                log.trace("[{}]: No active recommenders on layer [{}]", username,
+                        layer.getUiName());
+                continue;
+            }
     
-                    nextRecommender: for (EvaluatedRecommender r : recommenders) {
-                        
-                        // Make sure we have the latest recommender config from the DB - the one
-                        // from the active recommenders list may be outdated
-                        Recommender recommender;
+            nextRecommender: for (EvaluatedRecommender r : recommenders) {
+                
+                // Make sure we have the latest recommender config from the DB - the one
+                // from the active recommenders list may be outdated
+                Recommender recommender;
     
-                        try {
-                            recommender = getRecommender(r.getRecommender().getId());
-                        }
-                        catch (NoResultException e) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender no longer available... skipping"));
-                            log.info("[{}][{}]: Recommender no longer available... skipping",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+                try {
+                    recommender = getRecommender(r.getRecommender().getId());
+                }
+                catch (NoResultException e) {
+                    aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender no longer available... skipping"));
+                    log.info("[{}][{}]: Recommender no longer available... skipping",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
     
-                        if (!recommender.isEnabled()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender disabled... skipping"));
-                            log.debug("[{}][{}]: Disabled - skipping", username,
-                                    r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+                if (!recommender.isEnabled()) {
+                    aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender disabled... skipping"));
+                    log.debug("[{}][{}]: Disabled - skipping", username,
+                            r.getRecommender().getName());
+                    continue nextRecommender;
+                }
     
-                        Optional<RecommenderContext> context = getContext(aUser, recommender);
+                Optional<RecommenderContext> context = getContext(aUser, recommender);
     
-                        if (!context.isPresent()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender has no context... skipping"));
-                            log.info("No context available for recommender [{}]({}) for user [{}] "
-                                    + "on document [{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId());
-                            continue nextRecommender;
-                        }
-                        
-                        RecommenderContext ctx = context.get();
-                        ctx.setUser(aUser);
-                        
-                        RecommendationEngineFactory<?> factory = getRecommenderFactory(recommender);
-                        
-                        // Check that configured layer and feature are accepted 
-                        // by this type of recommender
-                        if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender configured with invalid layer or feature... skipping"));
-                            log.info(
-                                    "[{}][{}]: Recommender configured with invalid layer or feature "
-                                            + "- skipping recommender",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
+                if (!context.isPresent()) {
+                    aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender has no context... skipping"));
+                    log.info("No context available for recommender [{}]({}) for user [{}] "
+                            + "on document [{}]({}) in project [{}]({}) - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            aDocument.getName(), aDocument.getId(),
+                            aDocument.getProject().getName(), aDocument.getProject().getId());
+                    continue nextRecommender;
+                }
+                
+                RecommenderContext ctx = context.get();
+                ctx.setUser(aUser);
+                
+                RecommendationEngineFactory<?> factory = getRecommenderFactory(recommender);
+                
+                // Check that configured layer and feature are accepted 
+                // by this type of recommender
+                if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
+                    aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender configured with invalid layer or feature... skipping"));
+                    log.info(
+                            "[{}][{}]: Recommender configured with invalid layer or feature "
+                                    + "- skipping recommender",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
     
-                        // We lazily load the CAS only at this point because that allows us to skip
-                        // loading the CAS entirely if there is no enabled layer or recommender.
-                        // If the CAS cannot be loaded, then we skip to the next document.
-                        if (!originalCas.isPresent()) {
-                            try {
-                                originalCas = Optional
-                                        .of(documentService.readAnnotationCas(document, username,
-                                                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS));
-                            }
-                            catch (IOException e) {
-                                predictions.log(LogMessage.error(this,
-                                        "Cannot read annotation CAS... skipping"));
-                                log.error("Cannot read annotation CAS for user [{}] of document "
-                                        + "[{}]({}) in project [{}]({}) - skipping document",
-                                        username, document.getName(), document.getId(),
-                                        document.getProject().getName(),
-                                        document.getProject().getId(), e);
-                                continue nextDocument;
-                            }
-                        }
+                // We lazily load the CAS only at this point because that allows us to skip
+                // loading the CAS entirely if there is no enabled layer or recommender.
+                // If the CAS cannot be loaded, then we skip to the next document.
+                if (!originalCas.isPresent()) {
+                    try {
+                        originalCas = Optional
+                                .of(documentService.readAnnotationCas(aDocument, username,
+                                        AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS));
+                    }
+                    catch (IOException e) {
+                        aPredictions.log(LogMessage.error(this,
+                                "Cannot read annotation CAS... skipping"));
+                        log.error("Cannot read annotation CAS for user [{}] of document "
+                                + "[{}]({}) in project [{}]({}) - skipping document",
+                                username, aDocument.getName(), aDocument.getId(),
+                                aDocument.getProject().getName(),
+                                aDocument.getProject().getId(), e);
+                        return;
+                    }
+                }
     
-                        try {
-                            RecommendationEngine engine = factory.build(recommender);
-                            
-                            if (!engine.isReadyForPrediction(ctx)) {
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Recommender context is not ready... skipping"));
-                                log.info("Recommender context [{}]({}) for user [{}] in project "
-                                        + "[{}]({}) is not ready for prediction - skipping recommender",
-                                        recommender.getName(), recommender.getId(), username,
-                                        document.getProject().getName(),
-                                        document.getProject().getId());
+                try {
+                    RecommendationEngine engine = factory.build(recommender);
+                    
+                    if (!engine.isReadyForPrediction(ctx)) {
+                        aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Recommender context is not ready... skipping"));
+                        log.info("Recommender context [{}]({}) for user [{}] in project "
+                                + "[{}]({}) is not ready for prediction - skipping recommender",
+                                recommender.getName(), recommender.getId(), username,
+                                aDocument.getProject().getName(),
+                                aDocument.getProject().getId());
  
-                                // If possible, we inherit recommendations from a previous run while
-                                // the recommender is still busy
-                                if (activePredictions != null) {
-                                    List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                            recommender, activePredictions, document, username);
-                                    if (!suggestions.isEmpty()) {
-                                        predictions.putPredictions(suggestions);
-                                    }
-        
-                                    predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                            "Inherited [%d] predictions from previous run",
-                                            suggestions.size()));
-                                }
-    
-                                continue nextRecommender;
+                        // If possible, we inherit recommendations from a previous run while
+                        // the recommender is still busy
+                        if (aActivePredictions != null) {
+                            List<AnnotationSuggestion> suggestions = inheritSuggestions(
+                                    recommender, aActivePredictions, aDocument, username);
+                            if (!suggestions.isEmpty()) {
+                                aPredictions.putPredictions(suggestions);
                             }
+
+                            aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                                    "Inherited [%d] predictions from previous run",
+                                    suggestions.size()));
+                        }
     
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Generating predictions for layer [%s]...", layer.getUiName()));
-                            log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
-                                    r.getRecommender().getName(), layer.getUiName());
-                            
-                            cloneAndMonkeyPatchCAS(aProject, originalCas.get(), predictionCas);
+                        continue nextRecommender;
+                    }
     
-                            List<AnnotationSuggestion> suggestions;
-                            
-                            // If the recommender is not trainable and not sensitive to annotations,
-                            // we can actually re-use the predictions.
-                            if (
-                                    TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability()) &&
-                                    activePredictions != null &&
-                                    activePredictions.hasRunPredictionOnDocument(document)
-                            ) {
-                                suggestions = inheritSuggestions(engine.getRecommender(),
-                                        activePredictions, document, username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
-                            }
-                            else {
-                                suggestions = generateSuggestions(ctx, engine, activePredictions,
-                                        document, originalCas.get(), predictionCas, username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Generated [%d] predictions", suggestions.size()));
-                            }
-                            
-                            // Calculate the visibility of the suggestions. This happens via the
-                            // original CAS which contains only the manually created annotations
-                            // and *not* the suggestions.
-                            Collection<SuggestionGroup> groups = SuggestionGroup.group(suggestions);
-                            calculateVisibility(originalCas.get(), username, recommender.getLayer(),
-                                    groups, 0, originalCas.get().getDocumentText().length());
-                            
-                            predictions.putPredictions(suggestions);
-                        }
-                        // Catching Throwable is intentional here as we want to continue the
-                        // execution even if a particular recommender fails.
-                        catch (Throwable e) {
-                            predictions.log(LogMessage.error(r.getRecommender().getName(),
-                                    "Failed: %s", e.getMessage()));
-                            log.error(
-                                    "Error applying recommender [{}]({}) for user [{}] to document "
-                                            + "[{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId(),
-                                    e);
+                    aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Generating predictions for layer [%s]...", layer.getUiName()));
+                    log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
+                            r.getRecommender().getName(), layer.getUiName());
+                    
+                    if (!predictionCasPrepared) {
+                        cloneAndMonkeyPatchCAS(aProject, originalCas.get(), aPredictionCas);
+                        predictionCasPrepared = true;
+                    }
     
-                            // If there was a previous successful run of the recommender, inherit
-                            // its suggestions to avoid that all the suggestions of the recommender
-                            // simply disappear.
-                            if (activePredictions != null) {
-                                List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                        recommender, activePredictions, document, username);
-                                if (!suggestions.isEmpty()) {
-                                    predictions.putPredictions(suggestions);
-                                }
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
-                            }
+                    List<AnnotationSuggestion> suggestions;
+                    
+                    // If the recommender is not trainable and not sensitive to annotations,
+                    // we can actually re-use the predictions.
+                    if (
+                            TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability()) &&
+                            aActivePredictions != null &&
+                            aActivePredictions.hasRunPredictionOnDocument(aDocument)
+                    ) {
+                        suggestions = inheritSuggestions(engine.getRecommender(),
+                                aActivePredictions, aDocument, username);
+                        aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Inherited [%d] predictions from previous run",
+                                suggestions.size()));
+                    }
+                    else {
+                        suggestions = generateSuggestions(ctx, engine, aActivePredictions,
+                                aDocument, originalCas.get(), aPredictionCas, username);
+                        aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Generated [%d] predictions", suggestions.size()));
+                    }
+                    
+                    // Calculate the visibility of the suggestions. This happens via the
+                    // original CAS which contains only the manually created annotations
+                    // and *not* the suggestions.
+                    Collection<SuggestionGroup> groups = SuggestionGroup.group(suggestions);
+                    calculateVisibility(originalCas.get(), username, recommender.getLayer(),
+                            groups, 0, originalCas.get().getDocumentText().length());
+                    
+                    aPredictions.putPredictions(suggestions);
+                }
+                // Catching Throwable is intentional here as we want to continue the
+                // execution even if a particular recommender fails.
+                catch (Throwable e) {
+                    aPredictions.log(LogMessage.error(r.getRecommender().getName(),
+                            "Failed: %s", e.getMessage()));
+                    log.error(
+                            "Error applying recommender [{}]({}) for user [{}] to document "
+                                    + "[{}]({}) in project [{}]({}) - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            aDocument.getName(), aDocument.getId(),
+                            aDocument.getProject().getName(), aDocument.getProject().getId(),
+                            e);
     
-                            continue nextRecommender;
+                    // If there was a previous successful run of the recommender, inherit
+                    // its suggestions to avoid that all the suggestions of the recommender
+                    // simply disappear.
+                    if (aActivePredictions != null) {
+                        List<AnnotationSuggestion> suggestions = inheritSuggestions(
+                                recommender, aActivePredictions, aDocument, username);
+                        if (!suggestions.isEmpty()) {
+                            aPredictions.putPredictions(suggestions);
                         }
+                        aPredictions.log(LogMessage.info(r.getRecommender().getName(),
+                                "Inherited [%d] predictions from previous run",
+                                suggestions.size()));
+                    }
+    
+                    continue nextRecommender;
+                }
+                finally {
+                    if (predictionCasPrepared) {
+                        removePredictions(aPredictionCas);
                     }
                 }
-                
-                // When all recommenders have completed on the document, we mark it as "complete"
-                predictions.markDocumentAsPredictionCompleted(document);
             }
-    
-            predictions.log(LogMessage.info(this, "Prediction complete"));
-            log.debug("Prediction complete");
-    
-            return predictions;
-        }
-        finally {
-            CasStorageSession.get().remove(predictionCas);
         }
+        
+        // When all recommenders have completed on the document, we mark it as "complete"
+        aPredictions.markDocumentAsPredictionCompleted(aDocument);
     }
     
     /**
@@ -1262,8 +1495,16 @@ public class RecommendationServiceImpl
             CAS originalCas, CAS predictionCas, String aUsername)
         throws RecommendationException
     {
-         // Perform the actual prediction
-        engine.predict(ctx, predictionCas);
+        // Perform the actual prediction. The context is shared by all prediction workers, so
+        // unless the engine can cope with that, only one worker at a time may predict with it.
+        if (engine.isPredictionThreadSafe()) {
+            engine.predict(ctx, predictionCas);
+        }
+        else {
+            synchronized (ctx) {
+                engine.predict(ctx, predictionCas);
+            }
+        }
 
         // Extract the suggestions from the data which the recommender has written into the CAS
         List<AnnotationSuggestion> suggestions = extractSuggestions(aUsername, predictionCas,
@@ -1417,9 +1658,19 @@ public class RecommendationServiceImpl
             return;
         }
         
-        List<AnnotationFS> annotationsInWindow = select(aCas, type).stream()
-                .filter(fs -> aWindowBegin <= fs.getBegin() && fs.getEnd() <= aWindowEnd)
-                .collect(toList());
+        // Mind that selectCovered uses the annotation index to jump to the start of the window
+        // and stops at its end instead of scanning all annotations in the document.
+        List<AnnotationFS> annotationsInWindow = selectCovered(aCas, type, aWindowBegin,
+                aWindowEnd);
+        
+        // Index the annotations by their offsets. We need to use a multi-valued map here because
+        // there may be multiple annotations at a given position.
+        MultiValuedMap<Offset, AnnotationFS> annotations = new ArrayListValuedHashMap<>();
+        annotationsInWindow
+                .forEach(fs -> annotations.put(new Offset(fs.getBegin(), fs.getEnd()), fs));
+        // We need to constructed a sorted list of the keys for the OverlapIterator below
+        List<Offset> sortedAnnotationKeys = new ArrayList<>(annotations.keySet());
+        sortedAnnotationKeys.sort(comparingInt(Offset::getBegin).thenComparingInt(Offset::getEnd));
 
         // Collect all suggestions of the given layer within the view window
         List<SuggestionGroup> suggestionsInWindow = aRecommendations.stream()
@@ -1431,10 +1682,6 @@ public class RecommendationServiceImpl
                     return aWindowBegin <= offset.getBegin() && offset.getEnd() <= aWindowEnd;
                 }).collect(toList());
 
-        // Get all the skipped/rejected entries for the current layer
-        List<LearningRecord> recordedAnnotations = learningRecordService.listRecords(aUser,
-                aLayer);
-
         for (AnnotationFeature feature : annoService.listSupportedFeatures(aLayer)) {
             Feature feat = type.getFeatureByBaseName(feature.getName());
 
@@ -1445,17 +1692,6 @@ public class RecommendationServiceImpl
                 return;
             }
             
-            // Reduce the annotations to the ones which have a non-null feature value. We need to
-            // use a multi-valued map here because there may be multiple annotations at a
-            // given position.
-            MultiValuedMap<Offset, AnnotationFS> annotations = new ArrayListValuedHashMap<>();
-            annotationsInWindow.stream()
-                    .forEach(fs -> annotations.put(new Offset(fs.getBegin(), fs.getEnd()), fs));
-            // We need to constructed a sorted list of the keys for the OverlapIterator below
-            List<Offset> sortedAnnotationKeys = new ArrayList<>(annotations.keySet());
-            sortedAnnotationKeys
-                    .sort(comparingInt(Offset::getBegin).thenComparingInt(Offset::getEnd));
-
             // Reduce the suggestions to the ones for the given feature. We can use the tree here
             // since we only have a single SuggestionGroup for every position
             Map<Offset, SuggestionGroup> suggestions = new TreeMap<>(
@@ -1549,32 +1785,33 @@ public class RecommendationServiceImpl
             // Anything that was not hidden so far might still have been rejected
             suggestions.values().stream().flatMap(SuggestionGroup::stream)
                     .filter(AnnotationSuggestion::isVisible)
-                    .forEach(suggestion -> hideSuggestionsRejectedOrSkipped(suggestion,
-                            recordedAnnotations));
+                    .forEach(suggestion -> hideSuggestionsRejectedOrSkipped(suggestion, aUser,
+                            aLayer));
         }
     }
 
     private void hideSuggestionsRejectedOrSkipped(AnnotationSuggestion aSuggestion,
-            List<LearningRecord> aRecordedRecommendations)
+            String aUser, AnnotationLayer aLayer)
     {
         // If it was rejected or skipped, hide it
-        for (LearningRecord record : aRecordedRecommendations) {
-            boolean isAtTheSamePlace = record.getOffsetCharacterBegin() == aSuggestion
-                    .getBegin() && record.getOffsetCharacterEnd() == aSuggestion.getEnd();
-            if (isAtTheSamePlace && aSuggestion.labelEquals(record.getAnnotation())) {
-                switch (record.getUserAction()) {
-                case REJECTED:
-                    aSuggestion.hide(FLAG_REJECTED);
-                    break;
-                case SKIPPED:
-                    aSuggestion.hide(FLAG_SKIPPED);
-                    break;
-                default:
-                    // Nothing to do for the other cases. ACCEPTED annotation are filtered out
-                    // because the overlap with a created annotation and the same for CORRECTED
-                }
-                return;
-            }
+        Optional<LearningRecordType> action = learningRecordService.getUserAction(aUser, aLayer,
+                aSuggestion.getDocumentName(), aSuggestion.getBegin(), aSuggestion.getEnd(),
+                aSuggestion.getLabel());
+        
+        if (!action.isPresent()) {
+            return;
+        }
+        
+        switch (action.get()) {
+        case REJECTED:
+            aSuggestion.hide(FLAG_REJECTED);
+            break;
+        case SKIPPED:
+            aSuggestion.hide(FLAG_SKIPPED);
+            break;
+        default:
+            // Nothing to do for the other cases. ACCEPTED annotation are filtered out
+            // because the overlap with a created annotation and the same for CORRECTED
         }
     }
 
@@ -1582,33 +1819,67 @@ public class RecommendationServiceImpl
         throws UIMAException, IOException
     {
         try (StopWatch watch = new StopWatch(log, "adding score features")) {
-            TypeSystemDescription tsd = annoService.getFullProjectTypeSystem(aProject);
+            annoService.upgradeCas(aSourceCas, aTargetCas, getPredictionTypeSystem(aProject));
+        }
 
-            for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
-                TypeDescription td = tsd.getType(layer.getName());
+        return aTargetCas;
+    }
+    
+    /**
+     * Returns the project type system extended with the score and prediction features. The type
+     * system is cached until the layer configuration of the project changes.
+     */
+    private TypeSystemDescription getPredictionTypeSystem(Project aProject)
+        throws ResourceInitializationException
+    {
+        TypeSystemDescription tsd = predictionTypeSystems.get(aProject.getId());
+        if (tsd != null) {
+            return tsd;
+        }
+        
+        tsd = annoService.getFullProjectTypeSystem(aProject);
 
-                if (td == null) {
-                    log.trace("Could not monkey patch type [{}]", layer.getName());
-                    continue;
-                }
+        for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
+            TypeDescription td = tsd.getType(layer.getName());
 
-                for (FeatureDescription feature : td.getFeatures()) {
-                    String scoreFeatureName = feature.getName() + FEATURE_NAME_SCORE_SUFFIX;
-                    td.addFeature(scoreFeatureName, "Score feature", CAS.TYPE_NAME_DOUBLE);
-                    
-                    String scoreExplanationFeatureName = feature.getName() + 
-                            FEATURE_NAME_SCORE_EXPLANATION_SUFFIX;
-                    td.addFeature(scoreExplanationFeatureName, "Score explanation feature", 
-                            CAS.TYPE_NAME_STRING);
-                }
+            if (td == null) {
+                log.trace("Could not monkey patch type [{}]", layer.getName());
+                continue;
+            }
 
-                td.addFeature(FEATURE_NAME_IS_PREDICTION, "Is Prediction", CAS.TYPE_NAME_BOOLEAN);
+            for (FeatureDescription feature : td.getFeatures()) {
+                String scoreFeatureName = feature.getName() + FEATURE_NAME_SCORE_SUFFIX;
+                td.addFeature(scoreFeatureName, "Score feature", CAS.TYPE_NAME_DOUBLE);
+                
+                String scoreExplanationFeatureName = feature.getName() + 
+                        FEATURE_NAME_SCORE_EXPLANATION_SUFFIX;
+                td.addFeature(scoreExplanationFeatureName, "Score explanation feature", 
+                        CAS.TYPE_NAME_STRING);
             }
 
-            annoService.upgradeCas(aSourceCas, aTargetCas, tsd);
+            td.addFeature(FEATURE_NAME_IS_PREDICTION, "Is Prediction", CAS.TYPE_NAME_BOOLEAN);
         }
-
-        return aTargetCas;
+        
+        TypeSystemDescription existing = predictionTypeSystems.putIfAbsent(aProject.getId(), tsd);
+        
+        return existing != null ? existing : tsd;
+    }
+    
+    /**
+     * Removes all predictions from the given CAS such that it can be re-used for running the next
+     * recommender on the same document.
+     */
+    private void removePredictions(CAS aCas)
+    {
+        List<FeatureStructure> predictions = new ArrayList<>();
+        for (FeatureStructure fs : CasUtil.selectAllFS(aCas)) {
+            Feature isPrediction = fs.getType().getFeatureByBaseName(FEATURE_NAME_IS_PREDICTION);
+            if (isPrediction != null && fs.getBooleanValue(isPrediction)) {
+                predictions.add(fs);
+            }
+        }
+        
+        predictions.forEach(aCas::removeFsFromIndexes);
     }
     
     private class TriggerTrainingTaskListener
@@ -24,12 +24,18 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recomm
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.lang3.concurrent.ConcurrentException;
 import org.apache.commons.lang3.concurrent.LazyInitializer;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Type;
@@ -53,7 +59,9 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
 
@@ -63,6 +71,12 @@ import de.tudarmstadt.ukp.inception.scheduling.Task;
 public class TrainingTask
     extends Task
 {
+    /**
+     * Value of the document change counter at the time a context was trained. Only set on contexts
+     * produced by incremental training.
+     */
+    private static final Key<Long> KEY_CHANGE_SEQUENCE = new Key<>("trainedAtChangeSequence");
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private @Autowired AnnotationSchemaService annoService;
@@ -89,6 +103,10 @@ public class TrainingTask
             log.debug("[{}][{}]: Starting training for project [{}] triggered by [{}]...",
                     getId(), user.getUsername(),project, getTrigger());
     
+            // Any document change recorded after this point is picked up by the next
+            // incremental training - so we need to obtain it before reading any CASes.
+            long changeSequence = recommendationService.getDocumentChangeSequence(user, project);
+            
             // Read the CASes only when they are accessed the first time. This allows us to skip
             // reading the CASes in case that no layer / recommender is available or if no
             // recommender requires evaluation.
@@ -102,6 +120,10 @@ public class TrainingTask
                 }
             };
             
+            // Documents read for incremental training - shared across all recommenders
+            IncrementalTrainingDocuments changedDocuments = new IncrementalTrainingDocuments(
+                    project, user);
+            
             boolean seenSuccessfulTraining = false;
             boolean seenNonTrainingRecommender = false;
             
@@ -153,10 +175,25 @@ public class TrainingTask
                         }
                         
                         RecommendationEngine recommendationEngine = factory.build(recommender);
+                        
+                        Optional<RecommenderContext> previousCtx = recommendationService
+                                .getContext(user, recommender);
+                        
+                        // An incrementally trained engine can only build on the previous context
+                        // if we know which documents changed since that context was trained
+                        Optional<Set<String>> changedDocumentNames = Optional.empty();
+                        if (recommendationEngine.isIncrementalTrainingSupported()) {
+                            changedDocumentNames = previousCtx
+                                    .flatMap(c -> c.get(KEY_CHANGE_SEQUENCE))
+                                    .flatMap(seq -> recommendationService
+                                            .listDocumentsChangedSince(user, project, seq));
+                            if (!changedDocumentNames.isPresent()) {
+                                previousCtx = Optional.empty();
+                            }
+                        }
                        
                         RecommenderContext ctx = recommendationEngine
-                                .newContext(recommendationService.getContext(user, recommender)
-                                        .orElse(RecommenderContext.EMPTY_CONTEXT));
+                                .newContext(previousCtx.orElse(RecommenderContext.EMPTY_CONTEXT));
                         ctx.setUser(user);
                         
                         RecommendationEngineCapability capability = recommendationEngine
@@ -173,6 +210,15 @@ public class TrainingTask
                             continue;
                         }
                         
+                        if (recommendationEngine.isIncrementalTrainingSupported()) {
+                            if (trainIncrementally(recommender, recommendationEngine, ctx,
+                                    previousCtx, changedDocumentNames, changeSequence,
+                                    changedDocuments, casses, startTime)) {
+                                seenSuccessfulTraining = true;
+                            }
+                            continue;
+                        }
+                        
                         List<CAS> cassesForTraining = casses.get()
                                 .stream()
                                 .filter(e -> !recommender.getStatesIgnoredForTraining()
@@ -235,12 +281,97 @@ public class TrainingTask
         }
     }
 
+    /**
+     * Trains the given engine using only the documents that changed since the previous context
+     * was trained. If there is no previous context, all documents are used.
+     * 
+     * @return whether the engine is ready for prediction after the training.
+     */
+    private boolean trainIncrementally(Recommender aRecommender, RecommendationEngine aEngine,
+            RecommenderContext aCtx, Optional<RecommenderContext> aPreviousCtx,
+            Optional<Set<String>> aChangedDocumentNames, long aChangeSequence,
+            IncrementalTrainingDocuments aChangedDocuments,
+            LazyInitializer<List<TrainingDocument>> aAllDocuments, long aStartTime)
+        throws RecommendationException, ConcurrentException
+    {
+        User user = getUser();
+        
+        List<TrainingDocument> documents;
+        Set<String> removedDocuments = new HashSet<>();
+        if (aChangedDocumentNames.isPresent()) {
+            Set<String> changedDocumentNames = aChangedDocumentNames.get();
+            
+            // Nothing changed, so the previous context is still up-to-date
+            if (changedDocumentNames.isEmpty()) {
+                log.debug("[{}][{}][{}]: No documents changed since last training - keeping model",
+                        getId(), user.getUsername(), aRecommender.getName());
+                return aEngine.isReadyForPrediction(aPreviousCtx.get());
+            }
+            
+            documents = aChangedDocuments.get(changedDocumentNames);
+            
+            // Documents which no longer exist do no longer contribute any training data
+            removedDocuments.addAll(changedDocumentNames);
+            documents.forEach(d -> removedDocuments.remove(d.name));
+        }
+        else {
+            documents = aAllDocuments.get();
+        }
+
+        Map<String, CAS> changedCasses = new LinkedHashMap<>();
+        for (TrainingDocument doc : documents) {
+            if (
+                    !aRecommender.getStatesIgnoredForTraining().contains(doc.state) &&
+                    containsTargetTypeAndFeature(aRecommender, doc.cas)
+            ) {
+                changedCasses.put(doc.name, doc.cas);
+            }
+            else {
+                removedDocuments.add(doc.name);
+            }
+        }
+        
+        // If no data for training is available, but the engine requires training, do not mark
+        // as ready
+        if (
+                !aChangedDocumentNames.isPresent() && 
+                changedCasses.isEmpty() && 
+                aEngine.getTrainingCapability() == TRAINING_REQUIRED
+        ) {
+            log.debug("[{}][{}][{}]: There are no annotations available to train on",
+                    getId(), user.getUsername(), aRecommender.getName());
+            return false;
+        }
+        
+        log.debug("[{}][{}][{}]: Incrementally training model on [{}] changed and [{}] removed "
+                + "documents ...", getId(), user.getUsername(), aRecommender.getName(),
+                changedCasses.size(), removedDocuments.size());
+        
+        aEngine.trainIncremental(aCtx, changedCasses, removedDocuments);
+        aCtx.put(KEY_CHANGE_SEQUENCE, aChangeSequence);
+        
+        boolean ready = aEngine.isReadyForPrediction(aCtx);
+        log.debug("[{}][{}][{}]: Incremental training {} on [{}] changed and [{}] removed "
+                + "documents ({} ms)", getId(), user.getUsername(), aRecommender.getName(),
+                ready ? "successful" : "unsuccessful", changedCasses.size(),
+                removedDocuments.size(), (System.currentTimeMillis() - aStartTime));
+        
+        aCtx.close();
+        recommendationService.putContext(user, aRecommender, aCtx);
+        
+        return ready;
+    }
+    
     private List<TrainingDocument> readCasses(Project aProject, User aUser)
+    {
+        return readCasses(aUser, documentService.listAllDocuments(aProject, aUser));
+    }
+
+    private List<TrainingDocument> readCasses(User aUser,
+            Map<SourceDocument, AnnotationDocument> aDocuments)
     {
         List<TrainingDocument> casses = new ArrayList<>();
-        Map<SourceDocument, AnnotationDocument> allDocuments =
-                documentService.listAllDocuments(aProject, aUser);
-        for (Map.Entry<SourceDocument, AnnotationDocument> entry : allDocuments.entrySet()) {
+        for (Map.Entry<SourceDocument, AnnotationDocument> entry : aDocuments.entrySet()) {
             try {
                 SourceDocument sourceDocument = entry.getKey();
                 AnnotationDocument annotationDocument = entry.getValue();
@@ -251,7 +382,7 @@ public class TrainingTask
                 // crossed.
                 CAS cas = documentService.readAnnotationCas(sourceDocument, aUser.getUsername(),
                         AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
-                casses.add(new TrainingDocument(cas, state));
+                casses.add(new TrainingDocument(sourceDocument.getName(), cas, state));
             } catch (IOException e) {
                 log.error("Cannot read annotation CAS.", e);
             }
@@ -282,12 +413,54 @@ public class TrainingTask
 
     private static class TrainingDocument
     {
+        private final String name;
         private final CAS cas;
         private final AnnotationDocumentState state;
 
-        private TrainingDocument(CAS aCas, AnnotationDocumentState aState) {
+        private TrainingDocument(String aName, CAS aCas, AnnotationDocumentState aState) {
+            name = aName;
             cas = aCas;
             state = aState;
         }
     }
+    
+    /**
+     * Reads the CASes of changed documents on demand. Documents which have already been read for
+     * one recommender are re-used for the next one.
+     */
+    private class IncrementalTrainingDocuments
+    {
+        private final Project project;
+        private final User user;
+        private final Map<String, TrainingDocument> documents = new HashMap<>();
+        private Map<SourceDocument, AnnotationDocument> allDocuments;
+        
+        private IncrementalTrainingDocuments(Project aProject, User aUser)
+        {
+            project = aProject;
+            user = aUser;
+        }
+        
+        public List<TrainingDocument> get(Set<String> aDocumentNames)
+        {
+            if (allDocuments == null) {
+                allDocuments = documentService.listAllDocuments(project, user);
+            }
+            
+            Map<SourceDocument, AnnotationDocument> toRead = new LinkedHashMap<>();
+            for (Map.Entry<SourceDocument, AnnotationDocument> entry : allDocuments.entrySet()) {
+                String name = entry.getKey().getName();
+                if (aDocumentNames.contains(name) && !documents.containsKey(name)) {
+                    toRead.put(entry.getKey(), entry.getValue());
+                }
+            }
+            
+            readCasses(user, toRead).forEach(doc -> documents.put(doc.name, doc));
+            
+            return aDocumentNames.stream()
+                    .filter(documents::containsKey)
+                    .map(documents::get)
+                    .collect(Collectors.toList());
+        }
+    }
 }
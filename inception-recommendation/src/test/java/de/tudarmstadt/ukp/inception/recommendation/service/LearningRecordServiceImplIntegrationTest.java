@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordChangeLocation.MAIN_EDITOR;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.ACCEPTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.REJECTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SKIPPED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.uima.cas.CAS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringConfig.class)
+@Transactional
+@DataJpaTest
+public class LearningRecordServiceImplIntegrationTest
+{
+    private static final String USER_NAME = "testUser";
+
+    private @Autowired TestEntityManager testEntityManager;
+    private @PersistenceContext EntityManager sharedEntityManager;
+
+    private LearningRecordServiceImpl sut;
+
+    private Project project;
+    private SourceDocument document;
+    private AnnotationLayer layer;
+    private AnnotationFeature feature;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        sut = new LearningRecordServiceImpl(testEntityManager.getEntityManager());
+
+        project = createProject("Test project");
+        document = createSourceDocument(project, "doc1");
+        layer = createAnnotationLayer(project);
+        feature = createAnnotationFeature(layer, "value");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        testEntityManager.clear();
+    }
+
+    @Test
+    public void thatRejectedSuggestionIsFound()
+    {
+        sut.logRecord(document, USER_NAME, buildSuggestion("doc1", 0, 4, "PER"), layer, feature,
+                REJECTED, MAIN_EDITOR);
+
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).contains(REJECTED);
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "LOC")).isEmpty();
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 5, "PER")).isEmpty();
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc2", 0, 4, "PER")).isEmpty();
+        assertThat(sut.getUserAction("otherUser", layer, "doc1", 0, 4, "PER")).isEmpty();
+    }
+
+    @Test
+    public void thatIndexIsUpdatedWhenRecordsChange()
+    {
+        // Load the index before any records exist
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).isEmpty();
+
+        AnnotationSuggestion suggestion = buildSuggestion("doc1", 0, 4, "PER");
+        
+        sut.logRecord(document, USER_NAME, suggestion, layer, feature, SKIPPED, MAIN_EDITOR);
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).contains(SKIPPED);
+
+        // Logging the same suggestion again replaces the previous record
+        sut.logRecord(document, USER_NAME, suggestion, layer, feature, ACCEPTED, MAIN_EDITOR);
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).contains(ACCEPTED);
+        assertThat(sut.listRecords(USER_NAME, layer)).hasSize(1);
+
+        sut.deleteRecords(document, USER_NAME);
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).isEmpty();
+    }
+
+    @Test
+    public void thatDeletingSkippedSuggestionsUpdatesIndex()
+    {
+        sut.logRecord(document, USER_NAME, buildSuggestion("doc1", 0, 4, "PER"), layer, feature,
+                SKIPPED, MAIN_EDITOR);
+        sut.logRecord(document, USER_NAME, buildSuggestion("doc1", 5, 9, "LOC"), layer, feature,
+                REJECTED, MAIN_EDITOR);
+        
+        User user = new User();
+        user.setUsername(USER_NAME);
+        sut.deleteSkippedSuggestions(user, layer);
+        
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).isEmpty();
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 5, 9, "LOC")).contains(REJECTED);
+    }
+
+    @Test
+    public void thatIndexIsDroppedWhenTransactionIsRolledBack()
+    {
+        // The service must survive the transaction, so it cannot use the entity manager bound to
+        // the current transaction
+        sut = new LearningRecordServiceImpl(sharedEntityManager);
+        
+        // Load the index before any records exist
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).isEmpty();
+        
+        sut.logRecord(document, USER_NAME, buildSuggestion("doc1", 0, 4, "PER"), layer, feature,
+                REJECTED, MAIN_EDITOR);
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).contains(REJECTED);
+        
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+        TestTransaction.start();
+        
+        assertThat(sut.getUserAction(USER_NAME, layer, "doc1", 0, 4, "PER")).isEmpty();
+    }
+
+    // Helper
+
+    private AnnotationSuggestion buildSuggestion(String aDocumentName, int aBegin, int aEnd,
+            String aLabel)
+    {
+        return new AnnotationSuggestion(0, 1, "recommender", layer.getId(), feature.getName(),
+                aDocumentName, aBegin, aEnd, "text", aLabel, aLabel, 0.5, null);
+    }
+
+    private Project createProject(String aName)
+    {
+        Project project = new Project();
+        project.setName(aName);
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+        return testEntityManager.persist(project);
+    }
+
+    private SourceDocument createSourceDocument(Project aProject, String aName)
+    {
+        SourceDocument document = new SourceDocument();
+        document.setProject(aProject);
+        document.setName(aName);
+        document.setFormat("text");
+        return testEntityManager.persist(document);
+    }
+
+    private AnnotationLayer createAnnotationLayer(Project aProject)
+    {
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setEnabled(true);
+        layer.setName(NamedEntity.class.getName());
+        layer.setReadonly(false);
+        layer.setType(NamedEntity.class.getName());
+        layer.setUiName("test ui name");
+        layer.setAnchoringMode(false, false);
+        layer.setProject(aProject);
+
+        return testEntityManager.persist(layer);
+    }
+
+    private AnnotationFeature createAnnotationFeature(AnnotationLayer aLayer, String aName)
+    {
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setLayer(aLayer);
+        feature.setName(aName);
+        feature.setUiName(aName);
+        feature.setType(CAS.TYPE_NAME_STRING);
+        feature.setProject(aLayer.getProject());
+
+        return testEntityManager.persist(feature);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode.AUTO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.TOKENS;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.CasFactory;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.AnnotationSchemaServiceImpl;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommenderFactoryRegistry;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
+
+public class PredictionWorkersTest
+{
+    private static final int DOCUMENTS = 20;
+
+    private @Mock AnnotationSchemaService annoService;
+    private @Mock DocumentService documentService;
+    private @Mock LearningRecordService recordService;
+    private @Mock RecommenderFactoryRegistry recommenderFactoryRegistry;
+    private @Mock RecommendationEngineFactory<Object> factory;
+    private @Mock EntityManager entityManager;
+
+    private User user;
+    private Project project;
+    private AnnotationLayer layer;
+    private Recommender recommender;
+    private List<SourceDocument> documents;
+    private TokenEchoRecommender engine;
+
+    private CasStorageSession casStorageSession;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        initMocks(this);
+
+        casStorageSession = CasStorageSession.open();
+
+        user = new User("user");
+
+        project = new Project();
+        project.setId(1L);
+        project.setName("project");
+
+        layer = new AnnotationLayer();
+        layer.setId(2L);
+        layer.setName(NamedEntity.class.getName());
+        layer.setProject(project);
+        layer.setEnabled(true);
+        layer.setAnchoringMode(TOKENS);
+
+        AnnotationFeature feature = new AnnotationFeature("value", CAS.TYPE_NAME_STRING);
+        feature.setLayer(layer);
+
+        recommender = new Recommender();
+        recommender.setId(3L);
+        recommender.setName("recommender");
+        recommender.setTool("token-echo");
+        recommender.setProject(project);
+        recommender.setLayer(layer);
+        recommender.setFeature(feature);
+        recommender.setEnabled(true);
+
+        engine = new TokenEchoRecommender(recommender);
+
+        when(annoService.listAnnotationLayer(project)).thenReturn(asList(layer));
+        when(annoService.listSupportedFeatures(layer)).thenReturn(asList(feature));
+        when(annoService.getFullProjectTypeSystem(project))
+                .thenAnswer(call -> createTypeSystemDescription());
+        AnnotationSchemaService realAnnoService = new AnnotationSchemaServiceImpl();
+        doAnswer(call -> {
+            realAnnoService.upgradeCas(call.getArgument(0), call.getArgument(1),
+                    call.<TypeSystemDescription>getArgument(2));
+            return null;
+        }).when(annoService).upgradeCas(any(CAS.class), any(CAS.class),
+                any(TypeSystemDescription.class));
+
+        when(entityManager.find(Recommender.class, recommender.getId())).thenReturn(recommender);
+        when(recommenderFactoryRegistry.getFactory(recommender.getTool())).thenReturn(factory);
+        when(factory.accepts(any(), any())).thenReturn(true);
+        when(factory.build(recommender)).thenReturn(engine);
+
+        documents = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            SourceDocument document = new SourceDocument("doc" + i, project, "text");
+            document.setId((long) i);
+            documents.add(document);
+
+            CAS cas = createCas("This is document number " + i + " .");
+            when(documentService.readAnnotationCas(document, user.getUsername(),
+                    AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS)).thenReturn(cas);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        casStorageSession.close();
+    }
+
+    @Test
+    public void thatParallelPredictionYieldsSameResultAsSequentialPrediction() throws Exception
+    {
+        Predictions sequential = computePredictions(1);
+        Predictions parallel = computePredictions(4);
+
+        assertThat(parallel.getPredictions()).hasSize(DOCUMENTS * 6);
+        assertThat(summarize(parallel)).isEqualTo(summarize(sequential));
+        for (SourceDocument document : documents) {
+            assertThat(parallel.hasRunPredictionOnDocument(document)).isTrue();
+        }
+    }
+
+    @Test
+    public void thatPredictionOnNonThreadSafeEngineIsSerialized() throws Exception
+    {
+        computePredictions(4);
+
+        assertThat(engine.maxConcurrentPredictions).hasValue(1);
+    }
+
+    private Predictions computePredictions(int aThreads)
+    {
+        RecommenderPropertiesImpl properties = new RecommenderPropertiesImpl();
+        properties.setPredictionThreads(aThreads);
+
+        RecommendationServiceImpl sut = new RecommendationServiceImpl(null, null,
+                recommenderFactoryRegistry, null, annoService, documentService, recordService,
+                null, entityManager, null, properties);
+        try {
+            sut.setActiveRecommenders(user, layer,
+                    asList(new EvaluatedRecommender(recommender, new EvaluationResult())));
+            sut.putContext(user, recommender, new RecommenderContext());
+
+            return sut.computePredictions(user, project, documents, emptyList());
+        }
+        finally {
+            sut.destroy();
+        }
+    }
+
+    private static Set<String> summarize(Predictions aPredictions)
+    {
+        return aPredictions.getPredictions().values().stream()
+                .map(s -> s.getDocumentName() + ":" + s.getBegin() + "-" + s.getEnd() + ":"
+                        + s.getLabel())
+                .collect(toSet());
+    }
+
+    private static CAS createCas(String aText) throws Exception
+    {
+        CAS cas = CasFactory.createText(aText);
+        cas.addFsToIndexes(cas.createAnnotation(CasUtil.getType(cas, Sentence.class), 0,
+                aText.length()));
+        int begin = 0;
+        for (String token : aText.split(" ")) {
+            cas.addFsToIndexes(cas.createAnnotation(CasUtil.getType(cas, Token.class), begin,
+                    begin + token.length()));
+            begin += token.length() + 1;
+        }
+        return cas;
+    }
+
+    /**
+     * Suggests each token as a named entity labeled with its own text. Keeps track of how many
+     * predictions run at the same time. Does not declare itself as thread-safe.
+     */
+    private static class TokenEchoRecommender
+        extends RecommendationEngine
+    {
+        private final AtomicInteger concurrentPredictions = new AtomicInteger();
+        private final AtomicInteger maxConcurrentPredictions = new AtomicInteger();
+
+        public TokenEchoRecommender(Recommender aRecommender)
+        {
+            super(aRecommender);
+        }
+
+        @Override
+        public void train(RecommenderContext aContext, List<CAS> aCasses)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public void predict(RecommenderContext aContext, CAS aCas)
+        {
+            maxConcurrentPredictions.accumulateAndGet(concurrentPredictions.incrementAndGet(),
+                    Math::max);
+            try {
+                Type predictedType = getPredictedType(aCas);
+                Feature predictedFeature = getPredictedFeature(aCas);
+                Feature isPredictionFeature = getIsPredictionFeature(aCas);
+                Feature scoreFeature = getScoreFeature(aCas);
+
+                for (AnnotationFS token : CasUtil.select(aCas, CasUtil.getType(aCas,
+                        Token.class))) {
+                    AnnotationFS annotation = aCas.createAnnotation(predictedType,
+                            token.getBegin(), token.getEnd());
+                    annotation.setStringValue(predictedFeature, token.getCoveredText());
+                    annotation.setDoubleValue(scoreFeature, 1.0);
+                    annotation.setBooleanValue(isPredictionFeature, true);
+                    aCas.addFsToIndexes(annotation);
+                }
+
+                // Give other workers the chance to enter at the same time
+                Thread.sleep(5);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                concurrentPredictions.decrementAndGet();
+            }
+        }
+
+        @Override
+        public EvaluationResult evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
+        {
+            return new EvaluationResult();
+        }
+
+        @Override
+        public boolean isReadyForPrediction(RecommenderContext aContext)
+        {
+            return true;
+        }
+    }
+}
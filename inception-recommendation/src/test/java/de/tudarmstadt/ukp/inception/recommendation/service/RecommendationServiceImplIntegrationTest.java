@@ -26,6 +26,9 @@ import static org.apache.uima.util.TypeSystemUtil.typeSystem2TypeSystemDescripti
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
@@ -34,6 +37,7 @@ import java.util.Optional;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.jcas.JCas;
@@ -56,6 +60,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.AnnotationSchemaServiceImpl;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -212,6 +217,38 @@ public class RecommendationServiceImplIntegrationTest
         }
     }
 
+    @Test
+    public void monkeyPatchTypeSystem_IsCachedUntilLayerConfigurationChanges() throws Exception
+    {
+        try (CasStorageSession session = CasStorageSession.open()) {
+            JCas jCas = JCasFactory.createText("I am text CAS", "de");
+            session.add("jCas", CasAccessMode.EXCLUSIVE_WRITE_ACCESS, jCas.getCas());
+            
+            TypeSystem projectTypeSystem = jCas.getTypeSystem();
+            when(annoService.getFullProjectTypeSystem(project))
+                    .thenAnswer(call -> typeSystem2TypeSystemDescription(projectTypeSystem));
+            when(annoService.listAnnotationLayer(project))
+                    .thenReturn(asList(layer));
+            doCallRealMethod().when(annoService)
+                    .upgradeCas(any(CAS.class), any(TypeSystemDescription.class));
+            doCallRealMethod().when(annoService)
+                    .upgradeCas(any(CAS.class), any(CAS.class), any(TypeSystemDescription.class));
+    
+            sut.cloneAndMonkeyPatchCAS(project, jCas.getCas(), jCas.getCas());
+            sut.cloneAndMonkeyPatchCAS(project, jCas.getCas(), jCas.getCas());
+            
+            verify(annoService, times(1)).getFullProjectTypeSystem(project);
+            
+            LayerConfigurationChangedEvent event = mock(LayerConfigurationChangedEvent.class);
+            when(event.getProject()).thenReturn(project);
+            sut.onLayerConfigurationChanged(event);
+            
+            sut.cloneAndMonkeyPatchCAS(project, jCas.getCas(), jCas.getCas());
+            
+            verify(annoService, times(2)).getFullProjectTypeSystem(project);
+        }
+    }
+
     // Helper
 
     private Project createProject(String aName)
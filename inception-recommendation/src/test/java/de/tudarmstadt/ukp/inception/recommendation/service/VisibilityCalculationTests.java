@@ -17,13 +17,17 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.service;
 
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_REJECTED;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
@@ -43,7 +47,6 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
 import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
-import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
 
@@ -99,8 +102,6 @@ public class VisibilityCalculationTests
     @Test
     public void testCalculateVisibilityNoRecordsAllHidden() throws Exception
     {
-        when(recordService.listRecords(user, layer)).thenReturn(new ArrayList<>());
-
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(
                 new int[][] { { 1, 0, 3 }, { 2, 13, 20 } });
@@ -124,8 +125,6 @@ public class VisibilityCalculationTests
     @Test
     public void testCalculateVisibilityNoRecordsNotHidden() throws Exception
     {
-        when(recordService.listRecords(user, layer)).thenReturn(new ArrayList<>());
-
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(new int[][] { { 1, 5, 10 } });
         sut.calculateVisibility(cas, user, layer, suggestions, 0, 25);
@@ -138,16 +137,39 @@ public class VisibilityCalculationTests
         assertThat(invisibleSuggestions).isEmpty();
     }
 
+    @Test
+    public void testCalculateVisibilityOnlyWithinWindow() throws Exception
+    {
+        CAS cas = getTestCas();
+        Collection<SuggestionGroup> suggestions = getSuggestionGroup(
+                new int[][] { { 1, 0, 3 }, { 2, 13, 20 }, { 3, 21, 24 }, { 4, 30, 35 } });
+        // A suggestion outside the window which was hidden by a previous calculation
+        getSuggestion(suggestions, 30).hide(FLAG_REJECTED);
+        
+        sut.calculateVisibility(cas, user, layer, suggestions, 10, 25);
+
+        // The suggestions outside the window keep their visibility - the first one would be
+        // hidden if the overlapping annotation outside the window were considered
+        assertThat(getSuggestion(suggestions, 0).isVisible()).isTrue();
+        assertThat(getSuggestion(suggestions, 30).isVisible()).isFalse();
+        assertThat(getSuggestion(suggestions, 30).getReasonForHiding().trim())
+                .isEqualTo("rejected");
+        
+        // Within the window, the suggestion overlapping an annotation is hidden and the other one
+        // is not
+        assertThat(getSuggestion(suggestions, 13).isVisible()).isFalse();
+        assertThat(getSuggestion(suggestions, 21).isVisible()).isTrue();
+
+        // The records are only looked up for the remaining visible suggestion in the window
+        verify(recordService).getUserAction(user, layer, DOC_NAME, 21, 24, null);
+        verifyNoMoreInteractions(recordService);
+    }
+
     @Test
     public void testCalculateVisibilityRejected() throws Exception
     {
-        List<LearningRecord> records = new ArrayList<>();
-        LearningRecord rejectedRecord = new LearningRecord();
-        rejectedRecord.setUserAction(LearningRecordType.REJECTED);
-        rejectedRecord.setOffsetCharacterBegin(5);
-        rejectedRecord.setOffsetCharacterEnd(10);
-        records.add(rejectedRecord);
-        when(recordService.listRecords(user, layer)).thenReturn(records);
+        when(recordService.getUserAction(user, layer, DOC_NAME, 5, 10, null))
+                .thenReturn(Optional.of(LearningRecordType.REJECTED));
 
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(new int[][] { { 1, 5, 10 } });
@@ -163,6 +185,14 @@ public class VisibilityCalculationTests
                 .containsExactly("rejected");
     }
 
+    private AnnotationSuggestion getSuggestion(Collection<SuggestionGroup> aSuggestions,
+            int aBegin)
+    {
+        return aSuggestions.stream().flatMap(SuggestionGroup::stream)
+                .filter(s -> s.getBegin() == aBegin)
+                .findFirst().get();
+    }
+
     private List<AnnotationSuggestion> getInvisibleSuggestions(
             Collection<SuggestionGroup> aSuggestions)
     {
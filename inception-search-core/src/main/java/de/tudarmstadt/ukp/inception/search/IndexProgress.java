@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.Serializable;
+
+/**
+ * Progress of a re-indexing operation.
+ */
+public class IndexProgress
+    implements Serializable
+{
+    private static final long serialVersionUID = -1540829408232383389L;
+
+    private final int done;
+    private final int total;
+
+    public IndexProgress(int aDone, int aTotal)
+    {
+        done = aDone;
+        total = aTotal;
+    }
+
+    /**
+     * @return number of documents which have already been indexed.
+     */
+    public int getDone()
+    {
+        return done;
+    }
+
+    /**
+     * @return total number of documents to index.
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+}
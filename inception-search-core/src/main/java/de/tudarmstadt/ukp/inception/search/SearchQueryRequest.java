@@ -38,6 +38,8 @@ public class SearchQueryRequest
 
     private final long offset;
     private final long count;
+    
+    private final String searchAfter;
 
     public SearchQueryRequest(Project aProject, User aUser, String aQuery)
     {
@@ -53,6 +55,21 @@ public class SearchQueryRequest
     public SearchQueryRequest(Project aProject, User aUser, String aQuery,
         SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
         AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
+    {
+        this(aProject, aUser, aQuery, aLimitedToDocument, aAnnotationLayer, aAnnotationFeature,
+                aOffset, aCount, null);
+    }
+
+    /**
+     * @param aSearchAfter
+     *            the token from {@link SearchResult#getSearchAfter()} of the last result of the
+     *            previous page. If the token is still valid, the query continues directly after
+     *            that result instead of skipping over the first {@code aOffset} results. Otherwise,
+     *            the offset is used. May be {@code null}.
+     */
+    public SearchQueryRequest(Project aProject, User aUser, String aQuery,
+        SourceDocument aLimitedToDocument, AnnotationLayer aAnnotationLayer,
+        AnnotationFeature aAnnotationFeature, long aOffset, long aCount, String aSearchAfter)
     {
         super();
         project = aProject;
@@ -63,6 +80,7 @@ public class SearchQueryRequest
         annotationFeature = aAnnotationFeature;
         offset = aOffset;
         count = aCount;
+        searchAfter = aSearchAfter;
     }
 
     public Project getProject()
@@ -104,4 +122,9 @@ public class SearchQueryRequest
     {
         return count;
     }
+
+    public Optional<String> getSearchAfter()
+    {
+        return Optional.ofNullable(searchAfter);
+    }
 }
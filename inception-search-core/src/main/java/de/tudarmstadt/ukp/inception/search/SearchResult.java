@@ -37,6 +37,7 @@ public class SearchResult
     private long documentId;
     private String documentTitle;
     private boolean readOnly;
+    private String searchAfter;
 
     // only used in the ui to simplify the selection of search results for annotation
     private boolean isSelectedForAnnotation = true;
@@ -161,6 +162,23 @@ public class SearchResult
         readOnly = aReadOnly;
     }
 
+    /**
+     * Token which can be passed to a {@link SearchQueryRequest} to fetch the results following
+     * this one. It is only set on the last result of a page and only if further results may
+     * follow.
+     * 
+     * @return the continuation token or {@code null}.
+     */
+    public String getSearchAfter()
+    {
+        return searchAfter;
+    }
+
+    public void setSearchAfter(String aSearchAfter)
+    {
+        searchAfter = aSearchAfter;
+    }
+
     @Override
     public int hashCode()
     {
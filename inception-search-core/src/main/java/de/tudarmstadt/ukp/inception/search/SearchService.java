@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.search;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
@@ -83,6 +84,20 @@ public interface SearchService
             AnnotationFeature aAnnotationFeature, long aOffset, long aCount)
         throws IOException, ExecutionException;
 
+    /**
+     * Like {@link #query(User, Project, String, SourceDocument, AnnotationLayer,
+     * AnnotationFeature, long, long)}, but continues directly after the result carrying the given
+     * {@link SearchResult#getSearchAfter() search-after token}. If the token can no longer be
+     * used, e.g. because the index has changed in the meantime, the offset is used instead.
+     * 
+     * @param aSearchAfter
+     *            the search-after token of the last result of the previous page or {@code null}.
+     */
+    Map<String, List<SearchResult>> query(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, long aOffset, long aCount, String aSearchAfter)
+        throws IOException, ExecutionException;
+
     void reindex(Project aproject) throws IOException;
 
     /**
@@ -100,6 +115,14 @@ public interface SearchService
 
     boolean isIndexInProgress(Project aProject);
 
+    /**
+     * @param aProject
+     *            the project
+     * @return the progress of the re-indexing operation currently running in the given project,
+     *         if there is any.
+     */
+    Optional<IndexProgress> getIndexProgress(Project aProject);
+
     long determineNumOfQueryResults(User aUser, Project aProject, String aQuery,
             SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
             AnnotationFeature aAnnotationFeature)
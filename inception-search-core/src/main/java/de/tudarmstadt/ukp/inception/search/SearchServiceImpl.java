@@ -25,10 +25,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -56,7 +64,10 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.config.SearchServiceProperties;
+import de.tudarmstadt.ukp.inception.search.config.SearchServicePropertiesImpl;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRebuild;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.model.Index;
 import de.tudarmstadt.ukp.inception.search.scheduling.IndexScheduler;
@@ -85,17 +96,37 @@ public class SearchServiceImpl
 
     // The indexes for each project
     private LoadingCache<Long, Index> indexByProject;
+    
+    // Reads and serializes the documents when re-indexing a project
+    private final ExecutorService reindexExecutor;
+    
+    // Progress of the re-indexing operations by project ID
+    private final ConcurrentMap<Long, ReindexProgress> reindexProgress;
 
-    @Autowired
     public SearchServiceImpl()
+    {
+        this(new SearchServicePropertiesImpl());
+    }
+
+    @Autowired
+    public SearchServiceImpl(SearchServiceProperties aProperties)
     {
         indexByProject = Caffeine.newBuilder().expireAfterAccess(10, MINUTES).maximumSize(1_000)
                 .removalListener(this::unloadIndex).build(key -> loadIndex(key));
+        
+        reindexExecutor = Executors.newFixedThreadPool(
+                Math.max(1, aProperties.getReindexThreads()), new BasicThreadFactory.Builder()
+                        .namingPattern("reindex-worker-%d")
+                        .daemon(true)
+                        .build());
+        reindexProgress = new ConcurrentHashMap<>();
     }
 
     @Override
     public void destroy()
     {
+        reindexExecutor.shutdownNow();
+        
         // Invalidate all the cached/open indexes so they get closed
         if (indexByProject != null) {
             indexByProject.invalidateAll();
@@ -397,6 +428,17 @@ public class SearchServiceImpl
             SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
             AnnotationFeature aAnnotationFeature, long offset, long count)
         throws IOException, ExecutionException
+    {
+        return query(aUser, aProject, aQuery, aDocument, aAnnotationLayer, aAnnotationFeature,
+                offset, count, null);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, List<SearchResult>> query(User aUser, Project aProject, String aQuery,
+            SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
+            AnnotationFeature aAnnotationFeature, long offset, long count, String aSearchAfter)
+        throws IOException, ExecutionException
     {
         log.trace("Query [{}] for user [{}] in project [{}]({})", aQuery, aUser.getUsername(),
                 aProject.getName(), aProject.getId());
@@ -411,7 +453,7 @@ public class SearchServiceImpl
         ensureIndexIsCreatedAndValid(aProject, index);
 
         return index.getPhysicalIndex().executeQuery(new SearchQueryRequest(aProject, aUser, aQuery,
-                aDocument, aAnnotationLayer, aAnnotationFeature, offset, count));
+                aDocument, aAnnotationLayer, aAnnotationFeature, offset, count, aSearchAfter));
     }
 
     /**
@@ -431,46 +473,89 @@ public class SearchServiceImpl
         }
 
         synchronized (index) {
-            index.setInvalid(true);
+            List<AnnotationDocument> annotationDocuments = new ArrayList<>();
+            for (User user : projectService.listProjectUsersWithPermissions(aProject)) {
+                annotationDocuments.addAll(documentService.listAnnotationDocuments(aProject, user));
+            }
+            List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(aProject);
             
-            // Clear the index
-            index.getPhysicalIndex().clear();
+            ReindexProgress progress = new ReindexProgress(
+                    annotationDocuments.size() + sourceDocuments.size());
+            reindexProgress.put(aProject.getId(), progress);
             
-            // Index all the annotation documents
-            for (User user : projectService.listProjectUsersWithPermissions(aProject)) {
-                List<AnnotationDocument> annotationDocumentsForUser = documentService
-                        .listAnnotationDocuments(aProject, user);
-                for (AnnotationDocument doc : annotationDocumentsForUser) {
-                    // Because serialization is a process which modifies internal data structures of
-                    // the CAS, we need exclusive access the CAS for the time being.
-                    // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                    // for https://issues.apache.org/jira/browse/UIMA-6162
-                    byte[] casAsByteArray;
-                    try (CasStorageSession session = CasStorageSession.openNested()) {
-                        casAsByteArray = casToByteArray(documentService.readAnnotationCas(doc));
+            // The documents are indexed into a separate index which replaces the current index
+            // only when it is complete. This allows queries to continue on the current index
+            // while the re-indexing is in progress.
+            try (PhysicalIndexRebuild rebuild = index.getPhysicalIndex().startRebuild()) {
+                List<Future<?>> futures = new ArrayList<>();
+                try {
+                    // Index all the annotation documents
+                    for (AnnotationDocument doc : annotationDocuments) {
+                        futures.add(reindexExecutor.submit(() -> {
+                            rebuild.indexDocument(doc, readCas(doc));
+                            progress.increment();
+                            return null;
+                        }));
+                    }
+                    
+                    // Index all the source documents
+                    for (SourceDocument doc : sourceDocuments) {
+                        futures.add(reindexExecutor.submit(() -> {
+                            rebuild.indexDocument(doc, readCas(doc));
+                            progress.increment();
+                            return null;
+                        }));
+                    }
+                    
+                    for (Future<?> future : futures) {
+                        future.get();
                     }
-                    indexDocument(doc, casAsByteArray);
                 }
-            }
-
-            // Index all the source documents
-            for (SourceDocument doc : documentService.listSourceDocuments(aProject)) {
-                // Because serialization is a process which modifies internal data structures of
-                // the CAS, we need exclusive access the CAS for the time being.
-                // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                // for https://issues.apache.org/jira/browse/UIMA-6162
-                byte[] casAsByteArray;
-                try (CasStorageSession session = CasStorageSession.openNested()) {
-                    casAsByteArray = casToByteArray(documentService.createOrReadInitialCas(doc));
+                finally {
+                    // If we failed, do not continue processing the remaining documents
+                    futures.forEach(future -> future.cancel(true));
                 }
-                indexDocument(doc, casAsByteArray);
-            }            
+                
+                rebuild.commit();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Re-indexing of project [" + aProject.getName()
+                        + "] has been interrupted", e);
+            }
+            catch (java.util.concurrent.ExecutionException e) {
+                throw new IOException("Unable to re-index project [" + aProject.getName() + "]",
+                        e.getCause());
+            }
+            finally {
+                reindexProgress.remove(aProject.getId());
+            }
             
             // After re-indexing, reset the invalid flag
             index.setInvalid(false);
             entityManager.merge(index);
         }
     }
+    
+    private byte[] readCas(AnnotationDocument aDocument) throws IOException
+    {
+        // The CAS storage session is bound to the thread, so each worker needs its own.
+        // Because serialization is a process which modifies internal data structures of
+        // the CAS, we need exclusive access the CAS for the time being.
+        // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
+        // for https://issues.apache.org/jira/browse/UIMA-6162
+        try (CasStorageSession session = CasStorageSession.open()) {
+            return casToByteArray(documentService.readAnnotationCas(aDocument));
+        }
+    }
+    
+    private byte[] readCas(SourceDocument aDocument) throws IOException
+    {
+        // See comment in readCas(AnnotationDocument)
+        try (CasStorageSession session = CasStorageSession.open()) {
+            return casToByteArray(documentService.createOrReadInitialCas(aDocument));
+        }
+    }
 
     @Override
     public boolean isIndexValid(Project aProject)
@@ -485,6 +570,34 @@ public class SearchServiceImpl
         return indexScheduler.isIndexInProgress(aProject);
     }
 
+    @Override
+    public Optional<IndexProgress> getIndexProgress(Project aProject)
+    {
+        return Optional.ofNullable(reindexProgress.get(aProject.getId()))
+                .map(ReindexProgress::toIndexProgress);
+    }
+    
+    private static class ReindexProgress
+    {
+        private final AtomicInteger done = new AtomicInteger();
+        private final int total;
+        
+        public ReindexProgress(int aTotal)
+        {
+            total = aTotal;
+        }
+        
+        public void increment()
+        {
+            done.incrementAndGet();
+        }
+        
+        public IndexProgress toIndexProgress()
+        {
+            return new IndexProgress(done.get(), total);
+        }
+    }
+
     @Override
     public long determineNumOfQueryResults(User aUser, Project aProject, String aQuery,
             SourceDocument aDocument, AnnotationLayer aAnnotationLayer,
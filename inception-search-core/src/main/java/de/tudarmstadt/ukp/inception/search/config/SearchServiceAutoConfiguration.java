@@ -47,9 +47,9 @@ import de.tudarmstadt.ukp.inception.search.scheduling.IndexSchedulerImpl;
 public class SearchServiceAutoConfiguration
 {
     @Bean
-    public SearchService searchService()
+    public SearchService searchService(SearchServiceProperties aSearchServiceProperties)
     {
-        return new SearchServiceImpl();
+        return new SearchServiceImpl(aSearchServiceProperties);
     }
     
     @Bean
@@ -79,9 +79,9 @@ public class SearchServiceAutoConfiguration
     }
     
     @Bean 
-    public IndexScheduler indexScheduler()
+    public IndexScheduler indexScheduler(SearchServiceProperties aSearchServiceProperties)
     {
-        return new IndexSchedulerImpl();
+        return new IndexSchedulerImpl(aSearchServiceProperties);
     }
     
     @Bean
@@ -20,4 +20,21 @@ package de.tudarmstadt.ukp.inception.search.config;
 public interface SearchServiceProperties
 {
     boolean isEnabled();
+
+    /**
+     * @return number of threads processing indexing tasks. Tasks of the same project are always
+     *         processed one after the other, but tasks of different projects can run concurrently.
+     */
+    int getIndexingThreads();
+
+    /**
+     * @return maximum number of pending indexing tasks. When the limit is reached, threads
+     *         scheduling further tasks wait until there is room in the queue again.
+     */
+    int getIndexingQueueSize();
+
+    /**
+     * @return number of threads reading and serializing documents when a project is re-indexed.
+     */
+    int getReindexThreads();
 }
@@ -30,6 +30,9 @@ public class SearchServicePropertiesImpl
     implements SearchServiceProperties
 {
     private boolean enabled = false;
+    private int indexingThreads = 2;
+    private int indexingQueueSize = 100;
+    private int reindexThreads = 2;
 
     @Override
     public boolean isEnabled()
@@ -41,4 +44,37 @@ public class SearchServicePropertiesImpl
     {
         enabled = aEnabled;
     }
+
+    @Override
+    public int getIndexingThreads()
+    {
+        return indexingThreads;
+    }
+
+    public void setIndexingThreads(int aIndexingThreads)
+    {
+        indexingThreads = aIndexingThreads;
+    }
+
+    @Override
+    public int getIndexingQueueSize()
+    {
+        return indexingQueueSize;
+    }
+
+    public void setIndexingQueueSize(int aIndexingQueueSize)
+    {
+        indexingQueueSize = aIndexingQueueSize;
+    }
+
+    @Override
+    public int getReindexThreads()
+    {
+        return reindexThreads;
+    }
+
+    public void setReindexThreads(int aReindexThreads)
+    {
+        reindexThreads = aReindexThreads;
+    }
 }
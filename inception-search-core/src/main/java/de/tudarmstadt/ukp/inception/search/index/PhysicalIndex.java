@@ -61,6 +61,16 @@ public interface PhysicalIndex
     void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException;
 
     void clear() throws IOException;
+
+    /**
+     * Starts rebuilding the index from scratch. Until the returned rebuild is committed, queries
+     * continue to operate on the current contents of the index.
+     * 
+     * @return the rebuild to which the documents should be added.
+     * @throws IOException
+     *             if the rebuild could not be started.
+     */
+    PhysicalIndexRebuild startRebuild() throws IOException;
     
     /**
      * Retrieve the timestamp of this annotation document
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index;
+
+import java.io.IOException;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Rebuilds a {@link PhysicalIndex} from scratch. The documents are collected separately from the
+ * current contents of the index which remain searchable until the rebuild is committed. Documents
+ * may be added concurrently from multiple threads.
+ */
+public interface PhysicalIndexRebuild
+    extends AutoCloseable
+{
+    void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas) throws IOException;
+
+    void indexDocument(AnnotationDocument aAnnotationDocument, byte[] aBinaryCas)
+        throws IOException;
+
+    /**
+     * Replaces the contents of the index with the documents added to the rebuild.
+     * 
+     * @throws IOException
+     *             if the index could not be updated.
+     */
+    void commit() throws IOException;
+
+    /**
+     * Releases the resources held by the rebuild. If the rebuild has not been committed, the
+     * collected documents are discarded and the index remains unchanged.
+     */
+    @Override
+    void close() throws IOException;
+}
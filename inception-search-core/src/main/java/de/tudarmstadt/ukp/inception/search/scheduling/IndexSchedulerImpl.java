@@ -20,10 +20,18 @@ package de.tudarmstadt.ukp.inception.search.scheduling;
 import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.cas.CAS;
@@ -33,11 +41,15 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.search.config.SearchServiceProperties;
+import de.tudarmstadt.ukp.inception.search.config.SearchServicePropertiesImpl;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexAnnotationDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexSourceDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.ReindexTask;
@@ -45,8 +57,15 @@ import de.tudarmstadt.ukp.inception.search.scheduling.tasks.Task;
 
 /**
  * Indexer scheduler. Does the project re-indexing in an asynchronous way.
+ * <p>
+ * Tasks are processed by a pool of consumer threads. Tasks of the same project are processed one
+ * after the other in the order in which they were scheduled, but tasks of different projects can
+ * be processed concurrently. If the queue is full, threads scheduling new tasks have to wait
+ * until there is room again - tasks are never dropped.
+ * </p>
  */
 @Component
+@ManagedResource
 public class IndexSchedulerImpl
     implements InitializingBean, DisposableBean, IndexScheduler
 {
@@ -54,24 +73,56 @@ public class IndexSchedulerImpl
 
     private @Autowired ApplicationContext applicationContext;
 
-    private TaskConsumer consumer;
-    private Thread consumerThread;
-    private BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(100);
+    private final int numberOfThreads;
+    private final int queueSize;
+    
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    
+    /*
+     * Pending tasks per project ID. The order of the projects is used to take turns between the
+     * projects. All access must be synchronized on this scheduler.
+     */
+    private final Map<Long, Deque<Task>> pendingTasks = new LinkedHashMap<>();
+    
+    /*
+     * Task currently being processed per project ID. All access must be synchronized on this
+     * scheduler.
+     */
+    private final Map<Long, Task> activeTasks = new HashMap<>();
+    
+    private int pendingTaskCount = 0;
+    private long completedTaskCount = 0;
+    private long totalWaitTime = 0;
+    private long totalRunTime = 0;
+
+    public IndexSchedulerImpl()
+    {
+        this(new SearchServicePropertiesImpl());
+    }
+
+    public IndexSchedulerImpl(SearchServiceProperties aProperties)
+    {
+        numberOfThreads = Math.max(1, aProperties.getIndexingThreads());
+        queueSize = Math.max(1, aProperties.getIndexingQueueSize());
+    }
 
     @Override
     public void afterPropertiesSet()
     {
-        consumer = new TaskConsumer(applicationContext, queue);
-        consumerThread = new Thread(consumer, "Index task consumer");
-        consumerThread.setPriority(Thread.MIN_PRIORITY);
-        consumerThread.start();
-        log.info("Started Search Indexing Thread");
+        for (int i = 0; i < numberOfThreads; i++) {
+            TaskConsumer consumer = new TaskConsumer(applicationContext, this);
+            Thread consumerThread = new Thread(consumer, "Index task consumer " + (i + 1));
+            consumerThread.setPriority(Thread.MIN_PRIORITY);
+            consumerThread.start();
+            consumerThreads.add(consumerThread);
+        }
+        log.info("Started [{}] search indexing threads", numberOfThreads);
     }
 
     @Override
     public void destroy()
     {
-        consumerThread.interrupt();
+        consumerThreads.forEach(Thread::interrupt);
     }
 
     @Override
@@ -111,10 +162,54 @@ public class IndexSchedulerImpl
      *  - Indexing of a source document
      *  - Indexing of an annotation document for a given user
      *  
+     * If the queue is full, the calling thread waits until there is room in the queue again. The
+     * consumer threads themselves never wait since this could lead to a deadlock.
+     *  
      * @param aRunnable
      *          The indexing task
      */
     public synchronized void enqueue(Task aRunnable)
+    {
+        while (true) {
+            if (coalesce(aRunnable)) {
+                return;
+            }
+            
+            if (pendingTaskCount < queueSize || isConsumerThread()) {
+                break;
+            }
+            
+            log.debug("Indexing queue is full - waiting to enqueue: {}", aRunnable);
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                // We do not drop the task, we simply go over the limit
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        // A re-indexing task supersedes all pending document indexing tasks for the project
+        if (aRunnable instanceof ReindexTask) {
+            removePendingTasks(task -> Objects.equals(task.getProject().getId(),
+                    aRunnable.getProject().getId()));
+        }
+        
+        pendingTasks.computeIfAbsent(aRunnable.getProject().getId(), id -> new ArrayDeque<>())
+                .add(aRunnable);
+        pendingTaskCount++;
+        notifyAll();
+        
+        log.debug("Enqueued new indexing task: {}", aRunnable);
+    }
+    
+    /**
+     * Tries to merge the given task into an already pending task.
+     * 
+     * @return whether the task has been merged and does not need to be added to the queue.
+     */
+    private boolean coalesce(Task aRunnable)
     {
         Optional<Task> alreadyScheduledTask = findAlreadyScheduled(aRunnable);
         
@@ -123,22 +218,25 @@ public class IndexSchedulerImpl
             if (alreadyScheduledTask.isPresent()) {
                 log.debug("Matching project indexing task already scheduled: [{}] - skipping ...",
                         aRunnable);
+                return true;
             }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new project indexing task: {}", aRunnable);
-            }
+            
+            return false;
+        }
+        
+        // A pending re-indexing task will pick up the latest state of all documents in the project
+        if (findAlreadyScheduled(new ReindexTask(aRunnable.getProject())).isPresent()) {
+            log.debug("Project indexing task already scheduled: [{}] - skipping ...", aRunnable);
+            return true;
         }
+        
         // Source document indexing task
-        else if (aRunnable instanceof IndexSourceDocumentTask) {
+        if (aRunnable instanceof IndexSourceDocumentTask) {
             if (alreadyScheduledTask.isPresent()) {
                 log.debug(
                         "Matching source document indexing task already scheduled: [{}] - skipping ...",
                         aRunnable);
-            }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new source document indexing task: {}", aRunnable);
+                return true;
             }
         }
         // Annotation document indexing task
@@ -152,36 +250,129 @@ public class IndexSchedulerImpl
                 log.debug(
                         "Matching source document indexing task already scheduled: [{}] - updating CAS",
                         aRunnable);
+                return true;
             }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new annotation document indexing task: {}", aRunnable);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Waits for the next task which can be processed, i.e. the next task of a project for which
+     * currently no other task is being processed.
+     */
+    synchronized Task takeTask() throws InterruptedException
+    {
+        while (true) {
+            Iterator<Entry<Long, Deque<Task>>> i = pendingTasks.entrySet().iterator();
+            while (i.hasNext()) {
+                Entry<Long, Deque<Task>> e = i.next();
+                if (activeTasks.containsKey(e.getKey())) {
+                    continue;
+                }
+                
+                Task task = e.getValue().poll();
+                
+                // Move the project to the end of the line to give other projects a turn
+                i.remove();
+                if (!e.getValue().isEmpty()) {
+                    pendingTasks.put(e.getKey(), e.getValue());
+                }
+                
+                activeTasks.put(e.getKey(), task);
+                pendingTaskCount--;
+                // Wake up threads waiting for room in the queue
+                notifyAll();
+                return task;
             }
+            
+            wait();
         }
     }
+    
+    synchronized void taskCompleted(Task aTask, long aStartTime)
+    {
+        activeTasks.remove(aTask.getProject().getId());
+        
+        completedTaskCount++;
+        totalWaitTime += aStartTime - aTask.getCreateTime();
+        totalRunTime += System.currentTimeMillis() - aStartTime;
+        
+        // Wake up consumers waiting for the next task of the project
+        notifyAll();
+    }
 
     public synchronized void stopAllTasksForUser(String username)
     {
-        Iterator<Task> taskIterator = queue.iterator();
-        while (taskIterator.hasNext()) {
-            Task task = taskIterator.next();
-            if (task.getUser().equals(username)) {
-                queue.remove(task);
+        removePendingTasks(task -> username.equals(task.getUser()));
+    }
+    
+    private void removePendingTasks(Predicate<Task> aFilter)
+    {
+        Iterator<Deque<Task>> i = pendingTasks.values().iterator();
+        while (i.hasNext()) {
+            Deque<Task> tasks = i.next();
+            int sizeBefore = tasks.size();
+            tasks.removeIf(aFilter);
+            pendingTaskCount -= sizeBefore - tasks.size();
+            if (tasks.isEmpty()) {
+                i.remove();
             }
         }
+        notifyAll();
     }
 
     @Override
-    public boolean isIndexInProgress(Project aProject)
+    public synchronized boolean isIndexInProgress(Project aProject)
     {
         Validate.notNull(aProject, "Project cannot be null");
         
-        return queue.stream().anyMatch(task -> aProject.equals(task.getProject())) ||
-                consumer.getActiveTask().map(t -> aProject.equals(t.getProject())).orElse(false);
+        return pendingTasks.containsKey(aProject.getId())
+                || activeTasks.containsKey(aProject.getId());
+    }
+    
+    @ManagedAttribute
+    public synchronized int getQueueSize()
+    {
+        return pendingTaskCount;
+    }
+    
+    @ManagedAttribute
+    public synchronized int getActiveTaskCount()
+    {
+        return activeTasks.size();
+    }
+    
+    @ManagedAttribute
+    public synchronized long getCompletedTaskCount()
+    {
+        return completedTaskCount;
+    }
+    
+    @ManagedAttribute
+    public synchronized long getAverageWaitTime()
+    {
+        return completedTaskCount > 0 ? totalWaitTime / completedTaskCount : 0;
+    }
+    
+    @ManagedAttribute
+    public synchronized long getAverageRunTime()
+    {
+        return completedTaskCount > 0 ? totalRunTime / completedTaskCount : 0;
+    }
+    
+    private boolean isConsumerThread()
+    {
+        return consumerThreads.contains(Thread.currentThread());
     }
     
     private Optional<Task> findAlreadyScheduled(Task aTask)
     {
-        return queue.stream().filter(aTask::matches).findAny();
+        Deque<Task> tasks = pendingTasks.get(aTask.getProject().getId());
+        if (tasks == null) {
+            return Optional.empty();
+        }
+        
+        return tasks.stream().filter(aTask::matches).findAny();
     }
 }
@@ -20,7 +20,6 @@ package de.tudarmstadt.ukp.inception.search.scheduling;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +34,15 @@ public class TaskConsumer
     private Logger log = LoggerFactory.getLogger(getClass());
 
     private ApplicationContext applicationContext;
-    private BlockingQueue<Task> queue;
-    private Task activeTask;
+    private IndexSchedulerImpl scheduler;
+    private volatile Task activeTask;
 
-    public TaskConsumer(ApplicationContext aApplicationContext, BlockingQueue<Task> aQueue)
+    public TaskConsumer(ApplicationContext aApplicationContext, IndexSchedulerImpl aScheduler)
     {
-        notNull(aQueue);
+        notNull(aScheduler);
         notNull(aApplicationContext);
 
-        queue = aQueue;
+        scheduler = aScheduler;
         applicationContext = aApplicationContext;
     }
 
@@ -54,7 +53,8 @@ public class TaskConsumer
             while (!Thread.interrupted()) {
                 log.debug("Waiting for new indexing task...");
 
-                activeTask = queue.take();
+                activeTask = scheduler.takeTask();
+                long startTime = System.currentTimeMillis();
 
                 try {
                     AutowireCapableBeanFactory factory = applicationContext
@@ -64,7 +64,9 @@ public class TaskConsumer
 
                     log.debug("Indexing task started: {}", activeTask);
                     activeTask.run();
-                    log.debug("Indexing task completed: {}", activeTask);
+                    log.debug("Indexing task completed in {} ms after waiting {} ms: {}",
+                            System.currentTimeMillis() - startTime,
+                            startTime - activeTask.getCreateTime(), activeTask);
                 }
                 // Catching Throwable is intentional here as we want to continue the execution even
                 // if a particular recommender fails.
@@ -72,6 +74,7 @@ public class TaskConsumer
                     log.error("Indexing task failed: {}", activeTask, e);
                 }
                 finally {
+                    scheduler.taskCompleted(activeTask, startTime);
                     activeTask = null;
                 }
             }
@@ -17,6 +17,8 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import java.util.Objects;
+
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -51,7 +53,8 @@ public class IndexAnnotationDocumentTask
             return false;
         }
         
-        return getAnnotationDocument().getId() == aTask.getAnnotationDocument().getId();
+        return Objects.equals(getAnnotationDocument().getId(),
+                aTask.getAnnotationDocument().getId());
     }
 
 }
@@ -17,6 +17,8 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import java.util.Objects;
+
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -57,6 +59,6 @@ public class IndexSourceDocumentTask
             return false;
         }
         
-        return getSourceDocument().getId() == aTask.getSourceDocument().getId();
+        return Objects.equals(getSourceDocument().getId(), aTask.getSourceDocument().getId());
     }
 }
@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
 import java.io.IOException;
+import java.util.Objects;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +61,6 @@ public class ReindexTask
             return false;
         }
         
-        return getProject().getId() == aTask.getProject().getId();
+        return Objects.equals(getProject().getId(), aTask.getProject().getId());
     }
 }
@@ -33,6 +33,7 @@ public abstract class Task
     private final String user;
     private final SourceDocument sourceDocument;
     private final AnnotationDocument annotationDocument;
+    private final long createTime;
     
     private byte[] binaryCas;
 
@@ -46,6 +47,7 @@ public abstract class Task
         sourceDocument = null;
         annotationDocument = null;
         binaryCas = null;
+        createTime = System.currentTimeMillis();
     }
 
     public Task(SourceDocument aSourceDocument, byte[] aBinaryCas)
@@ -57,6 +59,7 @@ public abstract class Task
         sourceDocument = aSourceDocument;
         annotationDocument = null;
         binaryCas = aBinaryCas;
+        createTime = System.currentTimeMillis();
     }
 
     public Task(AnnotationDocument aAnnotationDocument, byte[] aBinaryCas)
@@ -69,6 +72,7 @@ public abstract class Task
         sourceDocument = null;
         annotationDocument = aAnnotationDocument;
         binaryCas = aBinaryCas;
+        createTime = System.currentTimeMillis();
     }
 
     public String getUser()
@@ -91,6 +95,14 @@ public abstract class Task
         return annotationDocument;
     }
 
+    /**
+     * @return time at which the task was created, i.e. the time at which it was scheduled.
+     */
+    public long getCreateTime()
+    {
+        return createTime;
+    }
+
     public byte[] getBinaryCas()
     {
         return binaryCas;
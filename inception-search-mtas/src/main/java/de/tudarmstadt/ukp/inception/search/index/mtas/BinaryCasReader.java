@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.bytesToChars;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader used to pass a binary CAS through Lucene to the {@link MtasUimaParser}. The parser
+ * accesses the bytes directly via {@link #getBinaryCas()} instead of reading them as characters.
+ * Only if the reader is actually consumed as a character stream, the bytes are encoded using
+ * {@link MtasUtils#bytesToChars(byte[])}.
+ */
+public class BinaryCasReader
+    extends Reader
+{
+    private final byte[] binaryCas;
+    
+    private Reader charReader;
+
+    public BinaryCasReader(byte[] aBinaryCas)
+    {
+        binaryCas = aBinaryCas;
+    }
+
+    public byte[] getBinaryCas()
+    {
+        return binaryCas;
+    }
+
+    @Override
+    public int read(char[] aBuffer, int aOffset, int aLength) throws IOException
+    {
+        if (charReader == null) {
+            charReader = new CharArrayReader(bytesToChars(binaryCas));
+        }
+        
+        return charReader.read(aBuffer, aOffset, aLength);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (charReader != null) {
+            charReader.close();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDE
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IGNORE;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_PROJECT_ID;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_REBUILD;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.getIndexedName;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -42,7 +43,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
@@ -61,25 +62,37 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,7 +106,6 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
-import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
@@ -101,6 +113,8 @@ import de.tudarmstadt.ukp.inception.search.PrimitiveUimaIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRebuild;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexProperties;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import mtas.analysis.token.MtasTokenString;
@@ -161,6 +175,19 @@ public class MtasDocumentIndex
     private static final int RESULT_WINDOW_SIZE = 3;
 
     private static final String EMPTY_FEATURE_VALUE_KEY = "<Empty>";
+    
+    private static final String REBUILD_SUFFIX = "-rebuild";
+    
+    /**
+     * Number of documents passed to the index writer at once during a rebuild.
+     */
+    private static final int REBUILD_BATCH_SIZE = 16;
+    
+    /**
+     * RAM buffer used during a rebuild. This is larger than the default since a rebuild adds a
+     * lot of documents in one go and does not need to make them visible until it is complete.
+     */
+    private static final double REBUILD_RAM_BUFFER_SIZE_MB = 64.0;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -171,18 +198,26 @@ public class MtasDocumentIndex
     private final Project project;
     private final File repositoryDir;
     private final ScheduledExecutorService schedulerService;
+    private final MtasDocumentIndexProperties properties;
     
     // The index writers for this index
     private IndexWriter _indexWriter;
-    private ReferenceManager<IndexSearcher> _searcherManager;
+    private volatile ReferenceManager<IndexSearcher> _searcherManager;
     private ScheduledFuture<?> _commitFuture;
+    // Guards commits and searcher refreshes against exposing the intermediate state while the
+    // index is being replaced
+    private final Object commitLock = new Object();
 
     private List<AnnotationFeature> features;
+    // The rebuild in progress - if any. It brings its own features which only become the features
+    // of the live index once the rebuild has been committed.
+    private volatile MtasDocumentIndexRebuild currentRebuild;
 
     public MtasDocumentIndex(Project aProject, DocumentService aDocumentService,
             AnnotationSchemaService aSchemaService, String aDir,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
-            FeatureSupportRegistry aFeatureSupportRegistry)
+            FeatureSupportRegistry aFeatureSupportRegistry,
+            MtasDocumentIndexProperties aProperties)
     {
         schemaService = aSchemaService;
         documentService = aDocumentService;
@@ -190,6 +225,7 @@ public class MtasDocumentIndex
         featureIndexingSupportRegistry = aFeatureIndexingSupportRegistry;
         featureSupportRegistry = aFeatureSupportRegistry;
         repositoryDir = new File(aDir);
+        properties = aProperties;
         
         schedulerService = new ScheduledThreadPoolExecutor(0);
     }
@@ -202,37 +238,12 @@ public class MtasDocumentIndex
             OPEN_INDEXES.put(project.getId(), this);
             
             // Initialize and populate the hash maps for the layers and features
-            features = schemaService.listAnnotationFeature(project).stream()
-                    .filter(feat -> feat.getLayer().isEnabled())
-                    .filter(feat -> feat.isEnabled())
-                    .collect(Collectors.toList());
-            
-            // Add the project id to the configuration
-            JSONObject jsonParserConfiguration = new JSONObject();
-            jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
-            
-            // Tokenizer parameters
-            Map<String, String> tokenizerArguments = new HashMap<>();
-            tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
-            tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
-            
-            // Build analyzer
-            Analyzer mtasAnalyzer = CustomAnalyzer.builder()
-                    .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments)
-                    .build();
-            
-            Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
-            analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
-            
-            PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
-                    analyzerPerField);
+            features = listFeaturesToIndex();
             
             // Build IndexWriter
             FileUtils.forceMkdir(getIndexDir());
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-            config.setCodec(Codec.forName(MTAS_CODEC_NAME));
             IndexWriter indexWriter = new IndexWriter(FSDirectory.open(getIndexDir().toPath()),
-                    config);
+                    createIndexWriterConfig(false));
             
             // Initialize the index
             indexWriter.commit();
@@ -245,6 +256,49 @@ public class MtasDocumentIndex
         return _indexWriter;
     }
     
+    private List<AnnotationFeature> listFeaturesToIndex()
+    {
+        return schemaService.listAnnotationFeature(project).stream()
+                .filter(feat -> feat.getLayer().isEnabled())
+                .filter(feat -> feat.isEnabled())
+                .filter(feat -> isLayerIndexed(feat.getLayer()))
+                .collect(Collectors.toList());
+    }
+    
+    private IndexWriterConfig createIndexWriterConfig(boolean aRebuild) throws IOException
+    {
+        // Add the project id to the configuration
+        JSONObject jsonParserConfiguration = new JSONObject();
+        jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
+        jsonParserConfiguration.put(PARAM_REBUILD, aRebuild);
+        
+        // Tokenizer parameters
+        Map<String, String> tokenizerArguments = new HashMap<>();
+        tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
+        tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
+        
+        // Build analyzer
+        Analyzer mtasAnalyzer = CustomAnalyzer.builder()
+                .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments)
+                .build();
+        
+        Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
+        analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
+        
+        PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
+                analyzerPerField);
+        
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setCodec(Codec.forName(MTAS_CODEC_NAME));
+        return config;
+    }
+    
+    private boolean isLayerIndexed(AnnotationLayer aLayer)
+    {
+        List<String> indexedLayers = properties.getIndexedLayers();
+        return indexedLayers.isEmpty() || indexedLayers.contains(aLayer.getName());
+    }
+    
     private void ensureAllIsCommitted()
     {
         if (_commitFuture != null && !_commitFuture.isDone()) {
@@ -263,7 +317,9 @@ public class MtasDocumentIndex
         
         if (_indexWriter != null) {
             try {
-                _indexWriter.commit();
+                synchronized (commitLock) {
+                    _indexWriter.commit();
+                }
             }
             catch (IOException e) {
                 log.error("Error committing changes to index for project [{}]({})",
@@ -308,12 +364,33 @@ public class MtasDocumentIndex
     private ReferenceManager<IndexSearcher> getSearcherManager() throws IOException
     {
         if (_searcherManager == null) {
-            _searcherManager = new SearcherManager(getIndexWriter(), true, true,
-                    new SearcherFactory());
+            IndexWriter indexWriter = getIndexWriter();
+            // Creating the searcher manager opens a reader on the index writer, so this must not
+            // happen while the contents of the index are being replaced
+            synchronized (commitLock) {
+                if (_searcherManager == null) {
+                    _searcherManager = new SearcherManager(indexWriter, true, true,
+                            new SearcherFactory());
+                }
+            }
         }
 
         return _searcherManager;
     }
+    
+    /**
+     * Makes changes to the index visible to queries. Refreshing opens a new reader on the index
+     * writer, so this must not happen while the contents of the index are being replaced.
+     * Otherwise, queries could see an empty or partially replaced index.
+     */
+    private void refreshSearcherManager() throws IOException
+    {
+        synchronized (commitLock) {
+            if (_searcherManager != null) {
+                _searcherManager.maybeRefresh();
+            }
+        }
+    }
         
     private synchronized void scheduleCommit()
     {
@@ -330,22 +407,24 @@ public class MtasDocumentIndex
                 project.getId());
           
         _commitFuture = schedulerService.schedule(() -> {
-            try {
-                log.debug("Executing future to index for project [{}]({})", project.getName(),
-                        project.getId());
-                if (_indexWriter != null && _indexWriter.isOpen()) {
-                    _indexWriter.commit();
-                    log.debug("Committed changes to index for project [{}]({})", project.getName(),
-                            project.getId());
-                    
-                    if (_searcherManager != null) {
-                        _searcherManager.maybeRefresh();
+            // Synchronizing here ensures that we do not commit and expose the intermediate state
+            // while the contents of the index are replaced at the end of a rebuild
+            synchronized (commitLock) {
+                try {
+                    log.debug("Executing future to index for project [{}]({})",
+                            project.getName(), project.getId());
+                    if (_indexWriter != null && _indexWriter.isOpen()) {
+                        _indexWriter.commit();
+                        log.debug("Committed changes to index for project [{}]({})",
+                                project.getName(), project.getId());
+                        
+                        refreshSearcherManager();
                     }
                 }
-            }
-            catch (IOException e) {
-                log.error("Unable to commit to index of project [{}]({})", project.getName(),
-                        project.getId());
+                catch (IOException e) {
+                    log.error("Unable to commit to index of project [{}]({})",
+                            project.getName(), project.getId());
+                }
             }
         }, 3, SECONDS);
     }
@@ -460,8 +539,10 @@ public class MtasDocumentIndex
         ListIterator<LeafReaderContext> leafReaderContextIterator = searcher.getIndexReader()
                 .leaves().listIterator();
 
-        Map<Long, Long> annotatableDocuments = listAnnotatableDocuments(aRequest.getProject(),
-            aRequest.getUser());
+        Weight filterWeight = searcher.createNormalizedWeight(
+                buildScopeFilter(aRequest, documentService
+                        .listAnnotatableDocuments(aRequest.getProject(), aRequest.getUser())),
+                false);
 
         final float boost = 0;
         SpanWeight spanweight = q.rewrite(searcher.getIndexReader()).createWeight(searcher, false,
@@ -473,68 +554,21 @@ public class MtasDocumentIndex
             LeafReaderContext leafReaderContext = leafReaderContextIterator.next();
             try {
                 Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
-                SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
-                if (spans != null) {
-                    while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
-                        if (segmentReader.numDocs() == segmentReader.maxDoc()
-                                || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                            String rawAnnotationDocumentId = document
-                                    .get(FIELD_ANNOTATION_DOCUMENT_ID);
-                            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
-                                log.trace("Indexed document lacks source/annotation document IDs"
-                                        + " - source: {}, annotation: {}", rawSourceDocumentId,
-                                    rawAnnotationDocumentId);
-                                continue;
-
-                            }
-                            long sourceDocumentId = Long.valueOf(rawSourceDocumentId);
-                            long annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
-
-                            // If the query is limited to a given document, skip any results
-                            // which are not in the given document
-                            Optional<SourceDocument> limitedToDocument = aRequest
-                                    .getLimitedToDocument();
-                            if (limitedToDocument.isPresent() && !Objects
-                                .equals(limitedToDocument.get().getId(), sourceDocumentId)) {
-                                log.trace("Query limited to document {}, skipping results for "
-                                        + "document {}", limitedToDocument.get().getId(),
-                                    sourceDocumentId);
-                                continue;
-                            }
-
-                            if (annotatableDocuments.containsKey(sourceDocumentId)
-                                && annotationDocumentId == -1) {
-                                // Exclude result if the retrieved document is a sourcedocument
-                                // (that is, has annotationDocument = -1) AND it has a
-                                // corresponding annotation document for this user
-                                log.trace("Skipping results from indexed source document {} in" 
-                                    + "favor of results from the corresponding annotation "
-                                    + "document", sourceDocumentId);
-                                continue;
-                            }
-                            else if (annotationDocumentId != -1 && !aRequest.getUser().getUsername()
-                                .equals(user)) {
-                                // Exclude result if the retrieved document is an annotation
-                                // document (that is, annotationDocument != -1 and its username
-                                // is different from the quering user
-                                log.trace("Skipping results from annotation document for user {} "
-                                        + "which does not match the requested user {}", user,
-                                    aRequest.getUser().getUsername());
-                                continue;
-                            }
-
-                            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
-                                numResults++;
-                            }
+                Scorer filterScorer = filterWeight.scorer(leafReaderContext);
+                if (spans == null || filterScorer == null) {
+                    continue;
+                }
+                
+                DocIdSetIterator filter = filterScorer.iterator();
+                Bits liveDocs = leafReaderContext.reader().getLiveDocs();
+                int doc = nextMatchingDoc(spans, filter, 0);
+                while (doc != Spans.NO_MORE_DOCS) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                            numResults++;
                         }
                     }
+                    doc = nextMatchingDoc(spans, filter, doc + 1);
                 }
             }
             catch (Exception e) {
@@ -545,14 +579,94 @@ public class MtasDocumentIndex
         return numResults;
     }
 
-    private Map<Long, Long> listAnnotatableDocuments(Project aProject, User aUser)
+    /**
+     * Builds a filter which restricts the query to the indexed documents visible to the user
+     * issuing the query. This allows Lucene to skip over irrelevant documents instead of us having
+     * to load and check the stored fields of every matching document.
+     * <ul>
+     * <li>only documents which the user can annotate are considered</li>
+     * <li>if the query is limited to a given document, only that document is considered</li>
+     * <li>results from annotation documents are only considered if they belong to the user</li>
+     * <li>results from indexed source documents are only considered if the user does not have a
+     * corresponding annotation document</li>
+     * </ul>
+     */
+    private Query buildScopeFilter(SearchQueryRequest aRequest,
+            Map<SourceDocument, AnnotationDocument> aAnnotatableDocuments)
+    {
+        List<BytesRef> annotatableDocumentIds = new ArrayList<>();
+        List<BytesRef> documentIdsWithAnnotationDocument = new ArrayList<>();
+        for (Entry<SourceDocument, AnnotationDocument> e : aAnnotatableDocuments.entrySet()) {
+            BytesRef id = new BytesRef(String.valueOf(e.getKey().getId()));
+            annotatableDocumentIds.add(id);
+            if (e.getValue() != null) {
+                documentIdsWithAnnotationDocument.add(id);
+            }
+        }
+        
+        Query sourceDocumentVersion = new TermQuery(new Term(FIELD_ANNOTATION_DOCUMENT_ID,
+                String.valueOf(-1)));
+        
+        BooleanQuery.Builder filter = new BooleanQuery.Builder();
+        
+        filter.add(new TermInSetQuery(FIELD_SOURCE_DOCUMENT_ID, annotatableDocumentIds),
+                BooleanClause.Occur.FILTER);
+        
+        aRequest.getLimitedToDocument().ifPresent(doc -> filter.add(
+                new TermQuery(new Term(FIELD_SOURCE_DOCUMENT_ID, String.valueOf(doc.getId()))),
+                BooleanClause.Occur.FILTER));
+        
+        filter.add(new BooleanQuery.Builder()
+                .add(sourceDocumentVersion, BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term(FIELD_USER, aRequest.getUser().getUsername())),
+                        BooleanClause.Occur.SHOULD)
+                .build(), BooleanClause.Occur.FILTER);
+        
+        if (!documentIdsWithAnnotationDocument.isEmpty()) {
+            filter.add(new BooleanQuery.Builder()
+                    .add(sourceDocumentVersion, BooleanClause.Occur.FILTER)
+                    .add(new TermInSetQuery(FIELD_SOURCE_DOCUMENT_ID,
+                            documentIdsWithAnnotationDocument), BooleanClause.Occur.FILTER)
+                    .build(), BooleanClause.Occur.MUST_NOT);
+        }
+        
+        return filter.build();
+    }
+    
+    /**
+     * Advances the spans to the first document at or after the given target which is also
+     * accepted by the filter.
+     */
+    private static int nextMatchingDoc(Spans aSpans, DocIdSetIterator aFilter, int aTarget)
+        throws IOException
+    {
+        int doc = aSpans.advance(aTarget);
+        while (doc != Spans.NO_MORE_DOCS) {
+            int filterDoc = aFilter.docID() < doc ? aFilter.advance(doc) : aFilter.docID();
+            if (filterDoc == doc || filterDoc == DocIdSetIterator.NO_MORE_DOCS) {
+                return filterDoc;
+            }
+            doc = aSpans.advance(filterDoc);
+        }
+        return doc;
+    }
+    
+    /**
+     * Obtains a numeric ID from the doc-values of the given field. For documents which were
+     * indexed before the IDs were stored as doc-values, the stored field is used instead. The
+     * doc-values may be {@code null} if the segment was written entirely before the IDs were
+     * stored as doc-values.
+     */
+    /* package private */ static long getId(NumericDocValues aDocValues, LeafReader aReader,
+            int aDoc, String aField)
+        throws IOException
     {
-        Map<Long, Long> annotateableDocuments =  new HashMap<>();
-        documentService.listAnnotatableDocuments(aProject, aUser).entrySet()
-            .stream()
-            .filter(e -> e.getValue() != null) // only include entries where the annodoc is not null
-            .forEach(e -> annotateableDocuments.put(e.getKey().getId(), e.getValue().getId()));
-        return annotateableDocuments;
+        if (aDocValues != null && aDocValues.advanceExact(aDoc)) {
+            return aDocValues.longValue();
+        }
+        
+        String rawId = aReader.document(aDoc).get(aField);
+        return rawId != null ? Long.valueOf(rawId) : -1;
     }
     
     private Map<String, List<SearchResult>> doQuery(IndexSearcher searcher,
@@ -561,8 +675,7 @@ public class MtasDocumentIndex
     {
         Map<String, List<SearchResult>> results = new LinkedHashMap<>();
 
-        ListIterator<LeafReaderContext> leafReaderContextIterator = searcher.getIndexReader()
-                .leaves().listIterator();
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
 
         Map<SourceDocument, AnnotationDocument> sourceAnnotationDocPairs = documentService
                 .listAnnotatableDocuments(aRequest.getProject(), aRequest.getUser());
@@ -570,203 +683,190 @@ public class MtasDocumentIndex
         sourceAnnotationDocPairs.entrySet().stream()
                 .forEach(e -> sourceDocumentIndex.put(e.getKey().getId(), e.getKey()));
 
+        Weight filterWeight = searcher.createNormalizedWeight(
+                buildScopeFilter(aRequest, sourceAnnotationDocPairs), false);
+
         final float boost = 0;
         SpanWeight spanweight = q.rewrite(searcher.getIndexReader()).createWeight(searcher, false,
                 boost);
 
         long offset = aRequest.getOffset();
         long count = aRequest.getCount();
-        long current = 0;
-
-        resultIteration: while (leafReaderContextIterator.hasNext()) {
-            LeafReaderContext leafReaderContext = leafReaderContextIterator.next();
+        
+        // If we got a valid search-after token, we can jump directly to the position after the
+        // last result of the previous page instead of skipping over all the results before it
+        long readerVersion = getReaderVersion(searcher);
+        ResultCursor resumeAfter = aRequest.getSearchAfter()
+                .flatMap(ResultCursor::parse)
+                .filter(cursor -> cursor.readerVersion == readerVersion
+                        && cursor.nextOffset == offset)
+                .orElse(null);
+        long current = resumeAfter != null ? offset : 0;
+        int firstLeaf = resumeAfter != null ? resumeAfter.leaf : 0;
+
+        resultIteration: for (int leaf = firstLeaf; leaf < leaves.size(); leaf++) {
+            LeafReaderContext leafReaderContext = leaves.get(leaf);
             try {
                 Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
-                SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
-                Terms terms = segmentReader.terms(FIELD_CONTENT);
+                Scorer filterScorer = filterWeight.scorer(leafReaderContext);
+                if (spans == null || filterScorer == null) {
+                    continue;
+                }
+                
+                LeafReader leafReader = leafReaderContext.reader();
+                Terms terms = leafReader.terms(FIELD_CONTENT);
                 CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
-                if (spans != null) {
-                    while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
-                        if (segmentReader.numDocs() == segmentReader.maxDoc()
-                                || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                            String rawAnnotationDocumentId = document
-                                    .get(FIELD_ANNOTATION_DOCUMENT_ID);
-                            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
-                                log.trace("Indexed document lacks source/annotation document IDs"
-                                        + " - source: {}, annotation: {}", rawSourceDocumentId,
-                                    rawAnnotationDocumentId);
-                                continue;
-
-                            }
-                            
-                            long sourceDocumentId = Long.valueOf(rawSourceDocumentId);
-                            long annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
-                            boolean matchInSourceDocument = annotationDocumentId == -1;
-                            
-                            SourceDocument sourceDocument = sourceDocumentIndex
-                                    .get(sourceDocumentId);
-                            
-                            if (sourceDocument == null) {
-                                // Document is not annotatable by this user, so we skip this result
-                                continue;
-                            }
-                            
-                            AnnotationDocument annotationDocument = sourceAnnotationDocPairs
-                                    .get(sourceDocument);
-                            
-                            if (annotationDocument != null
-                                    && IGNORE != annotationDocument.getState()) {
-                                // Skip if the document is ignored for this user
-                                log.trace("Skipping results from ignored document {}",
-                                        sourceDocumentId);
-                            }
-                            
-                            // If the query is limited to a given document, skip any results
-                            // which are not in the given document
-                            Optional<SourceDocument> limitedToDocument = aRequest
-                                    .getLimitedToDocument();
-                            if (limitedToDocument.isPresent() && !Objects
-                                .equals(limitedToDocument.get().getId(), sourceDocumentId)) {
-                                log.trace("Query limited to document {}, skipping results for "
-                                        + "document {}", limitedToDocument.get().getId(),
-                                    sourceDocumentId);
-                                continue;
-                            }
-
-                            if (matchInSourceDocument && annotationDocument != null) {
-                                // Exclude result if the retrieved document is a sourcedocument
-                                // AND it has a corresponding annotation document for this user
-                                // AND the document is not ignored for this user
-                                log.trace("Skipping results from indexed source document {} in"
-                                        + "favor of results from the corresponding annotation "
-                                        + "document", sourceDocumentId);
-                                continue;
-                            }
-                            else if (annotationDocumentId != -1 && !aRequest.getUser().getUsername()
-                                .equals(user)) {
-                                // Exclude result if the retrieved document is an annotation
-                                // document (that is, annotationDocument != -1 and its username
-                                // is different from the quering user
-                                log.trace("Skipping results from annotation document for user {} "
-                                        + "which does not match the requested user {}", user,
-                                    aRequest.getUser().getUsername());
-                                continue;
-                            }
+                DocIdSetIterator filter = filterScorer.iterator();
+                Bits liveDocs = leafReader.getLiveDocs();
+                // Segments written before the IDs were stored as doc-values do not have them -
+                // in this case we get null here and fall back to the stored fields
+                NumericDocValues sourceDocumentIds = leafReader
+                        .getNumericDocValues(FIELD_SOURCE_DOCUMENT_ID);
+                
+                int firstDoc = resumeAfter != null && resumeAfter.leaf == leaf ? resumeAfter.doc
+                        : 0;
+                for (int doc = nextMatchingDoc(spans, filter, firstDoc);
+                        doc != Spans.NO_MORE_DOCS;
+                        doc = nextMatchingDoc(spans, filter, doc + 1)) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    
+                    long sourceDocumentId = getId(sourceDocumentIds, leafReader, doc,
+                            FIELD_SOURCE_DOCUMENT_ID);
+                    
+                    SourceDocument sourceDocument = sourceDocumentIndex.get(sourceDocumentId);
+                    
+                    if (sourceDocument == null) {
+                        // Document is not annotatable by this user, so we skip this result
+                        continue;
+                    }
+                    
+                    AnnotationDocument annotationDocument = sourceAnnotationDocPairs
+                            .get(sourceDocument);
+                    
+                    if (annotationDocument != null && IGNORE != annotationDocument.getState()) {
+                        // Skip if the document is ignored for this user
+                        log.trace("Skipping results from ignored document {}", sourceDocumentId);
+                    }
+                    
+                    // The document title is only loaded from the stored fields once we actually
+                    // produce a result from the document
+                    String documentTitle = null;
+
+                    while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                        int matchStart = spans.startPosition();
+                        int matchEnd = spans.endPosition();
+                        
+                        if (resumeAfter != null
+                                && resumeAfter.hasPassed(leaf, doc, matchStart, matchEnd)) {
+                            continue;
+                        }
+                        if (current < offset) {
+                            current++;
+                            continue;
+                        }
+                        if (current - offset + 1 > count) {
+                            break resultIteration;
+                        }
+                        current++;
 
-                            // Retrieve document title
-                            String documentTitle = document.get(FIELD_TITLE);
+                        if (documentTitle == null) {
+                            documentTitle = leafReader.document(doc).get(FIELD_TITLE);
+                        }
 
-                            // String idValue = segmentReader.document(spans.docID())
-                            // .getField(FIELD_ID).stringValue();
-                            // log.debug("******** New doc {}-{}", + spans.docID(), idValue);
+                        int windowStart = Math.max(matchStart - RESULT_WINDOW_SIZE, 0);
+                        int windowEnd = matchEnd + RESULT_WINDOW_SIZE - 1;
 
-                            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
-                                if (current < offset) {
-                                    current++;
-                                    continue;
-                                }
-                                if (current - offset + 1 > count) {
-                                    break resultIteration;
-                                }
-                                current++;
-                                int matchStart = spans.startPosition();
-                                int matchEnd = spans.endPosition();
+                        // Retrieve all indexed objects within the matching range
+                        List<MtasTokenString> tokens = mtasCodecInfo.getObjectsByPositions(
+                                FIELD_CONTENT, spans.docID(), windowStart, windowEnd);
 
-                                int windowStart = Math.max(matchStart - RESULT_WINDOW_SIZE, 0);
-                                int windowEnd = matchEnd + RESULT_WINDOW_SIZE - 1;
+                        tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
 
-                                // Retrieve all indexed objects within the matching range
-                                List<MtasTokenString> tokens = mtasCodecInfo.getObjectsByPositions(
-                                        FIELD_CONTENT, spans.docID(), windowStart, windowEnd);
+                        if (tokens.isEmpty()) {
+                            continue;
+                        }
 
-                                tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
+                        SearchResult result = new SearchResult();
+                        StringBuilder resultText = new StringBuilder();
+                        StringBuilder leftContext = new StringBuilder();
+                        StringBuilder rightContext = new StringBuilder();
+                        result.setDocumentId(sourceDocumentId);
+                        result.setDocumentTitle(documentTitle);
+                        result.setOffsetStart(tokens.stream()
+                                .filter(t -> t.getPositionStart() >= matchStart
+                                        && t.getPositionEnd() < matchEnd)
+                                .mapToInt(MtasTokenString::getOffsetStart).min()
+                                .getAsInt());
+                        result.setOffsetEnd(tokens.stream()
+                                .filter(t -> t.getPositionStart() >= matchStart
+                                        && t.getPositionEnd() < matchEnd)
+                                .mapToInt(MtasTokenString::getOffsetEnd).max().getAsInt());
+                        result.setTokenStart(matchStart);
+                        result.setTokenLength(matchEnd - matchStart);
+                        result.setReadOnly(annotationDocument != null
+                                && FINISHED.equals(annotationDocument.getState()));
+                        if (current - offset == count) {
+                            // This is the last result of the page - remember where we are so the
+                            // next page can continue from here
+                            result.setSearchAfter(new ResultCursor(readerVersion, current, leaf,
+                                    doc, matchStart, matchEnd).toString());
+                        }
+                        result.setSelectedForAnnotation(!result.isReadOnly());
+                        
+                        MtasTokenString prevToken = null;
+                        for (MtasTokenString token : tokens) {
+                            if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
+                                continue;
+                            }
 
-                                if (tokens.isEmpty()) {
-                                    continue;
-                                }
+                            // When searching for an annotation, we don't get the matching
+                            // text back... not sure why...
+                            String tokenText = CodecUtil.termValue(token.getValue());
+                            if (tokenText == null) {
+                                continue;
+                            }
 
-                                SearchResult result = new SearchResult();
-                                StringBuilder resultText = new StringBuilder();
-                                StringBuilder leftContext = new StringBuilder();
-                                StringBuilder rightContext = new StringBuilder();
-                                result.setDocumentId(sourceDocumentId);
-                                result.setDocumentTitle(documentTitle);
-                                result.setOffsetStart(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart
-                                                && t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetStart).min()
-                                        .getAsInt());
-                                result.setOffsetEnd(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart
-                                                && t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetEnd).max().getAsInt());
-                                result.setTokenStart(matchStart);
-                                result.setTokenLength(matchEnd - matchStart);
-                                result.setReadOnly(annotationDocument != null
-                                        && FINISHED.equals(annotationDocument.getState()));
-                                result.setSelectedForAnnotation(!result.isReadOnly());
-                                
-                                MtasTokenString prevToken = null;
-                                for (MtasTokenString token : tokens) {
-                                    if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
-                                        continue;
-                                    }
-
-                                    // When searching for an annotation, we don't get the matching
-                                    // text back... not sure why...
-                                    String tokenText = CodecUtil.termValue(token.getValue());
-                                    if (tokenText == null) {
-                                        continue;
-                                    }
-
-                                    if (token.getPositionStart() < matchStart) {
-                                        fill(leftContext, prevToken, token);
-                                        leftContext.append(tokenText);
-                                    }
-                                    else if (token.getPositionStart() >= matchEnd) {
-                                        fill(rightContext, prevToken, token);
-                                        rightContext.append(tokenText);
-                                    }
-                                    else {
-                                        // Only add the whitespace to the match if we already have
-                                        // added any text to the match - otherwise consider the 
-                                        // whitespace to be part of the left contex
-                                        if (resultText.length() > 0) {
-                                            fill(resultText, prevToken, token);
-                                        }
-                                        else {
-                                            fill(leftContext, prevToken, token);
-                                        }
-                                        resultText.append(tokenText);
-                                    }
-                                    prevToken = token;
-                                }
-                                result.setText(resultText.toString());
-                                result.setLeftContext(leftContext.toString());
-                                result.setRightContext(rightContext.toString());
-
-                                AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
-                                AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
-
-                                if (groupingLayer != null && groupingFeature != null) {
-                                    List<String> featureValues = featureValuesAtMatch(tokens,
-                                        matchStart, matchEnd, groupingLayer, groupingFeature);
-                                    for (String featureValue : featureValues) {
-                                        addToResults(results, featureValue, result);
-                                    }
+                            if (token.getPositionStart() < matchStart) {
+                                fill(leftContext, prevToken, token);
+                                leftContext.append(tokenText);
+                            }
+                            else if (token.getPositionStart() >= matchEnd) {
+                                fill(rightContext, prevToken, token);
+                                rightContext.append(tokenText);
+                            }
+                            else {
+                                // Only add the whitespace to the match if we already have
+                                // added any text to the match - otherwise consider the 
+                                // whitespace to be part of the left contex
+                                if (resultText.length() > 0) {
+                                    fill(resultText, prevToken, token);
                                 }
                                 else {
-                                    // if no annotation feature is specified group by document title
-                                    addToResults(results, result.getDocumentTitle(), result);
+                                    fill(leftContext, prevToken, token);
                                 }
+                                resultText.append(tokenText);
                             }
+                            prevToken = token;
+                        }
+                        result.setText(resultText.toString());
+                        result.setLeftContext(leftContext.toString());
+                        result.setRightContext(rightContext.toString());
+
+                        AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
+                        AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
+
+                        if (groupingLayer != null && groupingFeature != null) {
+                            List<String> featureValues = featureValuesAtMatch(tokens,
+                                matchStart, matchEnd, groupingLayer, groupingFeature);
+                            for (String featureValue : featureValues) {
+                                addToResults(results, featureValue, result);
+                            }
+                        }
+                        else {
+                            // if no annotation feature is specified group by document title
+                            addToResults(results, result.getDocumentTitle(), result);
                         }
                     }
                 }
@@ -855,6 +955,16 @@ public class MtasDocumentIndex
     private void indexDocument(String aDocumentTitle, long aSourceDocumentId,
             long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
         throws IOException
+    {
+        IndexWriter indexWriter = getIndexWriter();
+        
+        // Add document to the Lucene index
+        indexWriter.addDocument(createDocument(aDocumentTitle, aSourceDocumentId,
+                aAnnotationDocumentId, aUser, aBinaryCas));
+    };
+
+    private Document createDocument(String aDocumentTitle, long aSourceDocumentId,
+            long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
     {
         // Calculate timestamp that will be indexed
         String timestamp = DateTools.dateToString(new Date(), DateTools.Resolution.MILLISECOND);
@@ -865,11 +975,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId,
                 aUser, timestamp);
         
-        IndexWriter indexWriter = getIndexWriter();
-        
-        // Prepare bytearray with document content to be indexed
-        String encodedCAS = new String(MtasUtils.bytesToChars(aBinaryCas));
-
         // Create new Lucene document
         Document doc = new Document();
         
@@ -880,14 +985,18 @@ public class MtasDocumentIndex
                 Field.Store.YES));
         doc.add(new StringField(FIELD_ANNOTATION_DOCUMENT_ID,
                 String.valueOf(aAnnotationDocumentId), Field.Store.YES));
+        // The IDs are also stored as doc-values so they can be obtained cheaply during queries
+        doc.add(new NumericDocValuesField(FIELD_SOURCE_DOCUMENT_ID, aSourceDocumentId));
+        doc.add(new NumericDocValuesField(FIELD_ANNOTATION_DOCUMENT_ID, aAnnotationDocumentId));
         doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
         doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
         doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
-        doc.add(new TextField(FIELD_CONTENT, encodedCAS, Field.Store.NO));
+        // The MtasUimaParser picks up the binary CAS directly from the reader, so there is no
+        // need to encode it as a string
+        doc.add(new TextField(FIELD_CONTENT, new BinaryCasReader(aBinaryCas)));
 
-        // Add document to the Lucene index
-        indexWriter.addDocument(doc);
-    };
+        return doc;
+    }
 
     /**
      * Remove document from the index
@@ -976,6 +1085,48 @@ public class MtasDocumentIndex
         // next access in order to pick up the current layer configuration of the project.
         closeIndex();
     }
+
+    @Override
+    public synchronized PhysicalIndexRebuild startRebuild() throws IOException
+    {
+        // Make sure the index is open - the parser looks the index up when analyzing documents.
+        // The rebuild picks up the current layer configuration of the project, but the live index
+        // keeps its configuration until the rebuild is committed.
+        getIndexWriter();
+        
+        File rebuildDir = getRebuildDir();
+        deleteDirectory(rebuildDir);
+        FileUtils.forceMkdir(rebuildDir);
+        
+        IndexWriterConfig config = createIndexWriterConfig(true);
+        config.setRAMBufferSizeMB(REBUILD_RAM_BUFFER_SIZE_MB);
+        
+        currentRebuild = new MtasDocumentIndexRebuild(rebuildDir,
+                new IndexWriter(FSDirectory.open(rebuildDir.toPath()), config),
+                listFeaturesToIndex());
+        return currentRebuild;
+    }
+    
+    /**
+     * Replaces the contents of the index with the contents of the given directory. The change
+     * becomes visible to queries at once. From then on, the index uses the given features.
+     * Commits and searcher refreshes are blocked while the contents are replaced, so queries
+     * continue to see the old contents until the replacement is complete.
+     */
+    private synchronized void replaceContents(Directory aDirectory,
+            List<AnnotationFeature> aFeatures)
+        throws IOException
+    {
+        IndexWriter indexWriter = getIndexWriter();
+        synchronized (commitLock) {
+            indexWriter.deleteAll();
+            indexWriter.addIndexes(aDirectory);
+            indexWriter.commit();
+            features = aFeatures;
+            
+            refreshSearcherManager();
+        }
+    }
     
     /**
      * Remove annotation document from the index
@@ -1014,6 +1165,11 @@ public class MtasDocumentIndex
         return new File(repositoryDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + INDEX);
     }
 
+    private File getRebuildDir()
+    {
+        return new File(getIndexDir().getPath() + REBUILD_SUFFIX);
+    }
+
     @Override
     public synchronized void delete() throws IOException
     {
@@ -1021,8 +1177,9 @@ public class MtasDocumentIndex
             close();
         }
         
-        // Delete the index directory
+        // Delete the index directory and any left-overs from a failed rebuild
         deleteDirectory(getIndexDir());
+        deleteDirectory(getRebuildDir());
 
         log.debug("Index for project [{}]({}) has been deleted", project.getName(),
                 project.getId());
@@ -1045,7 +1202,7 @@ public class MtasDocumentIndex
 
         // Prepare index searcher for accessing index
         ReferenceManager<IndexSearcher> searchManager = getSearcherManager();
-        searchManager.maybeRefresh();
+        refreshSearcherManager();
         IndexSearcher indexSearcher = searchManager.acquire();
         try {
 
@@ -1088,6 +1245,12 @@ public class MtasDocumentIndex
         return features;
     }
     
+    public List<AnnotationFeature> getRebuildFeaturesToIndex()
+    {
+        MtasDocumentIndexRebuild rebuild = currentRebuild;
+        return rebuild != null ? rebuild.features : features;
+    }
+    
     public static MtasDocumentIndex getIndex(long aProjectId)
     {
         return OPEN_INDEXES.get(aProjectId);
@@ -1100,6 +1263,157 @@ public class MtasDocumentIndex
                 .append("path", getIndexDir()).toString();
     }
     
+    private class MtasDocumentIndexRebuild
+        implements PhysicalIndexRebuild
+    {
+        private final File directory;
+        private final IndexWriter indexWriter;
+        private final List<AnnotationFeature> features;
+        private final List<Document> batch = new ArrayList<>();
+        
+        public MtasDocumentIndexRebuild(File aDirectory, IndexWriter aIndexWriter,
+                List<AnnotationFeature> aFeatures)
+        {
+            directory = aDirectory;
+            indexWriter = aIndexWriter;
+            features = aFeatures;
+        }
+        
+        @Override
+        public void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+            throws IOException
+        {
+            add(createDocument(aSourceDocument.getName(), aSourceDocument.getId(), -1, "",
+                    aBinaryCas));
+        }
+        
+        @Override
+        public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+            throws IOException
+        {
+            add(createDocument(aDocument.getName(), aDocument.getDocument().getId(),
+                    aDocument.getId(), aDocument.getUser(), aBinaryCas));
+        }
+        
+        private void add(Document aDocument) throws IOException
+        {
+            List<Document> fullBatch = null;
+            synchronized (batch) {
+                batch.add(aDocument);
+                if (batch.size() >= REBUILD_BATCH_SIZE) {
+                    fullBatch = new ArrayList<>(batch);
+                    batch.clear();
+                }
+            }
+            
+            // The documents are analyzed by the calling thread, so we do this outside the lock to
+            // allow multiple batches to be processed concurrently
+            if (fullBatch != null) {
+                indexWriter.addDocuments(fullBatch);
+            }
+        }
+
+        @Override
+        public void commit() throws IOException
+        {
+            synchronized (batch) {
+                indexWriter.addDocuments(batch);
+                batch.clear();
+            }
+            
+            indexWriter.commit();
+            indexWriter.close();
+            
+            try (Directory dir = FSDirectory.open(directory.toPath())) {
+                replaceContents(dir, features);
+            }
+            
+            log.info("Rebuilt index for project [{}]({})", project.getName(), project.getId());
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            if (indexWriter.isOpen()) {
+                indexWriter.rollback();
+            }
+            
+            if (currentRebuild == this) {
+                currentRebuild = null;
+            }
+            
+            deleteDirectory(directory);
+        }
+    }
+    
+    private static long getReaderVersion(IndexSearcher aSearcher)
+    {
+        IndexReader reader = aSearcher.getIndexReader();
+        return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1;
+    }
+    
+    /**
+     * Position of a result within the result list of a query. Positions only remain valid as long
+     * as the index reader they were obtained from does not change.
+     */
+    private static class ResultCursor
+    {
+        private final long readerVersion;
+        private final long nextOffset;
+        private final int leaf;
+        private final int doc;
+        private final int start;
+        private final int end;
+
+        public ResultCursor(long aReaderVersion, long aNextOffset, int aLeaf, int aDoc,
+                int aStart, int aEnd)
+        {
+            readerVersion = aReaderVersion;
+            nextOffset = aNextOffset;
+            leaf = aLeaf;
+            doc = aDoc;
+            start = aStart;
+            end = aEnd;
+        }
+        
+        /**
+         * @return whether the given match comes before or at the cursor position.
+         */
+        public boolean hasPassed(int aLeaf, int aDoc, int aStart, int aEnd)
+        {
+            if (aLeaf != leaf || aDoc != doc) {
+                return aLeaf < leaf || (aLeaf == leaf && aDoc < doc);
+            }
+            
+            return aStart < start || (aStart == start && aEnd <= end);
+        }
+        
+        public static Optional<ResultCursor> parse(String aToken)
+        {
+            String[] fields = aToken.split(":");
+            if (fields.length != 6) {
+                return Optional.empty();
+            }
+            
+            try {
+                return Optional.of(new ResultCursor(Long.parseLong(fields[0]),
+                        Long.parseLong(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                        Integer.parseInt(fields[5])));
+            }
+            catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return readerVersion + ":" + nextOffset + ":" + leaf + ":" + doc + ":" + start + ":"
+                    + end;
+        }
+    }
+    
     @FunctionalInterface
     private interface QueryRunner<T>
     {
@@ -28,6 +28,8 @@ import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactoryImplBase;
 import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexProperties;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexPropertiesImpl;
 
 /**
  * Support for MTAS-based internal search.
@@ -44,18 +46,31 @@ public class MtasDocumentIndexFactory
     private final RepositoryProperties repositoryProperties;
     private final FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
     private final FeatureSupportRegistry featureSupportRegistry;
+    private final MtasDocumentIndexProperties properties;
     
     @Autowired
     public MtasDocumentIndexFactory(AnnotationSchemaService aSchemaService,
             DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
-            FeatureSupportRegistry aFeatureSupportRegistry)
+            FeatureSupportRegistry aFeatureSupportRegistry,
+            MtasDocumentIndexProperties aProperties)
     {
         schemaService = aSchemaService;
         documentService = aDocumentService;
         repositoryProperties = aRepositoryProperties;
         featureIndexingSupportRegistry = aFeatureIndexingSupportRegistry;
         featureSupportRegistry = aFeatureSupportRegistry;
+        properties = aProperties;
+    }
+
+    public MtasDocumentIndexFactory(AnnotationSchemaService aSchemaService,
+            DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
+            FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
+            FeatureSupportRegistry aFeatureSupportRegistry)
+    {
+        this(aSchemaService, aDocumentService, aRepositoryProperties,
+                aFeatureIndexingSupportRegistry, aFeatureSupportRegistry,
+                new MtasDocumentIndexPropertiesImpl());
     }
 
     @Override
@@ -69,6 +84,6 @@ public class MtasDocumentIndexFactory
     {
         return new MtasDocumentIndex(aProject, documentService, schemaService,
                 repositoryProperties.getPath().getAbsolutePath(), featureIndexingSupportRegistry,
-                featureSupportRegistry);
+                featureSupportRegistry, properties);
     }
 }
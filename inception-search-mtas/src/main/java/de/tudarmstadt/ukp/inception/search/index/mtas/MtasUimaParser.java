@@ -28,7 +28,6 @@ import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER_ARGS;
 import static org.apache.commons.io.IOUtils.toCharArray;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
-import static org.apache.uima.fit.util.CasUtil.selectAll;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -48,6 +47,7 @@ import org.apache.commons.collections4.MultiValuedMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.FSUtil;
 import org.apache.uima.util.CasIOUtils;
@@ -95,6 +95,7 @@ public class MtasUimaParser
     private static final int OVERSIZED_ANNOTATION_LIMIT = 30000;
 
     public static final String PARAM_PROJECT_ID = "projectId";
+    public static final String PARAM_REBUILD = "rebuild";
     
     public static final String MTAS_TOKEN_LABEL = "Token";
     public static final String MTAS_SENTENCE_LABEL = "s";
@@ -113,6 +114,7 @@ public class MtasUimaParser
 
     private NavigableMap<Integer, Pair<AnnotationFS, Integer>> tokenBeginIndex;
     private NavigableMap<Integer, Pair<AnnotationFS, Integer>> tokenEndIndex;
+    private int indexedAnnotationCount;
 
     public MtasUimaParser(MtasConfiguration config)
     {
@@ -130,7 +132,10 @@ public class MtasUimaParser
                 .getIndex(jsonParserConfiguration.getLong(PARAM_PROJECT_ID));
 
         // Initialize and populate the hash maps for the layers and features
-        for (AnnotationFeature feature : index.getFeaturesToIndex()) {
+        List<AnnotationFeature> featuresToIndex = jsonParserConfiguration
+                .optBoolean(PARAM_REBUILD, false) ? index.getRebuildFeaturesToIndex()
+                        : index.getFeaturesToIndex();
+        for (AnnotationFeature feature : featuresToIndex) {
             layers.put(feature.getLayer().getName(), feature.getLayer());
             layerFeatures
                     .computeIfAbsent(feature.getLayer().getName(), key -> new ArrayList<>())
@@ -177,8 +182,12 @@ public class MtasUimaParser
     
             try {
                 createTokenCollection(cas);
-                LOG.debug("Created token collection in {} ms",
-                        (System.currentTimeMillis() - start));
+                
+                long duration = Math.max(1, System.currentTimeMillis() - start);
+                LOG.debug("Created token collection for [{}] annotations on [{}] characters in "
+                        + "{} ms ({} annotations/s)", indexedAnnotationCount,
+                        cas.getDocumentText().length(), duration,
+                        indexedAnnotationCount * 1000L / duration);
                 return tokenCollection;
             }
             catch (Exception e) {
@@ -192,7 +201,16 @@ public class MtasUimaParser
     {
         CAS cas = createCas();
 
-        try (InputStream in = new ByteArrayInputStream(charsToBytes(toCharArray(aReader)))) {
+        // If the reader carries the binary CAS, we can avoid decoding it from the characters
+        byte[] binaryCas;
+        if (aReader instanceof BinaryCasReader) {
+            binaryCas = ((BinaryCasReader) aReader).getBinaryCas();
+        }
+        else {
+            binaryCas = charsToBytes(toCharArray(aReader));
+        }
+        
+        try (InputStream in = new ByteArrayInputStream(binaryCas)) {
             CasIOUtils.load(in, getRealCas(cas));
         }
         
@@ -203,6 +221,7 @@ public class MtasUimaParser
     {
         // Initialize state
         tokenCollection = new MtasTokenCollection();
+        indexedAnnotationCount = 0;
         int mtasId = 0;
         int tokenNum = 0;
         
@@ -216,16 +235,50 @@ public class MtasUimaParser
             tokenNum++;
         }
         
-        // Loop over the annotations
-        for (AnnotationFS annotation : selectAll(aJCas)) {
+        // Tokens and sentences are always indexed
+        mtasId = indexAnnotations(aJCas, getType(aJCas, Token.class), true, mtasId);
+        mtasId = indexAnnotations(aJCas, getType(aJCas, Sentence.class), true, mtasId);
+        
+        // Loop over the annotations of the indexed layers - we do not need to look at any other
+        // annotations since they would not be indexed anyway
+        for (String layerName : layers.keySet()) {
+            Type type = aJCas.getTypeSystem().getType(layerName);
+            
+            // The CAS may not have been upgraded to the latest project type system yet.
+            // Tokens and sentences have already been handled above.
+            if (
+                    type == null || 
+                    Token.class.getName().equals(layerName) ||
+                    Sentence.class.getName().equals(layerName)
+            ) {
+                continue;
+            }
+            
+            // Subtypes are only indexed if they are layers themselves - and then they are handled
+            // when we get to their layer
+            mtasId = indexAnnotations(aJCas, type, false, mtasId);
+        }
+        
+        return tokenCollection;
+    }
+    
+    private int indexAnnotations(CAS aCas, Type aType, boolean aIncludeSubtypes, int aMtasId)
+    {
+        int mtasId = aMtasId;
+        for (AnnotationFS annotation : select(aCas, aType)) {
+            if (!aIncludeSubtypes && !annotation.getType().equals(aType)) {
+                continue;
+            }
+            
             // MTAS cannot index zero-width annotations, so we skip them here.
             if (annotation.getBegin() == annotation.getEnd()) {
                 continue;
             }
+            
             mtasId = indexAnnotation(tokenCollection, annotation, mtasId);
+            indexedAnnotationCount++;
         }
-        
-        return tokenCollection;
+        return mtasId;
     }
     
     private Range getRange(AnnotationFS aAnnotation)
@@ -17,19 +17,34 @@
  */
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
+import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
 import org.apache.uima.fit.factory.JCasBuilder;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
@@ -110,6 +125,7 @@ import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.SearchServiceImpl;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRebuild;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistryImpl;
 import de.tudarmstadt.ukp.inception.search.scheduling.IndexScheduler;
@@ -326,6 +342,150 @@ public class MtasDocumentIndexTest
                 .usingFieldByFieldElementComparator()
                 .containsExactly(expectedResult);
     }
+
+    @Test
+    public void thatPagingWithSearchAfterTokenYieldsSameResultsAsOffset() throws Exception
+    {
+        Project project = new Project();
+        project.setName("PagingWithSearchAfterToken");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "a b a c a d a e a f";
+
+        uploadDocument(Pair.of(sourceDocument, fileContent));
+
+        User user = userRepository.get("admin");
+
+        String query = "a";
+
+        List<SearchResult> firstPage = searchService
+                .query(user, project, query, null, null, null, 0, 2).values().stream()
+                .flatMap(List::stream).collect(toList());
+        String searchAfter = firstPage.get(firstPage.size() - 1).getSearchAfter();
+
+        List<SearchResult> secondPageByToken = searchService
+                .query(user, project, query, null, null, null, 2, 2, searchAfter).values()
+                .stream().flatMap(List::stream).collect(toList());
+        List<SearchResult> secondPageByOffset = searchService
+                .query(user, project, query, null, null, null, 2, 2).values().stream()
+                .flatMap(List::stream).collect(toList());
+
+        assertThat(searchAfter).isNotNull();
+        assertThat(firstPage).extracting(SearchResult::getOffsetStart).containsExactly(0, 4);
+        assertThat(secondPageByToken).extracting(SearchResult::getOffsetStart)
+                .containsExactly(8, 12);
+        assertThat(secondPageByToken).extracting(SearchResult::getOffsetStart)
+                .containsExactlyElementsOf(secondPageByOffset.stream()
+                        .map(SearchResult::getOffsetStart).collect(toList()));
+    }
+
+    @Test
+    public void thatRebuildReplacesContentsOnlyWhenCommitted() throws Exception
+    {
+        Project project = new Project();
+        project.setName("RebuildReplacesContentsOnlyWhenCommitted");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(Pair.of(sourceDocument, fileContent));
+
+        User user = userRepository.get("admin");
+
+        // Prepare the new content of the document
+        JCas jCas = JCasFactory.createJCas();
+        JCasBuilder builder = new JCasBuilder(jCas);
+        builder.add("The", Token.class);
+        builder.add(" ");
+        builder.add("capital", Token.class);
+        builder.add(" ");
+        builder.add("of", Token.class);
+        builder.add(" ");
+        builder.add("Asturias", Token.class);
+        builder.add(" ");
+        builder.add("is", Token.class);
+        builder.add(" ");
+        builder.add("Oviedo", Token.class);
+        builder.add(" ");
+        builder.add(".", Token.class);
+        builder.close();
+
+        MtasDocumentIndex index = MtasDocumentIndex.getIndex(project.getId());
+        assertThat(index).isNotNull();
+
+        try (PhysicalIndexRebuild rebuild = index.startRebuild()) {
+            rebuild.indexDocument(sourceDocument, casToByteArray(jCas.getCas()));
+
+            // While the rebuild is in progress, queries are still served from the old index
+            assertThat(searchService.query(user, project, "Galicia"))
+                    .extracting(SearchResult::getText)
+                    .containsExactly("Galicia");
+            assertThat(searchService.query(user, project, "Asturias")).isEmpty();
+
+            rebuild.commit();
+        }
+
+        // After the rebuild has been committed, the index contains only the new content
+        assertThat(searchService.query(user, project, "Galicia")).isEmpty();
+        assertThat(searchService.query(user, project, "Asturias"))
+                .extracting(SearchResult::getText)
+                .containsExactly("Asturias");
+    }
+
+    @Test
+    public void thatIdsAreReadFromStoredFieldsInSegmentsWithoutDocValues() throws Exception
+    {
+        String field = "sourceDocumentId";
+        
+        try (Directory directory = new RAMDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+                // Segment written before the IDs were stored as doc-values
+                Document oldDoc = new Document();
+                oldDoc.add(new StringField(field, "1", Field.Store.YES));
+                writer.addDocument(oldDoc);
+                writer.commit();
+                
+                // Segment written after the IDs were stored as doc-values
+                Document newDoc = new Document();
+                newDoc.add(new StringField(field, "2", Field.Store.YES));
+                newDoc.add(new NumericDocValuesField(field, 2));
+                writer.addDocument(newDoc);
+                writer.commit();
+            }
+            
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                assertThat(reader.leaves()).hasSize(2);
+                
+                List<Long> ids = new ArrayList<>();
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    LeafReader leafReader = leaf.reader();
+                    NumericDocValues docValues = leafReader.getNumericDocValues(field);
+                    for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+                        ids.add(MtasDocumentIndex.getId(docValues, leafReader, doc, field));
+                    }
+                }
+                
+                assertThat(ids).containsExactly(1L, 2L);
+            }
+        }
+    }
+
     @Test
     public void testLimitQueryToDocument() throws Exception
     {
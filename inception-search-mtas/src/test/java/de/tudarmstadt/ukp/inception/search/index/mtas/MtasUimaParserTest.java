@@ -214,6 +214,33 @@ public class MtasUimaParserTest
             .isEmpty();
     }
 
+    @Test
+    public void testLayerWithoutIndexedFeaturesNotIndexed() throws Exception
+    {
+        TokenBuilder<Token, Sentence> builder = TokenBuilder.create(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "This is a test . \n This is sentence two .");
+
+        NamedEntity ne = new NamedEntity(jcas, 0, 4);
+        ne.setValue("OTH");
+        ne.addToIndexes();
+        
+        // The named entity layer exists in the project, but none of its features is indexed
+        AnnotationLayer layer = new AnnotationLayer(NamedEntity.class.getName(),
+                "Named Entity", SPAN_TYPE, project, true, TOKENS, NO_OVERLAP);
+        when(annotationSchemaService.listAnnotationLayer(any(Project.class)))
+                .thenReturn(asList(layer));
+
+        MtasUimaParser sut = new MtasUimaParser(asList(), annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(jcas.getCas());
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+
+        assertThat(tokens)
+            .extracting(MtasToken::getPrefix)
+            .containsOnly("Token", "s");
+    }
     
     @Test
     public void testDependencyRelation() throws Exception
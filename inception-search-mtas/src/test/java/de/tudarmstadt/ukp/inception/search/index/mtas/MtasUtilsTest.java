@@ -19,8 +19,10 @@ package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.bytesToChars;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.charsToBytes;
+import static org.apache.commons.io.IOUtils.toCharArray;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Random;
 
@@ -50,4 +52,18 @@ public class MtasUtilsTest
 
         assertThat(output).isEqualTo(input);
     }
+
+    @Test
+    public void binaryCasReaderFallsBackToCharEncoding() throws IOException
+    {
+        byte[] input = new byte[4097];
+        
+        Random rnd = new Random();
+        rnd.nextBytes(input);
+        
+        try (BinaryCasReader reader = new BinaryCasReader(input)) {
+            assertThat(reader.getBinaryCas()).isSameAs(input);
+            assertThat(charsToBytes(toCharArray(reader))).isEqualTo(input);
+        }
+    }
 }
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
@@ -173,8 +174,10 @@ public class ConceptTreePanel extends Panel {
         public Iterator<? extends KBHandle> getRoots()
         {
             try {
-                return kbService.listRootConcepts(kbModel.getObject(),
-                        preferences.getObject().showAllConcepts).iterator();
+                List<KBHandle> roots = kbService.listRootConcepts(kbModel.getObject(),
+                        preferences.getObject().showAllConcepts);
+                fetchChildrenPresent(roots);
+                return roots.iterator();
             } catch (QueryEvaluationException e) {
                 error(getString("listRootConceptsErrorMsg") + ": " + e.getLocalizedMessage());
                 LOG.error("Unable to list root concepts.", e);
@@ -182,10 +185,45 @@ public class ConceptTreePanel extends Panel {
             }
         }
 
+        /**
+         * Checks for all given nodes at once whether they have children, so that rendering the
+         * expanders does not require a query per node.
+         */
+        private void fetchChildrenPresent(List<KBHandle> aNodes)
+        {
+            List<KBHandle> nodes = aNodes.stream()
+                    .filter(node -> !childrenPresentCache.containsKey(node))
+                    .collect(Collectors.toList());
+            
+            if (nodes.isEmpty()) {
+                return;
+            }
+            
+            try {
+                Map<String, Integer> childCounts = kbService.countChildConcepts(
+                        kbModel.getObject(),
+                        nodes.stream().map(KBHandle::getIdentifier).collect(Collectors.toList()),
+                        preferences.getObject().showAllConcepts);
+                for (KBHandle node : nodes) {
+                    childrenPresentCache.put(node,
+                            childCounts.getOrDefault(node.getIdentifier(), 0) > 0);
+                }
+            }
+            catch (QueryEvaluationException e) {
+                // If this fails, hasChildren falls back to checking the nodes individually
+                LOG.error("Unable to check for child concepts.", e);
+            }
+        }
+        
         @Override
         public boolean hasChildren(KBObject aNode)
         {
             try {
+                Boolean childrenPresent = childrenPresentCache.get(aNode);
+                if (childrenPresent != null) {
+                    return childrenPresent;
+                }
+                
                 // If the KB is read-only, then we cache the values and re-use the cached values.
                 if (kbModel.getObject().isReadOnly()) {
                     // Leaving this code here because we might make the preemptive loading of 
@@ -239,11 +277,14 @@ public class ConceptTreePanel extends Panel {
                                 aNode.getIdentifier(), preferences.getObject().showAllConcepts);
                         childrensCache.put(aNode, children);
                     }
+                    fetchChildrenPresent(children);
                     return children.iterator();
                 }
                 else {
-                    return kbService.listChildConcepts(kbModel.getObject(), aNode.getIdentifier(),
-                            preferences.getObject().showAllConcepts).iterator();
+                    List<KBHandle> children = kbService.listChildConcepts(kbModel.getObject(),
+                            aNode.getIdentifier(), preferences.getObject().showAllConcepts);
+                    fetchChildrenPresent(children);
+                    return children.iterator();
                 }
             }
             catch (QueryEvaluationException e) {
@@ -18,21 +18,28 @@
 package de.tudarmstadt.ukp.inception.ui.kb.project;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.AjaxSelfUpdatingTimerBehavior;
 import org.apache.wicket.ajax.markup.html.form.AjaxButton;
 import org.apache.wicket.feedback.IFeedback;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.RequiredTextField;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.CompoundPropertyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.spring.injection.annot.SpringBean;
@@ -47,6 +54,7 @@ import de.tudarmstadt.ukp.clarin.webanno.support.dialog.ConfirmationDialog;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxLink;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.spring.ApplicationEventPublisherHolder;
+import de.tudarmstadt.ukp.inception.kb.ImportProgress;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.RepositoryType;
 import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseProperties;
@@ -107,6 +115,8 @@ public class KnowledgeBaseDetailsPanel
         form.add(title);
         form.add(content);
 
+        form.add(createImportProgress("importProgress"));
+
         // re-index button only visible for local KBs
         form.add(new LambdaAjaxLink("delete", KnowledgeBaseDetailsPanel.this::actionDelete));
         form.add(new LambdaAjaxLink("reindex", KnowledgeBaseDetailsPanel.this::actionReindex)
@@ -176,9 +186,10 @@ public class KnowledgeBaseDetailsPanel
             if (kb.getType() == RepositoryType.LOCAL) {
                 kbService.defineBaseProperties(kb);
                 for (Pair<String, File> f : kbw.getFiles()) {
-                    try (InputStream is = new FileInputStream(f.getValue())) {
-                        kbService.importData(kb, f.getValue().getName(), is);
-                        success("Imported: " + f.getKey());
+                    try {
+                        kbService.importDataInBackground(kb, f.getValue().getName(),
+                                f.getValue());
+                        success("Importing in background: " + f.getKey());
                     }
                     catch (Exception e) {
                         error("Failed to import: " + f.getKey());
@@ -194,6 +205,52 @@ public class KnowledgeBaseDetailsPanel
         }
     }
 
+    private WebMarkupContainer createImportProgress(String aId)
+    {
+        IModel<List<ImportProgress>> progress = LoadableDetachableModel
+                .of(() -> Optional.ofNullable(kbwModel.getObject().getKb())
+                        .map(kbService::listImportProgress)
+                        .orElse(Collections.emptyList()));
+
+        WebMarkupContainer container = new WebMarkupContainer(aId);
+        container.setOutputMarkupPlaceholderTag(true);
+        container.add(new ListView<ImportProgress>("imports", progress)
+        {
+            private static final long serialVersionUID = -4716324318212785237L;
+
+            @Override
+            protected void populateItem(ListItem<ImportProgress> aItem)
+            {
+                aItem.add(new Label("message", renderImportProgress(aItem.getModelObject())));
+            }
+        });
+        container.add(LambdaBehavior.visibleWhen(() -> !progress.getObject().isEmpty()));
+        // Only keep polling while imports are pending or running
+        container.add(new AjaxSelfUpdatingTimerBehavior(Duration.ofSeconds(2))
+        {
+            private static final long serialVersionUID = -2718325462185446217L;
+
+            @Override
+            public boolean isEnabled(Component aComponent)
+            {
+                return progress.getObject().stream().anyMatch(p -> !p.isDone());
+            }
+        });
+        return container;
+    }
+
+    private String renderImportProgress(ImportProgress aProgress)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(aProgress.getFilename()).append(": ").append(aProgress.getPhase());
+        sb.append(" - ").append(aProgress.getStatements()).append(" statements");
+        sb.append(" (").append(aProgress.getStatementsPerSecond()).append(" statements/s)");
+        if (!aProgress.isDone() && aProgress.getPercentage() >= 0) {
+            sb.append(" - ").append(aProgress.getPercentage()).append("%");
+        }
+        return sb.toString();
+    }
+
     private void actionReindex(AjaxRequestTarget aTarget)
     {
         aTarget.addChildren(getPage(), IFeedback.class);
@@ -431,8 +431,13 @@ public class SearchAnnotationSidebar
         AnnotatorState state = getModelObject();
         Project project = state.getProject();
 
-        if (searchService.isIndexInProgress(state.getProject())) {
-            info("Indexing in progress... cannot perform query at this time");
+        // While a valid index is being rebuilt, queries still run against the current index
+        if (searchService.isIndexInProgress(state.getProject())
+                && !searchService.isIndexValid(state.getProject())) {
+            info("Indexing in progress... cannot perform query at this time"
+                    + searchService.getIndexProgress(state.getProject())
+                            .map(p -> " (" + p.getDone() + "/" + p.getTotal() + " documents)")
+                            .orElse(""));
             aTarget.addChildren(getPage(), IFeedback.class);
             return;
         }
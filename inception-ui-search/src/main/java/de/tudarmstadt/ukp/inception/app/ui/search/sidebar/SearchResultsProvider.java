@@ -20,8 +20,11 @@ package de.tudarmstadt.ukp.inception.app.ui.search.sidebar;
 import static java.util.Collections.emptyIterator;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.IteratorUtils;
@@ -38,6 +41,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.ResultsGroup;
+import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 
 public class SearchResultsProvider
@@ -60,6 +64,9 @@ public class SearchResultsProvider
     // Cache
     private long totalResults = 0;
     private IModel<SearchResultsPagesCache> pagesCacheModel;
+    
+    // Search-after tokens by the offset of the page they lead to
+    private Map<Long, String> searchAfterTokens = new HashMap<>();
 
     public SearchResultsProvider(SearchService aSearchService,
             IModel<SearchResultsPagesCache> aPageCacheModel)
@@ -85,9 +92,18 @@ public class SearchResultsProvider
         try {
             List<ResultsGroup> queryResults = searchService
                     .query(user, project, query, document, annotationLayer, annotationFeature,
-                            first, count)
+                            first, count, searchAfterTokens.get(first))
                     .entrySet().stream().map(e -> new ResultsGroup(e.getKey(), e.getValue()))
                     .collect(Collectors.toList());
+            
+            // Remember where the next page starts so it does not have to skip over all the
+            // results of the previous pages again
+            queryResults.stream()
+                    .flatMap(group -> group.getResults().stream())
+                    .map(SearchResult::getSearchAfter)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .ifPresent(token -> searchAfterTokens.put(first + count, token));
 
             pagesCacheModel.getObject().putPage(first, count, queryResults);
             return queryResults.iterator();
@@ -140,6 +156,7 @@ public class SearchResultsProvider
 
         totalResults = -1; // reset size cache
         pagesCacheModel.getObject().clear(); // reset page cache
+        searchAfterTokens.clear();
     }
 
     public void emptyQuery()
@@ -147,6 +164,7 @@ public class SearchResultsProvider
         query = null;
         totalResults = 0;
         pagesCacheModel.getObject().clear();
+        searchAfterTokens.clear();
     }
 
     public AnnotationLayer getAnnotationLayer()